@@ -32,6 +32,17 @@ android {
         targetCompatibility = JavaVersion.VERSION_11
     }
 
+    // Every unit test runs in this 128 MB heap, not just PdfMemoryPolicyTest, which
+    // needs it to prove a PDF larger than the heap spills to disk instead of OOMing.
+    // Fixtures elsewhere have to stream large inputs rather than hold them in memory.
+    testOptions {
+        unitTests.all {
+            it.maxHeapSize = "128m"
+            // Timing runs are skipped unless asked for: ./gradlew test -Pbenchmarks
+            it.systemProperty("benchmarks", project.hasProperty("benchmarks"))
+        }
+    }
+
     // **Fix META-INF/DEPENDENCIES conflict**
     packaging {
         resources {
@@ -14,9 +14,13 @@ import com.example.statementanalyzer.R;
 import com.example.statementanalyzer.ai.CohereManager;
 import com.example.statementanalyzer.animations.ChartAnimator;
 import com.example.statementanalyzer.animations.ViewAnimations;
-import com.example.statementanalyzer.data.FirebaseManager;
+import com.example.statementanalyzer.data.StatementRepository;
+import com.example.statementanalyzer.model.CategoryRegistry;
+import com.example.statementanalyzer.model.CategoryTotals;
 import com.example.statementanalyzer.model.FinancialData;
-import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.charts.PieChart;
@@ -36,17 +40,15 @@ import com.github.mikephil.charting.utils.ColorTemplate;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.TreeMap;
 
 public class ChartsActivity extends AppCompatActivity {
 
-    private FirebaseManager firebaseManager;
+    // Upper bound on trend chart slots, however far apart the parsed dates are
+    private static final int MAX_TREND_SLOTS = 400;
+
+    private StatementRepository repository;
     private CohereManager cohereManager;
     private List<FinancialData> financialDataList;
 
@@ -72,7 +74,7 @@ public class ChartsActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
 
         // Initialize components
-        firebaseManager = new FirebaseManager();
+        repository = StatementRepository.getInstance(this);
         cohereManager = new CohereManager(getString(R.string.cohere_api_key));
 
         // Initialize UI components
@@ -93,7 +95,7 @@ public class ChartsActivity extends AppCompatActivity {
     }
 
     private void loadFinancialData() {
-        firebaseManager.fetchFinancialData(financialDataList -> {
+        repository.loadStatements(financialDataList -> {
             this.financialDataList = financialDataList;
 
             if (financialDataList.isEmpty()) {
@@ -118,21 +120,14 @@ public class ChartsActivity extends AppCompatActivity {
 
     private void generateCategoryPieChart() {
         // Aggregate category data from all financial data
-        Map<String, Double> categoryTotals = new HashMap<>();
-
-        for (FinancialData data : financialDataList) {
-            for (Map.Entry<String, Double> entry : data.getCategoryTotals().entrySet()) {
-                String category = entry.getKey();
-                double amount = entry.getValue();
-
-                categoryTotals.put(category, categoryTotals.getOrDefault(category, 0.0) + amount);
-            }
-        }
+        CategoryTotals categoryTotals = aggregateCategoryTotals();
 
         // Create pie chart entries
+        CategoryRegistry registry = CategoryRegistry.getInstance();
         List<PieEntry> entries = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-            entries.add(new PieEntry(entry.getValue().floatValue(), entry.getKey()));
+        for (int id = categoryTotals.first(); id >= 0; id = categoryTotals.next(id)) {
+            entries.add(new PieEntry((float) CurrencyUtils.toAmount(categoryTotals.getCents(id)),
+                    registry.getName(id)));
         }
 
         // Create dataset
@@ -161,30 +156,25 @@ public class ChartsActivity extends AppCompatActivity {
 
     private void generateExpensesBarChart() {
         // Get top 5 expense categories
-        Map<String, Double> categoryTotals = new HashMap<>();
+        CategoryTotals categoryTotals = aggregateCategoryTotals();
 
-        for (FinancialData data : financialDataList) {
-            for (Map.Entry<String, Double> entry : data.getCategoryTotals().entrySet()) {
-                String category = entry.getKey();
-                double amount = entry.getValue();
-
-                categoryTotals.put(category, categoryTotals.getOrDefault(category, 0.0) + amount);
-            }
+        // Sort category ids by amount
+        List<Integer> sortedIds = new ArrayList<>(categoryTotals.size());
+        for (int id = categoryTotals.first(); id >= 0; id = categoryTotals.next(id)) {
+            sortedIds.add(id);
         }
-
-        // Sort categories by amount
-        List<Map.Entry<String, Double>> sortedEntries = new ArrayList<>(categoryTotals.entrySet());
-        sortedEntries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+        sortedIds.sort((a, b) -> Long.compare(categoryTotals.getCents(b), categoryTotals.getCents(a)));
 
         // Take top 5 categories
-        int count = Math.min(5, sortedEntries.size());
+        CategoryRegistry registry = CategoryRegistry.getInstance();
+        int count = Math.min(5, sortedIds.size());
         List<String> categories = new ArrayList<>();
         List<BarEntry> entries = new ArrayList<>();
 
         for (int i = 0; i < count; i++) {
-            Map.Entry<String, Double> entry = sortedEntries.get(i);
-            categories.add(entry.getKey());
-            entries.add(new BarEntry(i, entry.getValue().floatValue()));
+            int id = sortedIds.get(i);
+            categories.add(registry.getName(id));
+            entries.add(new BarEntry(i, (float) CurrencyUtils.toAmount(categoryTotals.getCents(id))));
         }
 
         // Create dataset
@@ -220,43 +210,72 @@ public class ChartsActivity extends AppCompatActivity {
         ChartAnimator.animateBarChartGrowing(expensesBarChart, barData, 1500);
     }
 
+    // Merges every statement's totals by category id; no boxing or string hashing
+    private CategoryTotals aggregateCategoryTotals() {
+        CategoryTotals categoryTotals = new CategoryTotals();
+        for (FinancialData data : financialDataList) {
+            categoryTotals.addAll(data.getCategoryCents());
+        }
+        return categoryTotals;
+    }
+
     private void generateTrendLineChart() {
-        // Aggregate daily expenses
-        Map<Date, Double> dailyExpenses = new TreeMap<>();
+        // Aggregate expenses straight from the transaction columns, one slot per day,
+        // or per week or longer when the dates cover too long a span for daily points
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
 
         for (FinancialData data : financialDataList) {
-            for (Transaction transaction : data.getTransactions()) {
-                if (transaction.getAmount() < 0) {  // Only expenses
-                    // Normalize date to remove time component
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTime(transaction.getDate());
-                    cal.set(Calendar.HOUR_OF_DAY, 0);
-                    cal.set(Calendar.MINUTE, 0);
-                    cal.set(Calendar.SECOND, 0);
-                    cal.set(Calendar.MILLISECOND, 0);
-                    Date normalizedDate = cal.getTime();
-
-                    double amount = Math.abs(transaction.getAmount());
-                    dailyExpenses.put(normalizedDate,
-                            dailyExpenses.getOrDefault(normalizedDate, 0.0) + amount);
+            TransactionTable table = data.getTransactionTable();
+            if (table == null) continue;
+
+            for (int row = 0; row < table.size(); row++) {
+                int epochDay = table.getEpochDay(row);
+                if (table.getCents(row) < 0 && epochDay != TransactionTable.NO_DATE) {  // Only expenses
+                    firstDay = Math.min(firstDay, epochDay);
+                    lastDay = Math.max(lastDay, epochDay);
                 }
             }
         }
 
-        // Create line chart entries
         List<Entry> entries = new ArrayList<>();
         List<String> dateLabels = new ArrayList<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd", Locale.US);
+        int bucketDays = 1;
+
+        if (firstDay <= lastDay) {
+            // long: a misparsed year can put the span past what an int holds
+            long spanDays = (long) lastDay - firstDay + 1;
+            bucketDays = trendBucketDays(spanDays);
+            long[] expenses = new long[(int) ((spanDays + bucketDays - 1) / bucketDays)];
+
+            for (FinancialData data : financialDataList) {
+                TransactionTable table = data.getTransactionTable();
+                if (table == null) continue;
+
+                for (int row = 0; row < table.size(); row++) {
+                    long cents = table.getCents(row);
+                    int epochDay = table.getEpochDay(row);
+                    if (cents < 0 && epochDay != TransactionTable.NO_DATE) {
+                        expenses[(int) (((long) epochDay - firstDay) / bucketDays)] -= cents;
+                    }
+                }
+            }
+
+            // Create line chart entries for the slots that had spending, labelled by their first day
+            SimpleDateFormat dateFormat = new SimpleDateFormat(bucketDays < 30 ? "MM/dd" : "MM/yy", Locale.US);
 
-        int index = 0;
-        for (Map.Entry<Date, Double> entry : dailyExpenses.entrySet()) {
-            entries.add(new Entry(index, entry.getValue().floatValue()));
-            dateLabels.add(dateFormat.format(entry.getKey()));
-            index++;
+            int index = 0;
+            for (int slot = 0; slot < expenses.length; slot++) {
+                if (expenses[slot] == 0) continue;
+
+                entries.add(new Entry(index, (float) CurrencyUtils.toAmount(expenses[slot])));
+                dateLabels.add(dateFormat.format(DateUtils.toDate((int) (firstDay + (long) slot * bucketDays))));
+                index++;
+            }
         }
 
         // Create dataset
-        LineDataSet dataSet = new LineDataSet(entries, "Daily Expenses");
+        LineDataSet dataSet = new LineDataSet(entries, trendLabel(bucketDays));
         dataSet.setColor(primaryColor);
         dataSet.setLineWidth(2f);
         dataSet.setCircleColor(secondaryColor);
@@ -296,6 +315,29 @@ public class ChartsActivity extends AppCompatActivity {
         ChartAnimator.animateLineChartDrawing(trendLineChart, lineData, 2000);
     }
 
+    // Days per point of the trend chart: daily for about a quarter, weekly up to two
+    // years, then in runs of 30 days or more with no more than MAX_TREND_SLOTS slots in all
+    private static int trendBucketDays(long spanDays) {
+        if (spanDays <= 92) {
+            return 1;
+        }
+        if (spanDays <= 2 * 366) {
+            return 7;
+        }
+        return (int) Math.max(30, (spanDays + MAX_TREND_SLOTS - 1) / MAX_TREND_SLOTS);
+    }
+
+    private static String trendLabel(int bucketDays) {
+        switch (bucketDays) {
+            case 1:
+                return "Daily Expenses";
+            case 7:
+                return "Weekly Expenses";
+            default:
+                return "Expenses per " + bucketDays + " days";
+        }
+    }
+
     private void generateAIAnalysis() {
         // Ensure analysisTextView exists
         if (analysisTextView == null) {
@@ -16,7 +16,7 @@ import com.example.statementanalyzer.R;
 import com.example.statementanalyzer.adapters.ChatAdapter;
 import com.example.statementanalyzer.ai.CohereManager;
 import com.example.statementanalyzer.animations.ViewAnimations;
-import com.example.statementanalyzer.data.FirebaseManager;
+import com.example.statementanalyzer.data.StatementRepository;
 import com.example.statementanalyzer.model.ChatMessage;
 import com.example.statementanalyzer.model.FinancialData;
 
@@ -25,7 +25,7 @@ import java.util.List;
 
 public class ChatbotActivity extends AppCompatActivity {
 
-    private FirebaseManager firebaseManager;
+    private StatementRepository repository;
     private CohereManager cohereManager;
     private List<FinancialData> financialDataList;
     private List<ChatMessage> chatMessages;
@@ -47,7 +47,7 @@ public class ChatbotActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
 
         // Initialize components
-        firebaseManager = new FirebaseManager();
+        repository = StatementRepository.getInstance(this);
         cohereManager = new CohereManager(getString(R.string.cohere_api_key));
         chatMessages = new ArrayList<>();
 
@@ -78,7 +78,7 @@ public class ChatbotActivity extends AppCompatActivity {
     private void loadFinancialData() {
         progressBar.setVisibility(View.VISIBLE);
 
-        firebaseManager.fetchFinancialData(financialDataList -> {
+        repository.loadStatements(financialDataList -> {
             this.financialDataList = financialDataList;
 
             if (financialDataList.isEmpty()) {
@@ -16,21 +16,25 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.example.statementanalyzer.R;
 import com.example.statementanalyzer.animations.ViewAnimations;
-import com.example.statementanalyzer.data.FirebaseManager;
+import com.example.statementanalyzer.data.BatchImportManager;
 import com.example.statementanalyzer.data.PreferenceManager;
+import com.example.statementanalyzer.data.StatementRepository;
 import com.example.statementanalyzer.extraction.DocumentParser;
+import com.example.statementanalyzer.extraction.ParseListener;
 import com.example.statementanalyzer.fragments.HelpDialogFragment;
-import com.example.statementanalyzer.model.FinancialData;
 import com.example.statementanalyzer.utils.NotificationUtils;
 import com.example.statementanalyzer.utils.ThemeUtils;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
-    private FirebaseManager firebaseManager;
+    private StatementRepository repository;
     private DocumentParser documentParser;
+    private BatchImportManager batchImportManager;
     private ActivityResultLauncher<String[]> filePickerLauncher;
     private PreferenceManager preferenceManager;
 
@@ -52,8 +56,9 @@ public class MainActivity extends AppCompatActivity {
         NotificationUtils.createNotificationChannel(this);
 
         // Initialize components
-        firebaseManager = new FirebaseManager();
+        repository = StatementRepository.getInstance(this);
         documentParser = new DocumentParser(this);
+        batchImportManager = new BatchImportManager(documentParser, repository);
 
         // Setup UI components
         Button uploadButton = findViewById(R.id.uploadButton);
@@ -63,8 +68,8 @@ public class MainActivity extends AppCompatActivity {
 
         // Setup file picker launcher
         filePickerLauncher = registerForActivityResult(
-                new ActivityResultContracts.OpenDocument(),
-                this::handleSelectedFile
+                new ActivityResultContracts.OpenMultipleDocuments(),
+                this::handleSelectedFiles
         );
 
         // Set click listeners
@@ -122,7 +127,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void checkDataAvailability() {
-        firebaseManager.fetchFinancialData(financialDataList -> {
+        repository.loadStatements(financialDataList -> {
             boolean hasData = !financialDataList.isEmpty();
 
             runOnUiThread(() -> {
@@ -133,58 +138,103 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void openFilePicker() {
-        filePickerLauncher.launch(new String[]{"application/pdf", "text/csv"});
+        List<String> mimeTypes = new ArrayList<>(Arrays.asList("application/pdf", "text/csv"));
+        mimeTypes.addAll(DocumentParser.OFX_MIME_TYPES);
+        // Many providers don't know the OFX types and report .ofx/.qfx downloads as binary
+        mimeTypes.add("application/octet-stream");
+        filePickerLauncher.launch(mimeTypes.toArray(new String[0]));
     }
 
-    private void handleSelectedFile(Uri uri) {
-        if (uri == null) {
+    private void handleSelectedFiles(List<Uri> uris) {
+        if (uris == null || uris.isEmpty()) {
             Toast.makeText(this, "No file selected", Toast.LENGTH_SHORT).show();
             return;
         }
 
         // Show loading indicator
+        Button uploadButton = findViewById(R.id.uploadButton);
+        CharSequence uploadLabel = uploadButton.getText();
+        uploadButton.setEnabled(false);
         findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
 
-        // Process file in background
-        new Thread(() -> {
-            try {
-                List<FinancialData> extractedData = documentParser.parseDocument(uri);
-
-                // Upload to Firebase
-                firebaseManager.uploadData(extractedData, success -> {
-                    runOnUiThread(() -> {
-                        findViewById(R.id.progressBar).setVisibility(View.GONE);
-                        if (success) {
-                            Toast.makeText(MainActivity.this,
-                                    "Data extracted and uploaded successfully",
-                                    Toast.LENGTH_SHORT).show();
-
-                            // Enable analysis features
-                            findViewById(R.id.viewChartsButton).setEnabled(true);
-                            findViewById(R.id.chatbotButton).setEnabled(true);
-
-                            // Show notification
-                            NotificationUtils.showAnalysisCompleteNotification(MainActivity.this);
-
-                            // Apply animation to buttons
-                            ViewAnimations.bounce(findViewById(R.id.viewChartsButton));
-                            ViewAnimations.bounce(findViewById(R.id.chatbotButton));
-                        } else {
-                            Toast.makeText(MainActivity.this,
-                                    "Failed to upload data",
-                                    Toast.LENGTH_SHORT).show();
-                        }
-                    });
-                });
-            } catch (Exception e) {
+        // Parse and upload every file in the background
+        batchImportManager.importAll(uris, new BatchImportManager.BatchImportCallback() {
+            @Override
+            public void onProgress(int completed, int total) {
+                runOnUiThread(() -> uploadButton.setText(
+                        "Importing " + completed + " of " + total));
+            }
+
+            @Override
+            public ParseListener parseListenerFor(Uri uri) {
+                // With several files in flight the file count says more than one file's pages
+                if (uris.size() > 1) {
+                    return ParseListener.NONE;
+                }
+                return new ParseListener() {
+                    @Override
+                    public void onPagesParsed(int pagesParsed, int pageCount, double pagesPerSecond) {
+                        runOnUiThread(() -> uploadButton.setText(
+                                "Reading page " + pagesParsed + " of " + pageCount));
+                    }
+
+                    @Override
+                    public void onRowsParsed(int rowsParsed, double rowsPerSecond) {
+                        runOnUiThread(() -> uploadButton.setText("Read " + rowsParsed + " rows"));
+                    }
+                };
+            }
+
+            @Override
+            public void onFileFailed(Uri uri, Exception e) {
+                runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                        "Error processing file: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show());
+            }
+
+            @Override
+            public void onComplete(int succeeded, int failed) {
                 runOnUiThread(() -> {
                     findViewById(R.id.progressBar).setVisibility(View.GONE);
-                    Toast.makeText(MainActivity.this,
-                            "Error processing file: " + e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
+                    uploadButton.setText(uploadLabel);
+                    uploadButton.setEnabled(true);
+                    if (succeeded > 0) {
+                        Toast.makeText(MainActivity.this,
+                                failed == 0
+                                        ? "Data extracted and uploaded successfully"
+                                        : "Imported " + succeeded + " of " + (succeeded + failed) + " files",
+                                Toast.LENGTH_SHORT).show();
+
+                        // Enable analysis features
+                        findViewById(R.id.viewChartsButton).setEnabled(true);
+                        findViewById(R.id.chatbotButton).setEnabled(true);
+
+                        // Show notification
+                        NotificationUtils.showAnalysisCompleteNotification(MainActivity.this);
+
+                        // Apply animation to buttons
+                        ViewAnimations.bounce(findViewById(R.id.viewChartsButton));
+                        ViewAnimations.bounce(findViewById(R.id.chatbotButton));
+                    } else {
+                        Toast.makeText(MainActivity.this,
+                                "Failed to upload data",
+                                Toast.LENGTH_SHORT).show();
+                    }
                 });
             }
-        }).start();
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (isChangingConfigurations()) {
+            // A rotation isn't the user leaving; the import still saves what it reads
+            batchImportManager.finishAndShutdown();
+        } else {
+            // Parses still running stop within a page instead of finishing for nobody
+            batchImportManager.shutdown();
+        }
+        super.onDestroy();
     }
 
     private void openChartsActivity() {
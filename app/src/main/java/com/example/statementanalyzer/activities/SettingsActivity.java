@@ -11,14 +11,14 @@ import androidx.appcompat.widget.Toolbar;
 
 import com.example.statementanalyzer.R;
 import com.example.statementanalyzer.data.ExportManager;
-import com.example.statementanalyzer.data.FirebaseManager;
 import com.example.statementanalyzer.data.PreferenceManager;
+import com.example.statementanalyzer.data.StatementRepository;
 import com.example.statementanalyzer.utils.ThemeUtils;
 
 public class SettingsActivity extends AppCompatActivity {
 
     private PreferenceManager preferenceManager;
-    private FirebaseManager firebaseManager;
+    private StatementRepository repository;
     private ExportManager exportManager;
 
     private Switch darkModeSwitch;
@@ -34,7 +34,7 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Initialize managers
         preferenceManager = new PreferenceManager(this);
-        firebaseManager = new FirebaseManager();
+        repository = StatementRepository.getInstance(this);
         exportManager = new ExportManager(this);
 
         // Setup toolbar
@@ -80,7 +80,7 @@ public class SettingsActivity extends AppCompatActivity {
         exportCsvButton.setOnClickListener(v -> {
             Toast.makeText(this, "Exporting data to CSV...", Toast.LENGTH_SHORT).show();
 
-            firebaseManager.fetchFinancialData(financialDataList -> {
+            repository.loadStatements(financialDataList -> {
                 if (financialDataList.isEmpty()) {
                     runOnUiThread(() -> {
                         Toast.makeText(
@@ -124,7 +124,7 @@ public class SettingsActivity extends AppCompatActivity {
         exportJsonButton.setOnClickListener(v -> {
             Toast.makeText(this, "Exporting data to JSON...", Toast.LENGTH_SHORT).show();
 
-            firebaseManager.fetchFinancialData(financialDataList -> {
+            repository.loadStatements(financialDataList -> {
                 if (financialDataList.isEmpty()) {
                     runOnUiThread(() -> {
                         Toast.makeText(
@@ -172,8 +172,8 @@ public class SettingsActivity extends AppCompatActivity {
             builder.setTitle("Clear Data");
             builder.setMessage("Are you sure you want to clear all your financial data? This action cannot be undone.");
             builder.setPositiveButton("Clear", (dialog, which) -> {
-                // Clear data from Firebase
-                firebaseManager.clearAllData(success -> {
+                // Clear data from Firebase and the device
+                repository.clearAll(success -> {
                     runOnUiThread(() -> {
                         if (success) {
                             Toast.makeText(
@@ -3,7 +3,9 @@ package com.example.statementanalyzer.ai;
 import android.util.Log;
 
 import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.StatementSummary;
 import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.utils.CurrencyUtils;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -159,14 +161,13 @@ public class CohereManager {
             prompt.append("You are a financial assistant helping a user understand their financial data. ");
             prompt.append("Here is a summary of their financial data:\n\n");
 
-            // Add financial data summary
-            double totalIncome = 0;
-            double totalExpenses = 0;
-
+            // Add financial data summary, merged across all statements
+            StatementSummary summary = StatementSummary.EMPTY;
             for (FinancialData data : financialDataList) {
-                totalIncome += data.getTotalIncome();
-                totalExpenses += data.getTotalExpenses();
+                summary = StatementSummary.merge(summary, data.getSummary());
             }
+            double totalIncome = CurrencyUtils.toAmount(summary.getIncomeCents());
+            double totalExpenses = CurrencyUtils.toAmount(summary.getExpenseCents());
 
             prompt.append("Total Income: $").append(String.format("%.2f", totalIncome)).append("\n");
             prompt.append("Total Expenses: $").append(String.format("%.2f", Math.abs(totalExpenses))).append("\n");
@@ -174,12 +175,10 @@ public class CohereManager {
 
             // Add top expense categories
             prompt.append("Top Expense Categories:\n");
-            for (FinancialData data : financialDataList) {
-                for (Map.Entry<String, Double> entry : data.getCategoryTotals().entrySet()) {
-                    prompt.append("- ").append(entry.getKey()).append(": $")
-                            .append(String.format("%.2f", Math.abs(entry.getValue())))
-                            .append("\n");
-                }
+            for (Map.Entry<String, Double> entry : summary.getCategoryTotals().asMap().entrySet()) {
+                prompt.append("- ").append(entry.getKey()).append(": $")
+                        .append(String.format("%.2f", Math.abs(entry.getValue())))
+                        .append("\n");
             }
 
             prompt.append("\nThe user asks: ").append(userMessage).append("\n\n");
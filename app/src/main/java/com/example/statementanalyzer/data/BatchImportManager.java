@@ -0,0 +1,161 @@
+package com.example.statementanalyzer.data;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.statementanalyzer.extraction.CancellationToken;
+import com.example.statementanalyzer.extraction.DocumentParser;
+import com.example.statementanalyzer.extraction.ParseListener;
+import com.example.statementanalyzer.model.FinancialData;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports many statements at once: each file is parsed on a fixed pool sized to
+ * the CPU count and saved as soon as it is done, so a slow save never holds
+ * up parsing of the next file. A semaphore bounds how many parsed statements can
+ * exist at the same time (parsing or waiting to be saved), which keeps a
+ * large batch from holding every statement in memory at once. shutdown() cancels
+ * the parses that are still running.
+ */
+public class BatchImportManager {
+
+    private static final String TAG = "BatchImportManager";
+
+    // Parsed statements allowed to wait to be saved, per worker thread
+    private static final int RESULTS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final DocumentParser documentParser;
+    private final StatementRepository repository;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final CancellationToken cancellation = new CancellationToken();
+
+    public interface BatchImportCallback {
+        // completed counts both successes and failures
+        void onProgress(int completed, int total);
+        void onFileFailed(Uri uri, Exception e);
+        void onComplete(int succeeded, int failed);
+
+        // Progress of the parse itself, per file; called from parsing threads
+        default ParseListener parseListenerFor(Uri uri) {
+            return ParseListener.NONE;
+        }
+    }
+
+    public BatchImportManager(DocumentParser documentParser, StatementRepository repository) {
+        this(documentParser, repository, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchImportManager(DocumentParser documentParser, StatementRepository repository, int parallelism) {
+        this.documentParser = documentParser;
+        this.repository = repository;
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = Executors.newFixedThreadPool(this.parallelism);
+        this.permits = new Semaphore(this.parallelism * RESULTS_IN_FLIGHT_PER_THREAD);
+    }
+
+    public void importAll(List<Uri> uris, BatchImportCallback callback) {
+        List<Uri> batch = new ArrayList<>(uris);
+        int total = batch.size();
+        if (total == 0) {
+            callback.onComplete(0, 0);
+            return;
+        }
+
+        // Files are the unit of parallelism here; share the cores between the
+        // documents in flight instead of letting each PDF fan out over all of them.
+        // Passed with every parse, since the parser may be busy with another batch.
+        int pageWorkers = Math.max(1, parallelism / Math.min(parallelism, total));
+
+        BatchState state = new BatchState(total, callback);
+        for (Uri uri : batch) {
+            executor.execute(() -> importOne(uri, pageWorkers, state));
+        }
+    }
+
+    public void shutdown() {
+        cancellation.cancel();
+        executor.shutdownNow();
+    }
+
+    // Lets files already queued finish and save, then releases the worker threads
+    public void finishAndShutdown() {
+        executor.shutdown();
+    }
+
+    private void importOne(Uri uri, int pageWorkers, BatchState state) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state.fileDone(uri, false, e);
+            return;
+        }
+
+        List<FinancialData> extractedData;
+        try {
+            extractedData = documentParser.parseDocument(uri, state.callback.parseListenerFor(uri), cancellation, pageWorkers);
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "Parsing cancelled for " + uri);
+            permits.release();
+            state.fileDone(uri, false, e);
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing " + uri, e);
+            permits.release();
+            state.fileDone(uri, false, e);
+            return;
+        }
+
+        // The permit is held until the statement is saved, so parsed data that is still
+        // waiting for the store counts against the cap. The upload to Firestore follows on its own.
+        AtomicBoolean settled = new AtomicBoolean();
+        repository.saveImported(extractedData, (success, stored) -> {
+            if (settled.compareAndSet(false, true)) {
+                permits.release();
+                if (!success) {
+                    state.fileDone(uri, false, new Exception("Failed to save data"));
+                } else if (stored == 0 && !extractedData.isEmpty()) {
+                    // Nothing new was stored, so the file must not count as imported
+                    state.fileDone(uri, false, new Exception("This statement was already imported"));
+                } else {
+                    state.fileDone(uri, true, null);
+                }
+            }
+        });
+    }
+
+    private static class BatchState {
+        private final int total;
+        private final BatchImportCallback callback;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        BatchState(int total, BatchImportCallback callback) {
+            this.total = total;
+            this.callback = callback;
+        }
+
+        void fileDone(Uri uri, boolean success, Exception error) {
+            if (!success) {
+                failed.incrementAndGet();
+                callback.onFileFailed(uri, error);
+            }
+
+            int done = completed.incrementAndGet();
+            callback.onProgress(done, total);
+            if (done == total) {
+                callback.onComplete(total - failed.get(), failed.get());
+            }
+        }
+    }
+}
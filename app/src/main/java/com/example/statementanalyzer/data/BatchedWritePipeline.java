@@ -0,0 +1,135 @@
+package com.example.statementanalyzer.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Commits a list of writes in batches of at most batchSize, with no more than
+ * maxInFlight batches waiting on the network at once. A failed batch is retried
+ * with a growing delay. Once a batch has failed for good no new batches are
+ * started, and the completion fires a single time, after every batch already
+ * in flight has resolved.
+ *
+ * Retrying is only safe when a batch can be committed twice with the same
+ * effect. FirebaseManager makes sure of that by giving every document its ID
+ * before the first attempt.
+ */
+final class BatchedWritePipeline<T> {
+
+    // Firestore rejects a WriteBatch with more writes than this
+    static final int MAX_BATCH_SIZE = 500;
+
+    interface BatchWriter<T> {
+        // Must call result exactly once, on any thread
+        void commit(List<T> batch, BatchResult result);
+    }
+
+    interface BatchResult {
+        void onComplete(boolean success, Exception error);
+    }
+
+    interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    interface Completion {
+        // error is the last failure, or null when every batch was committed
+        void onComplete(boolean success, int committedBatches, Exception error);
+    }
+
+    private final BatchWriter<T> writer;
+    private final Scheduler scheduler;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+
+    private List<T> writes;
+    private Completion completion;
+    private int next;
+    private int inFlight;
+    private int committed;
+    private Exception failure;
+    private boolean finished;
+
+    BatchedWritePipeline(BatchWriter<T> writer, Scheduler scheduler, int batchSize, int maxInFlight,
+                         int maxAttempts, long retryDelayMillis) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.batchSize = batchSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    // One run per instance
+    void start(List<T> writes, Completion completion) {
+        synchronized (this) {
+            if (this.writes != null) {
+                throw new IllegalStateException("Pipeline already started");
+            }
+            this.writes = writes;
+            this.completion = completion;
+        }
+        pump();
+    }
+
+    // Starts batches up to the in-flight limit, or finishes once nothing is left to wait for.
+    // Writer calls happen outside the lock, so a writer that answers synchronously can't deadlock.
+    private void pump() {
+        List<List<T>> starting = new ArrayList<>();
+        boolean finishNow = false;
+        int committedBatches;
+        Exception error;
+        synchronized (this) {
+            while (failure == null && inFlight < maxInFlight && next < writes.size()) {
+                int end = Math.min(next + batchSize, writes.size());
+                starting.add(writes.subList(next, end));
+                next = end;
+                inFlight++;
+            }
+            if (inFlight == 0 && !finished && (failure != null || next >= writes.size())) {
+                finished = true;
+                finishNow = true;
+            }
+            committedBatches = committed;
+            error = failure;
+        }
+
+        for (List<T> batch : starting) {
+            attempt(batch, 1);
+        }
+        if (finishNow) {
+            completion.onComplete(error == null, committedBatches, error);
+        }
+    }
+
+    private void attempt(List<T> batch, int attempt) {
+        writer.commit(batch, (success, error) -> onBatchDone(batch, attempt, success, error));
+    }
+
+    private void onBatchDone(List<T> batch, int attempt, boolean success, Exception error) {
+        boolean retry;
+        synchronized (this) {
+            retry = !success && attempt < maxAttempts && failure == null;
+            if (!retry) {
+                inFlight--;
+                if (success) {
+                    committed++;
+                } else {
+                    failure = error != null ? error : new Exception("Batch commit failed");
+                }
+            }
+        }
+
+        if (retry) {
+            // 1x, 2x, 4x ... the base delay
+            scheduler.schedule(() -> attempt(batch, attempt + 1), retryDelayMillis << (attempt - 1));
+        } else {
+            pump();
+        }
+    }
+}
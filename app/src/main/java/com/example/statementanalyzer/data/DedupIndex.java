@@ -0,0 +1,368 @@
+package com.example.statementanalyzer.data;
+
+import android.util.Log;
+
+import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers every transaction that has been uploaded so overlapping statements
+ * (a monthly and a quarterly export of the same account) are not stored twice.
+ *
+ * Each row is reduced to a 64-bit fingerprint of (day, cents, normalized
+ * description, account, occurrence). The occurrence number keeps two genuine
+ * identical purchases on the same day apart. Fingerprints go into a sorted
+ * file plus a small append-only journal. An in-memory Bloom filter sits in
+ * front, so a new row is usually rejected as "not seen" without touching disk
+ * or Firestore. Only Bloom hits (real duplicates and about 1% false positives)
+ * pay for a binary search of the sorted file.
+ *
+ * screen() reserves the fingerprints of the rows it lets through. commit()
+ * persists them once the upload succeeded; release() forgets them if it failed.
+ */
+public class DedupIndex {
+
+    private static final String TAG = "DedupIndex";
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_BLOOM_CAPACITY = 64 * 1024;
+    // Journal entries are folded into the sorted file once there are this many
+    private static final int MERGE_THRESHOLD = 8192;
+
+    private final File sortedFile;
+    private final File journalFile;
+
+    private LongBloomFilter bloomFilter;
+    private long sortedCount;
+    private final Set<Long> journal = new HashSet<>();
+    private final Set<Long> reserved = new HashSet<>();
+    private boolean loaded;
+
+    public static class Screening {
+        private final List<Transaction> unique;
+        private final long[] fingerprints;
+        private final int duplicateCount;
+
+        Screening(List<Transaction> unique, long[] fingerprints, int duplicateCount) {
+            this.unique = unique;
+            this.fingerprints = fingerprints;
+            this.duplicateCount = duplicateCount;
+        }
+
+        // Rows not seen in any earlier upload, in their original order
+        public List<Transaction> getUnique() {
+            return unique;
+        }
+
+        public int getDuplicateCount() {
+            return duplicateCount;
+        }
+    }
+
+    public DedupIndex(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+        }
+        this.sortedFile = new File(directory, "fingerprints.bin");
+        this.journalFile = new File(directory, "fingerprints.journal");
+    }
+
+    public synchronized Screening screen(List<Transaction> transactions, String account) {
+        ensureLoaded();
+
+        List<Transaction> unique = new ArrayList<>(transactions.size());
+        long[] fingerprints = new long[transactions.size()];
+        Map<Long, Integer> occurrences = new HashMap<>();
+        int duplicates = 0;
+
+        try (RandomAccessFile sorted = sortedCount > 0 ? new RandomAccessFile(sortedFile, "r") : null) {
+            FileChannel channel = sorted == null ? null : sorted.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+            for (Transaction transaction : transactions) {
+                long base = fingerprint(transaction, account);
+                Integer seen = occurrences.put(base, occurrences.getOrDefault(base, 0) + 1);
+                long fingerprint = withOccurrence(base, seen == null ? 0 : seen);
+
+                if (contains(fingerprint, channel, buffer)) {
+                    duplicates++;
+                    continue;
+                }
+                fingerprints[unique.size()] = fingerprint;
+                unique.add(transaction);
+                reserved.add(fingerprint);
+                bloomFilter.add(fingerprint);
+            }
+        } catch (IOException e) {
+            // Better to upload a duplicate than to lose a row
+            Log.e(TAG, "Dedup lookup failed; letting every row through", e);
+            for (int i = 0; i < unique.size(); i++) {
+                reserved.remove(fingerprints[i]);
+            }
+            return new Screening(new ArrayList<>(transactions), new long[0], 0);
+        }
+
+        return new Screening(unique, Arrays.copyOf(fingerprints, unique.size()), duplicates);
+    }
+
+    public synchronized void commit(Screening screening) {
+        ensureLoaded();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(journalFile, true)))) {
+            for (long fingerprint : screening.fingerprints) {
+                out.writeLong(fingerprint);
+                journal.add(fingerprint);
+                reserved.remove(fingerprint);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not persist fingerprints", e);
+            return;
+        }
+
+        if (journal.size() >= MERGE_THRESHOLD) {
+            try {
+                mergeJournal();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not merge fingerprint journal", e);
+            }
+        }
+        growBloomFilterIfNeeded();
+    }
+
+    // The upload failed; the Bloom filter keeps the bits, which only costs a disk lookup later
+    public synchronized void release(Screening screening) {
+        for (long fingerprint : screening.fingerprints) {
+            reserved.remove(fingerprint);
+        }
+    }
+
+    // Forgets every fingerprint, once the statements they came from have been deleted
+    public synchronized void clear() {
+        ensureLoaded();
+        journal.clear();
+        if (journalFile.exists() && !journalFile.delete()) {
+            Log.w(TAG, "Could not delete " + journalFile);
+        }
+        if (sortedFile.exists() && !sortedFile.delete()) {
+            Log.w(TAG, "Could not delete " + sortedFile);
+        }
+        sortedCount = sortedFile.length() / Long.BYTES;
+        rebuildBloomFilter(MIN_BLOOM_CAPACITY);
+    }
+
+    public synchronized long size() {
+        ensureLoaded();
+        return sortedCount + journal.size();
+    }
+
+    static long fingerprint(Transaction transaction, String account) {
+        Date date = transaction.getDate();
+        return fingerprint(date == null ? TransactionTable.NO_DATE : DateUtils.toEpochDay(date),
+                CurrencyUtils.toCents(transaction.getAmount()), transaction.getDescription(), account);
+    }
+
+    // Descriptions are compared case-insensitively with punctuation and spacing folded,
+    // so "AMAZON.COM  *MKTP" and "Amazon.com *Mktp" match; hashed without allocating
+    static long fingerprint(int epochDay, long cents, CharSequence description, String account) {
+        long hash = 0xcbf29ce484222325L;
+        if (description != null) {
+            boolean started = false;
+            boolean pendingSeparator = false;
+            for (int i = 0; i < description.length(); i++) {
+                char c = Character.toLowerCase(description.charAt(i));
+                if (Character.isLetterOrDigit(c)) {
+                    if (pendingSeparator && started) {
+                        hash = (hash ^ ' ') * 0x100000001b3L;
+                    }
+                    started = true;
+                    pendingSeparator = false;
+                    hash = (hash ^ c) * 0x100000001b3L;
+                } else {
+                    pendingSeparator = true;
+                }
+            }
+        }
+        hash = (hash ^ 0x1F) * 0x100000001b3L;
+        if (account != null) {
+            for (int i = 0; i < account.length(); i++) {
+                hash = (hash ^ account.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        hash = mix(hash ^ epochDay);
+        return mix(hash ^ cents);
+    }
+
+    static long withOccurrence(long fingerprint, int occurrence) {
+        return occurrence == 0 ? fingerprint : mix(fingerprint + occurrence);
+    }
+
+    // SplitMix64 finalizer, so Bloom probes and file order see uniformly spread bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private boolean contains(long fingerprint, FileChannel sorted, ByteBuffer buffer) throws IOException {
+        if (!bloomFilter.mightContain(fingerprint)) {
+            return false;
+        }
+        if (reserved.contains(fingerprint) || journal.contains(fingerprint)) {
+            return true;
+        }
+        return sorted != null && searchSorted(sorted, fingerprint, buffer);
+    }
+
+    private boolean searchSorted(FileChannel channel, long fingerprint, ByteBuffer buffer) throws IOException {
+        long low = 0;
+        long high = sortedCount - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            buffer.clear();
+            channel.read(buffer, mid * Long.BYTES);
+            long value = buffer.getLong(0);
+            if (value < fingerprint) {
+                low = mid + 1;
+            } else if (value > fingerprint) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        sortedCount = sortedFile.length() / Long.BYTES;
+        try {
+            readJournal();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read fingerprint journal", e);
+        }
+        rebuildBloomFilter(Math.max(MIN_BLOOM_CAPACITY, 2 * (sortedCount + journal.size())));
+    }
+
+    private void readJournal() throws IOException {
+        if (!journalFile.exists()) {
+            return;
+        }
+        // A torn final write leaves a partial record; ignore it
+        long records = journalFile.length() / Long.BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            for (long i = 0; i < records; i++) {
+                journal.add(in.readLong());
+            }
+        } catch (EOFException e) {
+            Log.w(TAG, "Fingerprint journal truncated", e);
+        }
+    }
+
+    private void growBloomFilterIfNeeded() {
+        long count = sortedCount + journal.size() + reserved.size();
+        if (count > bloomFilter.capacity()) {
+            rebuildBloomFilter(2 * count);
+        }
+    }
+
+    // Streams the sorted file once; memory stays at the filter plus a read buffer
+    private void rebuildBloomFilter(long capacity) {
+        bloomFilter = new LongBloomFilter(capacity, FALSE_POSITIVE_RATE);
+        if (sortedCount > 0) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sortedFile)))) {
+                for (long i = 0; i < sortedCount; i++) {
+                    bloomFilter.add(in.readLong());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read fingerprints", e);
+            }
+        }
+        for (long fingerprint : journal) {
+            bloomFilter.add(fingerprint);
+        }
+        for (long fingerprint : reserved) {
+            bloomFilter.add(fingerprint);
+        }
+    }
+
+    // Two-way merge of the sorted file with the sorted journal into a new file
+    private void mergeJournal() throws IOException {
+        long[] pending = new long[journal.size()];
+        int n = 0;
+        for (long fingerprint : journal) {
+            pending[n++] = fingerprint;
+        }
+        Arrays.sort(pending);
+
+        File merged = new File(sortedFile.getPath() + ".tmp");
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged)));
+             DataInputStream in = sortedCount > 0
+                     ? new DataInputStream(new BufferedInputStream(new FileInputStream(sortedFile))) : null) {
+            long remaining = sortedCount;
+            long current = remaining > 0 ? in.readLong() : 0;
+            int p = 0;
+            while (remaining > 0 || p < pending.length) {
+                long next;
+                if (remaining > 0 && (p == pending.length || current <= pending[p])) {
+                    next = current;
+                    if (p < pending.length && current == pending[p]) {
+                        p++;
+                    }
+                    if (--remaining > 0) {
+                        current = in.readLong();
+                    }
+                } else {
+                    next = pending[p++];
+                }
+                out.writeLong(next);
+                count++;
+            }
+        }
+
+        if (!merged.renameTo(sortedFile)) {
+            merged.delete();
+            throw new IOException("Could not replace " + sortedFile);
+        }
+        sortedCount = count;
+        journal.clear();
+        if (!journalFile.delete()) {
+            Log.w(TAG, "Could not truncate " + journalFile);
+        }
+    }
+
+    // Visible for tests: forces the journal into the sorted file
+    synchronized void compact() throws IOException {
+        ensureLoaded();
+        if (!journal.isEmpty()) {
+            mergeJournal();
+        }
+    }
+}
@@ -1,29 +1,63 @@
 package com.example.statementanalyzer.data;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import com.example.statementanalyzer.model.CategoryTotals;
 import com.example.statementanalyzer.model.FinancialData;
 import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class FirebaseManager {
 
     private static final String TAG = "FirebaseManager";
     private static final String COLLECTION_FINANCIAL_DATA = "financial_data";
+    // One timestamp-only document per statement removed by clearAllData, so other devices drop it too
+    private static final String COLLECTION_TOMBSTONES = "tombstones";
+    // Server commit time on statements and tombstones; delta sync queries past it
+    private static final String FIELD_TIMESTAMP = "timestamp";
+    // Legacy layout: one document per transaction. Only read (and migrated) now.
     private static final String SUBCOLLECTION_TRANSACTIONS = "transactions";
+    // Current layout: TransactionChunks documents, each holding a few hundred rows
+    private static final String SUBCOLLECTION_CHUNKS = "chunks";
+    // Set on statements stored in chunks; legacy statements don't have it
+    private static final String FIELD_CHUNK_FORMAT = "chunkFormat";
+    private static final String FIELD_CHUNK_COUNT = "chunkCount";
+
+    // Each batch holds up to 500 writes, so this bounds what Firestore has queued for the upload
+    private static final int MAX_BATCHES_IN_FLIGHT = 4;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
 
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     public interface FirebaseCallback {
         void onSuccess(boolean success);
@@ -33,6 +67,10 @@ public class FirebaseManager {
         void onDataLoaded(List<FinancialData> financialDataList);
     }
 
+    interface ChangesCallback {
+        void onChanges(RemoteChanges changes);
+    }
+
     public FirebaseManager() {
         this.db = FirebaseFirestore.getInstance();
         this.auth = FirebaseAuth.getInstance();
@@ -51,6 +89,26 @@ public class FirebaseManager {
         }
     }
 
+    // null until the anonymous sign-in has gone through
+    public String getUserId() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : null;
+    }
+
+    /**
+     * Writes every statement and its transaction chunks with WriteBatch commits
+     * of up to 500 documents. A 2,000-row statement is 6 documents: itself and
+     * five chunks. Document IDs are assigned on the client before anything is
+     * sent, so a retried batch overwrites its own documents and never
+     * duplicates them. A
+     * statement that already has an id (one saved locally first) keeps it, so
+     * uploading it again replaces the same document. The callback fires once,
+     * after every batch has either been committed or given up.
+     *
+     * All chunks are committed before any statement document. Batches commit
+     * out of order, and a reader that finds a statement must find every chunk
+     * it counts.
+     */
     public void uploadData(List<FinancialData> financialDataList, FirebaseCallback callback) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
@@ -59,112 +117,271 @@ public class FirebaseManager {
         }
 
         String userId = currentUser.getUid();
+        List<PendingWrite> chunkWrites = new ArrayList<>();
+        List<PendingWrite> statementWrites = new ArrayList<>(financialDataList.size());
 
-        // Upload each financial data object
         for (FinancialData data : financialDataList) {
-            // Create financial data document
             Map<String, Object> dataMap = new HashMap<>();
             dataMap.put("startDate", data.getStartDate());
             dataMap.put("endDate", data.getEndDate());
             dataMap.put("totalIncome", data.getTotalIncome());
             dataMap.put("totalExpenses", data.getTotalExpenses());
-            dataMap.put("categoryTotals", data.getCategoryTotals());
-            dataMap.put("timestamp", new Date());
+            // Snapshot the live view; the write is serialized off this thread
+            dataMap.put("categoryTotals", new HashMap<>(data.getCategoryTotals()));
+            // The server's clock, so every device compares watermarks on the same scale
+            dataMap.put(FIELD_TIMESTAMP, FieldValue.serverTimestamp());
+
+            List<Map<String, Object>> chunks = TransactionChunks.encode(data.getTransactionTable());
+            dataMap.put(FIELD_CHUNK_FORMAT, (long) TransactionChunks.FORMAT_VERSION);
+            dataMap.put(FIELD_CHUNK_COUNT, (long) chunks.size());
 
-            // Add document to Firestore
-            db.collection("users")
+            CollectionReference statementsRef = db.collection("users")
                     .document(userId)
-                    .collection(COLLECTION_FINANCIAL_DATA)
-                    .add(dataMap)
-                    .addOnSuccessListener(documentReference -> {
-                        // Upload transactions as subcollection
-                        uploadTransactions(documentReference, data.getTransactions(), callback);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error uploading financial data", e);
-                        callback.onSuccess(false);
-                    });
+                    .collection(COLLECTION_FINANCIAL_DATA);
+            DocumentReference docRef;
+            if (data.getId() != null) {
+                docRef = statementsRef.document(data.getId());
+            } else {
+                docRef = statementsRef.document();
+                data.setId(docRef.getId());
+            }
+            addChunkWrites(chunkWrites, docRef, chunks);
+            statementWrites.add(PendingWrite.set(docRef, dataMap));
+        }
+
+        commitAll(chunkWrites, (chunksWritten, chunkBatches, chunkError) -> {
+            if (!chunksWritten) {
+                // No statement points at the chunks that did land; the next sync writes them again
+                Log.e(TAG, "Error uploading transaction chunks after " + chunkBatches + " batches", chunkError);
+                callback.onSuccess(false);
+                return;
+            }
+            commitAll(statementWrites, (success, committedBatches, error) -> {
+                if (!success) {
+                    Log.e(TAG, "Error uploading financial data after " + committedBatches + " batches", error);
+                }
+                callback.onSuccess(success);
+            });
+        });
+    }
+
+    private void commitAll(List<PendingWrite> writes, BatchedWritePipeline.Completion completion) {
+        new BatchedWritePipeline<PendingWrite>(this::commitBatch, mainHandler::postDelayed,
+                BatchedWritePipeline.MAX_BATCH_SIZE, MAX_BATCHES_IN_FLIGHT, MAX_BATCH_ATTEMPTS, RETRY_DELAY_MILLIS)
+                .start(writes, completion);
+    }
+
+    // Chunk ids follow the chunk index, so writing a statement again overwrites its own chunks.
+    // Leftover chunks past chunkCount from a longer earlier version are ignored by readers.
+    private static void addChunkWrites(List<PendingWrite> writes, DocumentReference docRef,
+                                       List<Map<String, Object>> chunks) {
+        CollectionReference chunksRef = docRef.collection(SUBCOLLECTION_CHUNKS);
+        for (int i = 0; i < chunks.size(); i++) {
+            writes.add(PendingWrite.set(chunksRef.document(TransactionChunks.chunkId(i)), chunks.get(i)));
         }
     }
 
-    private void uploadTransactions(DocumentReference docRef, List<Transaction> transactions, FirebaseCallback callback) {
-        // Create a batch to upload all transactions at once
-        for (Transaction transaction : transactions) {
-            Map<String, Object> transactionMap = new HashMap<>();
-            transactionMap.put("date", transaction.getDate());
-            transactionMap.put("description", transaction.getDescription());
-            transactionMap.put("amount", transaction.getAmount());
-            transactionMap.put("category", transaction.getCategory());
-
-            docRef.collection(SUBCOLLECTION_TRANSACTIONS)
-                    .add(transactionMap)
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error uploading transaction", e);
-                        callback.onSuccess(false);
-                    });
+    private void commitBatch(List<PendingWrite> writes, BatchedWritePipeline.BatchResult result) {
+        WriteBatch batch = db.batch();
+        for (PendingWrite write : writes) {
+            if (write.data == null) {
+                batch.delete(write.reference);
+            } else if (write.merge) {
+                batch.set(write.reference, write.data, SetOptions.merge());
+            } else {
+                batch.set(write.reference, write.data);
+            }
+        }
+        batch.commit().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Batch of " + writes.size() + " writes failed", task.getException());
+            }
+            result.onComplete(task.isSuccessful(), task.getException());
+        });
+    }
+
+    private static class PendingWrite {
+        final DocumentReference reference;
+        // null deletes the document
+        final Map<String, Object> data;
+        final boolean merge;
+
+        private PendingWrite(DocumentReference reference, Map<String, Object> data, boolean merge) {
+            this.reference = reference;
+            this.data = data;
+            this.merge = merge;
+        }
+
+        static PendingWrite set(DocumentReference reference, Map<String, Object> data) {
+            return new PendingWrite(reference, data, false);
+        }
+
+        static PendingWrite merge(DocumentReference reference, Map<String, Object> data) {
+            return new PendingWrite(reference, data, true);
         }
 
-        callback.onSuccess(true);
+        static PendingWrite delete(DocumentReference reference) {
+            return new PendingWrite(reference, null, false);
+        }
     }
 
-    public void fetchFinancialData(DataCallback callback) {
+    /**
+     * Fetches what changed on the server after watermarkNanos (0 for
+     * everything): statements committed since, with their transactions, and
+     * the ids of statements deleted since. Both queries go to the server and
+     * filter on the commit timestamp, so when nothing changed the check is
+     * two empty results and no documents.
+     *
+     * Statements aren't edited once uploaded, so a changed statement the
+     * device already has is its own upload coming back, and its chunks aren't
+     * fetched again. Per-row statements are still read in full so they get
+     * migrated to chunks. The transaction fetches run together, and if any
+     * fails the whole result is marked incomplete, so the caller never
+     * advances its watermark past data it didn't get.
+     */
+    void fetchChanges(long watermarkNanos, Set<String> knownIds, ChangesCallback callback) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
-            callback.onDataLoaded(new ArrayList<>());
+            callback.onChanges(RemoteChanges.failed(watermarkNanos));
             return;
         }
 
-        String userId = currentUser.getUid();
+        DocumentReference userRef = db.collection("users").document(currentUser.getUid());
+        Query statements = userRef.collection(COLLECTION_FINANCIAL_DATA).orderBy(FIELD_TIMESTAMP);
+        Query tombstones = userRef.collection(COLLECTION_TOMBSTONES).orderBy(FIELD_TIMESTAMP);
+        if (watermarkNanos > 0) {
+            Timestamp since = toTimestamp(watermarkNanos);
+            statements = statements.whereGreaterThan(FIELD_TIMESTAMP, since);
+            tombstones = tombstones.whereGreaterThan(FIELD_TIMESTAMP, since);
+        }
 
-        db.collection("users")
-                .document(userId)
-                .collection(COLLECTION_FINANCIAL_DATA)
-                .orderBy("timestamp")
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<FinancialData> financialDataList = new ArrayList<>();
+        // Offline, a cached answer would hold pending writes without server times; fail instead
+        Task<QuerySnapshot> statementQuery = statements.get(Source.SERVER);
+        Task<QuerySnapshot> tombstoneQuery = tombstones.get(Source.SERVER);
+        Tasks.whenAll(statementQuery, tombstoneQuery).addOnCompleteListener(queries -> {
+            if (!queries.isSuccessful()) {
+                Log.w(TAG, "Error checking for remote changes", queries.getException());
+                callback.onChanges(RemoteChanges.failed(watermarkNanos));
+                return;
+            }
+
+            long watermark = watermarkNanos;
+            List<String> deletedIds = new ArrayList<>();
+            for (QueryDocumentSnapshot document : tombstoneQuery.getResult()) {
+                deletedIds.add(document.getId());
+                watermark = Math.max(watermark, toNanos(document.getTimestamp(FIELD_TIMESTAMP)));
+            }
+
+            List<Task<FinancialData>> fetches = new ArrayList<>();
+            for (QueryDocumentSnapshot document : statementQuery.getResult()) {
+                watermark = Math.max(watermark, toNanos(document.getTimestamp(FIELD_TIMESTAMP)));
+                boolean chunked = document.getLong(FIELD_CHUNK_FORMAT) != null;
+                if (chunked && knownIds.contains(document.getId())) {
+                    continue;
+                }
+                fetches.add(fetchStatement(document));
+            }
+
+            long newWatermark = watermark;
+            // Results come back in the order of the fetches; no statements means an empty list right away
+            Tasks.<FinancialData>whenAllSuccess(fetches).addOnCompleteListener(joined -> {
+                if (!joined.isSuccessful()) {
+                    Log.w(TAG, "Error fetching changed statements", joined.getException());
+                    callback.onChanges(RemoteChanges.failed(watermarkNanos));
+                    return;
+                }
+                callback.onChanges(new RemoteChanges(joined.getResult(), deletedIds, newWatermark, true));
+            });
+        });
+    }
 
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        // Parse financial data
-                        FinancialData data = new FinancialData();
-                        data.setStartDate(document.getDate("startDate"));
-                        data.setEndDate(document.getDate("endDate"));
-                        data.setTotalIncome(document.getDouble("totalIncome"));
-                        data.setTotalExpenses(document.getDouble("totalExpenses"));
-
-                        // Parse category totals
-                        Map<String, Double> categoryTotals = new HashMap<>();
-                        Map<String, Object> categoryMap = (Map<String, Object>) document.get("categoryTotals");
-                        if (categoryMap != null) {
-                            for (Map.Entry<String, Object> entry : categoryMap.entrySet()) {
-                                categoryTotals.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
-                            }
-                        }
-                        data.setCategoryTotals(categoryTotals);
+    private Task<FinancialData> fetchStatement(DocumentSnapshot document) {
+        FinancialData data = new FinancialData();
+        data.setId(document.getId());
+        data.setStartDate(document.getDate("startDate"));
+        data.setEndDate(document.getDate("endDate"));
+        data.setTotalIncome(document.getDouble("totalIncome"));
+        data.setTotalExpenses(document.getDouble("totalExpenses"));
+
+        // Parse category totals
+        CategoryTotals categoryTotals = new CategoryTotals();
+        Map<String, Object> categoryMap = (Map<String, Object>) document.get("categoryTotals");
+        if (categoryMap != null) {
+            for (Map.Entry<String, Object> entry : categoryMap.entrySet()) {
+                categoryTotals.add(entry.getKey(),
+                        CurrencyUtils.toCents(((Number) entry.getValue()).doubleValue()));
+            }
+        }
+        data.setCategoryCents(categoryTotals);
+
+        Long chunkFormat = document.getLong(FIELD_CHUNK_FORMAT);
+        if (chunkFormat != null) {
+            Long chunkCount = document.getLong(FIELD_CHUNK_COUNT);
+            return fetchChunks(document.getReference(), data, chunkCount != null ? chunkCount : 0);
+        }
+        return fetchLegacyTransactions(document.getReference(), data);
+    }
+
+    // Commit times in nanoseconds since the epoch; a millisecond Date would round and re-fetch the newest change
+    static long toNanos(Timestamp timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        return timestamp.getSeconds() * 1_000_000_000L + timestamp.getNanoseconds();
+    }
 
-                        // Fetch transactions for this financial data
-                        fetchTransactions(document.getReference(), data, financialDataList, callback);
+    static Timestamp toTimestamp(long nanos) {
+        return new Timestamp(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    // Fails when the chunks can't be fetched or some are missing, so the statement is
+    // tried again on the next sync. Chunks that can't be decoded won't get better on
+    // retry; those leave the statement empty.
+    private Task<FinancialData> fetchChunks(DocumentReference docRef, FinancialData data, long chunkCount) {
+        return docRef.collection(SUBCOLLECTION_CHUNKS)
+                .get()
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
                     }
 
-                    // If no financial data found, return empty list
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        callback.onDataLoaded(financialDataList);
+                    TransactionTable table = new TransactionTable();
+                    List<Map<String, Object>> chunks = new ArrayList<>();
+                    Set<Long> indexes = new HashSet<>();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        Long index = document.getLong(TransactionChunks.FIELD_INDEX);
+                        if (index != null && index >= 0 && index < chunkCount && indexes.add(index)) {
+                            chunks.add(document.getData());
+                        }
                     }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error fetching financial data", e);
-                    callback.onDataLoaded(new ArrayList<>());
+                    if (chunks.size() < chunkCount) {
+                        // Partly written or partly deleted; the watermark stays put and the next sync asks again
+                        throw new IOException("Statement " + docRef.getId() + " has " + chunks.size()
+                                + " of " + chunkCount + " transaction chunks");
+                    }
+                    try {
+                        TransactionChunks.decode(chunks, table);
+                    } catch (IllegalArgumentException e) {
+                        Log.e(TAG, "Unreadable transaction chunks in " + docRef.getId(), e);
+                        table.clear();
+                    }
+                    data.setTransactionTable(table);
+                    return data;
                 });
     }
 
-    private void fetchTransactions(DocumentReference docRef, FinancialData data,
-                                   List<FinancialData> financialDataList, DataCallback callback) {
-        docRef.collection(SUBCOLLECTION_TRANSACTIONS)
+    // Fails when the rows can't be fetched, like fetchChunks
+    private Task<FinancialData> fetchLegacyTransactions(DocumentReference docRef, FinancialData data) {
+        return docRef.collection(SUBCOLLECTION_TRANSACTIONS)
                 .get()
-                .addOnSuccessListener(transactionSnapshots -> {
-                    List<Transaction> transactions = new ArrayList<>();
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
 
-                    for (QueryDocumentSnapshot document : transactionSnapshots) {
+                    List<Transaction> transactions = new ArrayList<>();
+                    List<DocumentReference> rows = new ArrayList<>();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
                         Transaction transaction = new Transaction();
                         transaction.setDate(document.getDate("date"));
                         transaction.setDescription(document.getString("description"));
@@ -172,19 +389,57 @@ public class FirebaseManager {
                         transaction.setCategory(document.getString("category"));
 
                         transactions.add(transaction);
+                        rows.add(document.getReference());
                     }
 
                     data.setTransactions(transactions);
-                    financialDataList.add(data);
+                    // A cached read may be missing rows, and the chunks would then lose them for good
+                    if (!task.getResult().getMetadata().isFromCache()) {
+                        migrateToChunks(docRef, data.getTransactionTable(), rows);
+                    }
+                    return data;
+                });
+    }
 
-                    // Return the updated list
-                    callback.onDataLoaded(financialDataList);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error fetching transactions", e);
-                    // Still add the financial data even without transactions
-                    financialDataList.add(data);
-                    callback.onDataLoaded(financialDataList);
+    /**
+     * Rewrites a per-row statement as chunks. The chunks are committed first,
+     * one batch at a time, and the statement is only flagged as chunked by the
+     * last batch, so a reader never sees the flag without every chunk behind
+     * it. The row documents are deleted after that. If anything fails the
+     * statement stays readable in whichever layout its flag says, and the
+     * next fetch tries again; chunk ids are fixed, so a retry overwrites.
+     */
+    private void migrateToChunks(DocumentReference docRef, TransactionTable table, List<DocumentReference> rows) {
+        List<Map<String, Object>> chunks = TransactionChunks.encode(table);
+        List<PendingWrite> writes = new ArrayList<>();
+        addChunkWrites(writes, docRef, chunks);
+
+        Map<String, Object> flag = new HashMap<>();
+        flag.put(FIELD_CHUNK_FORMAT, (long) TransactionChunks.FORMAT_VERSION);
+        flag.put(FIELD_CHUNK_COUNT, (long) chunks.size());
+        writes.add(PendingWrite.merge(docRef, flag));
+
+        // One batch in flight keeps the batches, and so the flag, in order
+        new BatchedWritePipeline<PendingWrite>(this::commitBatch, mainHandler::postDelayed,
+                BatchedWritePipeline.MAX_BATCH_SIZE, 1, MAX_BATCH_ATTEMPTS, RETRY_DELAY_MILLIS)
+                .start(writes, (success, committedBatches, error) -> {
+                    if (!success) {
+                        Log.w(TAG, "Migrating " + docRef.getId() + " to chunks failed; will retry", error);
+                        return;
+                    }
+
+                    List<PendingWrite> deletes = new ArrayList<>(rows.size());
+                    for (DocumentReference row : rows) {
+                        deletes.add(PendingWrite.delete(row));
+                    }
+                    commitAll(deletes, (deleted, batches, deleteError) -> {
+                        if (deleted) {
+                            Log.d(TAG, "Migrated " + docRef.getId() + ": " + rows.size()
+                                    + " rows into " + chunks.size() + " chunks");
+                        } else {
+                            Log.w(TAG, "Some legacy rows of " + docRef.getId() + " were left behind", deleteError);
+                        }
+                    });
                 });
     }
 
@@ -203,46 +458,48 @@ public class FirebaseManager {
                 .collection(COLLECTION_FINANCIAL_DATA)
                 .get()
                 .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        callback.onSuccess(true);
-                        return;
-                    }
+                    List<Task<Void>> deletions = new ArrayList<>();
+                    CollectionReference tombstonesRef = db.collection("users")
+                            .document(userId)
+                            .collection(COLLECTION_TOMBSTONES);
 
-                    int totalDocuments = queryDocumentSnapshots.size();
-                    final int[] deletedCount = {0};
-
-                    // Delete each document and its subcollections
+                    // Delete each document after both of its subcollections, whichever layout it is in.
+                    // The tombstone is written in the same batch, so other devices learn of every delete.
                     for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        // First delete all transactions in subcollection
-                        document.getReference().collection(SUBCOLLECTION_TRANSACTIONS)
-                                .get()
-                                .addOnSuccessListener(transactionSnapshots -> {
-                                    for (QueryDocumentSnapshot transactionDoc : transactionSnapshots) {
-                                        transactionDoc.getReference().delete();
-                                    }
-
-                                    // Then delete the main document
-                                    document.getReference().delete()
-                                            .addOnSuccessListener(aVoid -> {
-                                                deletedCount[0]++;
-                                                if (deletedCount[0] >= totalDocuments) {
-                                                    callback.onSuccess(true);
-                                                }
-                                            })
-                                            .addOnFailureListener(e -> {
-                                                Log.e(TAG, "Error deleting document", e);
-                                                callback.onSuccess(false);
-                                            });
-                                })
-                                .addOnFailureListener(e -> {
-                                    Log.e(TAG, "Error getting transactions for deletion", e);
-                                    callback.onSuccess(false);
-                                });
+                        DocumentReference docRef = document.getReference();
+                        deletions.add(Tasks.whenAll(
+                                deleteCollection(docRef.collection(SUBCOLLECTION_TRANSACTIONS)),
+                                deleteCollection(docRef.collection(SUBCOLLECTION_CHUNKS)))
+                                .onSuccessTask(aVoid -> {
+                                    Map<String, Object> tombstone = new HashMap<>();
+                                    tombstone.put(FIELD_TIMESTAMP, FieldValue.serverTimestamp());
+                                    return db.batch()
+                                            .delete(docRef)
+                                            .set(tombstonesRef.document(docRef.getId()), tombstone)
+                                            .commit();
+                                }));
                     }
+
+                    Tasks.whenAll(deletions).addOnCompleteListener(task -> {
+                        if (!task.isSuccessful()) {
+                            Log.e(TAG, "Error deleting documents", task.getException());
+                        }
+                        callback.onSuccess(task.isSuccessful());
+                    });
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error getting documents for deletion", e);
                     callback.onSuccess(false);
                 });
     }
-}
\ No newline at end of file
+
+    private static Task<Void> deleteCollection(CollectionReference collection) {
+        return collection.get().onSuccessTask(snapshots -> {
+            List<Task<Void>> deletes = new ArrayList<>();
+            for (QueryDocumentSnapshot document : snapshots) {
+                deletes.add(document.getReference().delete());
+            }
+            return Tasks.whenAll(deletes);
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.statementanalyzer.data;
+
+/**
+ * Bloom filter over 64-bit fingerprints that are already well mixed, so the
+ * probe positions come from the two halves of the value (Kirsch-Mitzenmacher
+ * double hashing) instead of rehashing. Roughly 9.6 bits per entry at 1%.
+ */
+final class LongBloomFilter {
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+
+    LongBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bits = Math.max(64, bits);
+
+        this.words = new long[(int) ((bits + 63) >>> 6)];
+        this.bitCount = (long) words.length << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * ln2));
+        this.capacity = n;
+    }
+
+    // Insertions the filter was sized for; past this the false-positive rate climbs
+    long capacity() {
+        return capacity;
+    }
+
+    void add(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
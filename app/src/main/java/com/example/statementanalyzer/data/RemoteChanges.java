@@ -0,0 +1,36 @@
+package com.example.statementanalyzer.data;
+
+import com.example.statementanalyzer.model.FinancialData;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One answer from FirebaseManager.fetchChanges: statements and deletions the
+ * server committed after the watermark the request was made with, and the
+ * newest commit time among them. An incomplete answer carries nothing and
+ * must not be applied; the old watermark makes the next sync ask again.
+ */
+final class RemoteChanges {
+
+    final List<FinancialData> statements;
+    final List<String> deletedIds;
+    // Nanoseconds since the epoch; the newest commit time seen, or the request's own watermark
+    final long watermarkNanos;
+    final boolean complete;
+
+    RemoteChanges(List<FinancialData> statements, List<String> deletedIds, long watermarkNanos, boolean complete) {
+        this.statements = statements;
+        this.deletedIds = deletedIds;
+        this.watermarkNanos = watermarkNanos;
+        this.complete = complete;
+    }
+
+    static RemoteChanges failed(long watermarkNanos) {
+        return new RemoteChanges(Collections.emptyList(), Collections.emptyList(), watermarkNanos, false);
+    }
+
+    boolean isEmpty() {
+        return statements.isEmpty() && deletedIds.isEmpty();
+    }
+}
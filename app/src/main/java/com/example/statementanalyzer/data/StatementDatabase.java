@@ -0,0 +1,282 @@
+package com.example.statementanalyzer.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-device copy of every statement and transaction. Screens read from here,
+ * so they open without waiting on the network; SyncEngine keeps it in step
+ * with Firestore in the background.
+ *
+ * Transaction dates are epoch days and amounts are cents, the same units
+ * TransactionTable uses, so loading a statement fills its table without
+ * building a Date or a Transaction per row. Statement start and end dates are
+ * epoch milliseconds. Category totals aren't stored; they are summed from the
+ * rows on load.
+ */
+public class StatementDatabase extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "statements.db";
+    private static final int DATABASE_VERSION = 2;
+
+    static final String TABLE_STATEMENTS = "statements";
+    static final String TABLE_TRANSACTIONS = "transactions";
+    // Per signed-in user: the newest server commit time this store has caught up to
+    static final String TABLE_WATERMARKS = "sync_watermarks";
+
+    // Statement rows written here but not yet confirmed by Firestore
+    static final int SYNC_PENDING = 0;
+    static final int SYNC_DONE = 1;
+
+    public StatementDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STATEMENTS + " ("
+                + "id TEXT PRIMARY KEY NOT NULL, "
+                + "start_date INTEGER, "
+                + "end_date INTEGER, "
+                + "income_cents INTEGER NOT NULL, "
+                + "expense_cents INTEGER NOT NULL, "
+                + "created_at INTEGER NOT NULL, "
+                + "sync_state INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_TRANSACTIONS + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "statement_id TEXT NOT NULL REFERENCES " + TABLE_STATEMENTS + "(id) ON DELETE CASCADE, "
+                + "date INTEGER NOT NULL, "
+                + "description TEXT, "
+                + "amount_cents INTEGER NOT NULL, "
+                + "category TEXT)");
+
+        // Date ranges for charts, per-category trends, and loading one statement's rows
+        db.execSQL("CREATE INDEX idx_transactions_date ON " + TABLE_TRANSACTIONS + "(date)");
+        db.execSQL("CREATE INDEX idx_transactions_category_date ON " + TABLE_TRANSACTIONS + "(category, date)");
+        db.execSQL("CREATE INDEX idx_transactions_statement ON " + TABLE_TRANSACTIONS + "(statement_id)");
+        db.execSQL("CREATE INDEX idx_statements_sync ON " + TABLE_STATEMENTS + "(sync_state)");
+        createWatermarks(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Stores from version 1 start without a watermark and catch up with one full sync
+            createWatermarks(db);
+        }
+    }
+
+    private static void createWatermarks(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_WATERMARKS + " ("
+                + "user_id TEXT PRIMARY KEY NOT NULL, "
+                + "watermark_nanos INTEGER NOT NULL)");
+    }
+
+    public boolean hasStatements() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_STATEMENTS) > 0;
+    }
+
+    // The statement must already have an id. Replaces a statement with the same id.
+    public void insert(FinancialData data, long createdAtMillis, int syncState) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_STATEMENTS, "id = ?", new String[]{data.getId()});
+
+            ContentValues values = new ContentValues();
+            values.put("id", data.getId());
+            values.put("start_date", data.getStartDate() != null ? data.getStartDate().getTime() : null);
+            values.put("end_date", data.getEndDate() != null ? data.getEndDate().getTime() : null);
+            values.put("income_cents", CurrencyUtils.toCents(data.getTotalIncome()));
+            values.put("expense_cents", CurrencyUtils.toCents(data.getTotalExpenses()));
+            values.put("created_at", createdAtMillis);
+            values.put("sync_state", syncState);
+            db.insertOrThrow(TABLE_STATEMENTS, null, values);
+
+            TransactionTable table = data.getTransactionTable();
+            if (table != null && table.size() > 0) {
+                // One compiled statement rebound per row; ContentValues per row would box every field
+                SQLiteStatement insertRow = db.compileStatement("INSERT INTO " + TABLE_TRANSACTIONS
+                        + " (statement_id, date, description, amount_cents, category) VALUES (?, ?, ?, ?, ?)");
+                try {
+                    for (int row = 0; row < table.size(); row++) {
+                        insertRow.clearBindings();
+                        insertRow.bindString(1, data.getId());
+                        insertRow.bindLong(2, table.getEpochDay(row));
+                        bindNullable(insertRow, 3, table.getDescription(row));
+                        insertRow.bindLong(4, table.getCents(row));
+                        bindNullable(insertRow, 5, table.getCategory(row));
+                        insertRow.executeInsert();
+                    }
+                } finally {
+                    insertRow.close();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Every statement with its transactions, oldest upload first
+    public List<FinancialData> loadAll() {
+        return load(null, null);
+    }
+
+    public List<FinancialData> loadPending() {
+        return load("sync_state = ?", new String[]{String.valueOf(SYNC_PENDING)});
+    }
+
+    public Set<String> loadIds() {
+        Set<String> ids = new HashSet<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_STATEMENTS, new String[]{"id"},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0));
+            }
+        }
+        return ids;
+    }
+
+    public void markSynced(List<String> ids) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("sync_state", SYNC_DONE);
+            for (String id : ids) {
+                db.update(TABLE_STATEMENTS, values, "id = ?", new String[]{id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // 0 when this user has never synced on this device
+    public long loadWatermark(String userId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_WATERMARKS, new String[]{"watermark_nanos"},
+                "user_id = ?", new String[]{userId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /**
+     * Merges a delta from Firestore in one transaction: statements this store
+     * doesn't have are added as synced, tombstoned ones are deleted, and the
+     * watermark moves forward. Because it all commits together, a crash never
+     * leaves the watermark ahead of the rows. Returns how many statements
+     * were added or removed.
+     */
+    int applyRemoteChanges(String userId, RemoteChanges changes, long createdAtMillis) {
+        SQLiteDatabase db = getWritableDatabase();
+        int changed = 0;
+        db.beginTransaction();
+        try {
+            Set<String> known = loadIds();
+            for (FinancialData data : changes.statements) {
+                if (data.getId() != null && known.add(data.getId())) {
+                    // Remote order is upload order; keep it among the new rows
+                    insert(data, createdAtMillis + changed, SYNC_DONE);
+                    changed++;
+                }
+            }
+            for (String id : changes.deletedIds) {
+                changed += db.delete(TABLE_STATEMENTS, "id = ?", new String[]{id});
+            }
+
+            ContentValues values = new ContentValues();
+            values.put("user_id", userId);
+            values.put("watermark_nanos", changes.watermarkNanos);
+            db.insertWithOnConflict(TABLE_WATERMARKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return changed;
+    }
+
+    // Watermarks are kept: the remote copy was cleared too, and its tombstones are already accounted for
+    public void clear() {
+        // Transactions go with their statements
+        getWritableDatabase().delete(TABLE_STATEMENTS, null, null);
+    }
+
+    private List<FinancialData> load(String selection, String[] selectionArgs) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<FinancialData> statements = new ArrayList<>();
+        Map<String, TransactionTable> tables = new HashMap<>();
+
+        try (Cursor cursor = db.query(TABLE_STATEMENTS,
+                new String[]{"id", "start_date", "end_date", "income_cents", "expense_cents"},
+                selection, selectionArgs, null, null, "created_at, id")) {
+            while (cursor.moveToNext()) {
+                FinancialData data = new FinancialData();
+                data.setId(cursor.getString(0));
+                data.setStartDate(cursor.isNull(1) ? null : new Date(cursor.getLong(1)));
+                data.setEndDate(cursor.isNull(2) ? null : new Date(cursor.getLong(2)));
+                data.setTotalIncome(CurrencyUtils.toAmount(cursor.getLong(3)));
+                data.setTotalExpenses(CurrencyUtils.toAmount(cursor.getLong(4)));
+                statements.add(data);
+                tables.put(data.getId(), new TransactionTable());
+            }
+        }
+
+        // One pass over the rows; the statement_id index keeps a filtered load cheap too
+        String rowSelection = selection == null ? null
+                : "statement_id IN (SELECT id FROM " + TABLE_STATEMENTS + " WHERE " + selection + ")";
+        try (Cursor cursor = db.query(TABLE_TRANSACTIONS,
+                new String[]{"statement_id", "date", "description", "amount_cents", "category"},
+                rowSelection, selectionArgs, null, null, "statement_id, id")) {
+            TransactionTable table = null;
+            String tableId = null;
+            while (cursor.moveToNext()) {
+                String statementId = cursor.getString(0);
+                if (!statementId.equals(tableId)) {
+                    tableId = statementId;
+                    table = tables.get(statementId);
+                }
+                if (table != null) {
+                    table.add(cursor.getInt(1), cursor.getLong(3), cursor.getString(2), cursor.getString(4));
+                }
+            }
+        }
+
+        for (FinancialData data : statements) {
+            TransactionTable table = tables.get(data.getId());
+            data.setTransactionTable(table);
+            data.setCategoryCents(table.sumByCategory());
+        }
+        return statements;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.statementanalyzer.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.statementanalyzer.model.Aggregator;
+import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.Transaction;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Where screens get their statements from. Reads are answered from the
+ * on-device StatementDatabase, so charts and the chatbot open in milliseconds
+ * and work offline; imports are saved locally first and reach Firestore
+ * through SyncEngine in the background. Only a fresh install with nothing
+ * stored waits for Firestore, once.
+ *
+ * Every database call runs on one background thread, so callbacks never come
+ * on the main thread; screens post their UI work as they already do.
+ */
+public class StatementRepository {
+
+    private static final String TAG = "StatementRepository";
+
+    // Used to scope duplicate detection before the anonymous sign-in has finished
+    private static final String LOCAL_ACCOUNT = "local";
+
+    private static StatementRepository instance;
+
+    public interface SaveCallback {
+        // stored counts the statements kept; one whose rows were all imported before isn't
+        void onSaved(boolean success, int stored);
+    }
+
+    private final StatementDatabase database;
+    private final FirebaseManager firebaseManager;
+    private final DedupIndex dedupIndex;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final SyncEngine syncEngine;
+
+    public static synchronized StatementRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new StatementRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private StatementRepository(Context context) {
+        this.database = new StatementDatabase(context);
+        this.firebaseManager = new FirebaseManager();
+        this.dedupIndex = new DedupIndex(new File(context.getFilesDir(), "dedup"));
+        this.syncEngine = new SyncEngine(database, firebaseManager, dedupIndex, executor);
+    }
+
+    /**
+     * Calls back with every stored statement, in import order, then starts a
+     * sync so anything new on the server shows up next time. With an empty
+     * store the first sync is waited for instead.
+     */
+    public void loadStatements(FirebaseManager.DataCallback callback) {
+        executor.execute(() -> {
+            if (database.hasStatements()) {
+                callback.onDataLoaded(Collections.unmodifiableList(database.loadAll()));
+                syncEngine.requestSync();
+            } else {
+                syncEngine.requestSync(pushed ->
+                        callback.onDataLoaded(Collections.unmodifiableList(database.loadAll())));
+            }
+        });
+    }
+
+    /**
+     * Drops rows already imported from an earlier statement, stores what is
+     * left and queues it for upload. The callback reports the local save, once
+     * for the whole list; the upload happens whenever the device is online.
+     */
+    public void saveImported(List<FinancialData> financialDataList, SaveCallback callback) {
+        executor.execute(() -> {
+            List<DedupIndex.Screening> screenings = new ArrayList<>();
+            int stored = 0;
+            try {
+                long createdAt = System.currentTimeMillis();
+                for (FinancialData data : financialDataList) {
+                    DedupIndex.Screening screening = screenDuplicates(data);
+                    if (screening != null) {
+                        screenings.add(screening);
+                        if (screening.getUnique().isEmpty() && screening.getDuplicateCount() > 0) {
+                            // Everything in this statement is already stored
+                            continue;
+                        }
+                    }
+                    data.setId(UUID.randomUUID().toString());
+                    database.insert(data, createdAt++, StatementDatabase.SYNC_PENDING);
+                    stored++;
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error saving imported statements", e);
+                for (DedupIndex.Screening screening : screenings) {
+                    dedupIndex.release(screening);
+                }
+                callback.onSaved(false, 0);
+                return;
+            }
+
+            // Rows only count as imported once they are stored
+            for (DedupIndex.Screening screening : screenings) {
+                dedupIndex.commit(screening);
+            }
+            callback.onSaved(true, stored);
+            if (stored > 0) {
+                syncEngine.requestSync();
+            }
+        });
+    }
+
+    // Deletes from Firestore first, so a failed delete doesn't leave the statements to be pulled back.
+    // Runs between sync passes: a push landing after the delete listed the documents would
+    // leave statements on the server without a tombstone, and the next pull would bring them back.
+    public void clearAll(FirebaseManager.FirebaseCallback callback) {
+        syncEngine.runExclusive(done -> firebaseManager.clearAllData(success -> executor.execute(() -> {
+            if (success) {
+                database.clear();
+                // Otherwise a re-import of the same statements would be dropped as duplicates
+                dedupIndex.clear();
+            }
+            callback.onSuccess(success);
+            done.run();
+        })));
+    }
+
+    // Drops rows seen in earlier imports and recomputes the statement totals from
+    // what is left, so charts and the chatbot don't count overlapping statements twice.
+    // Statements carry no account number yet, so rows are scoped to the signed-in user.
+    private DedupIndex.Screening screenDuplicates(FinancialData data) {
+        if (data.getTransactions() == null) {
+            return null;
+        }
+
+        String userId = firebaseManager.getUserId();
+        DedupIndex.Screening screening = dedupIndex.screen(data.getTransactions(),
+                userId != null ? userId : LOCAL_ACCOUNT);
+        if (screening.getDuplicateCount() > 0) {
+            Log.i(TAG, "Skipping " + screening.getDuplicateCount() + " already imported transactions");
+            Aggregator aggregator = new Aggregator();
+            for (Transaction transaction : screening.getUnique()) {
+                aggregator.add(transaction);
+            }
+            data.setTransactions(screening.getUnique());
+            aggregator.summarize().applyTo(data);
+        }
+        return screening;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.statementanalyzer.data;
+
+import android.util.Log;
+
+import com.example.statementanalyzer.model.FinancialData;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reconciles the local StatementDatabase with Firestore in the background.
+ * A pass pushes every statement still marked pending, then pulls what the
+ * server committed since the last pass: statements the device hasn't seen
+ * (uploaded from another install, or before the local store existed) and
+ * tombstones for statements cleared elsewhere. When nothing changed the pull
+ * is a check that returns no documents. Only one pass runs at a time; a
+ * request that arrives during a pass runs another one right after it, so
+ * nothing saved meanwhile waits for the next launch.
+ *
+ * Work that must not interleave with a pass, such as clearing everything,
+ * goes through runExclusive() and runs between passes.
+ *
+ * Rows of pulled statements are added to the DedupIndex, so importing the
+ * same statement on this device is caught too. Rows of statements deleted
+ * elsewhere stay in it until this device has no statements left at all.
+ *
+ * Firestore queues writes while offline and only confirms them once the
+ * server has them, so a pass started without a connection simply finishes
+ * when the device is back online.
+ */
+final class SyncEngine {
+
+    private static final String TAG = "SyncEngine";
+
+    interface SyncCallback {
+        void onSyncFinished(boolean pushed);
+    }
+
+    interface ExclusiveTask {
+        // Runs on the executor; done must be called exactly once, from any thread
+        void run(Runnable done);
+    }
+
+    private final StatementDatabase database;
+    private final FirebaseManager firebaseManager;
+    private final DedupIndex dedupIndex;
+    // Database work; Firestore calls back on the main thread and is hopped off it
+    private final Executor executor;
+
+    // Held while a pass or an exclusive task is out
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean requested = new AtomicBoolean();
+    // Callbacks for the next pass to start; a pass already out may have missed their writes
+    private final List<SyncCallback> waiting = new ArrayList<>();
+    private final List<ExclusiveTask> exclusive = new ArrayList<>();
+
+    SyncEngine(StatementDatabase database, FirebaseManager firebaseManager, DedupIndex dedupIndex,
+               Executor executor) {
+        this.database = database;
+        this.firebaseManager = firebaseManager;
+        this.dedupIndex = dedupIndex;
+        this.executor = executor;
+    }
+
+    void requestSync() {
+        requestSync(null);
+    }
+
+    // callback runs on the executor once a pass started after this call has finished
+    void requestSync(SyncCallback callback) {
+        if (callback != null) {
+            synchronized (waiting) {
+                waiting.add(callback);
+            }
+        }
+        requested.set(true);
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::runNext);
+        }
+    }
+
+    // Runs task once the pass that is out (if any) has finished; no pass starts until it calls done
+    void runExclusive(ExclusiveTask task) {
+        synchronized (exclusive) {
+            exclusive.add(task);
+        }
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::runNext);
+        }
+    }
+
+    // Called on the executor while holding running; exclusive tasks go before passes
+    private void runNext() {
+        ExclusiveTask task;
+        synchronized (exclusive) {
+            task = exclusive.isEmpty() ? null : exclusive.remove(0);
+        }
+        if (task != null) {
+            AtomicBoolean finished = new AtomicBoolean();
+            task.run(() -> {
+                if (finished.compareAndSet(false, true)) {
+                    executor.execute(this::runNext);
+                }
+            });
+            return;
+        }
+        if (requested.get()) {
+            runPass();
+            return;
+        }
+
+        running.set(false);
+        // Someone asked between the checks above and the release
+        if ((requested.get() || hasExclusive()) && running.compareAndSet(false, true)) {
+            runNext();
+        }
+    }
+
+    private boolean hasExclusive() {
+        synchronized (exclusive) {
+            return !exclusive.isEmpty();
+        }
+    }
+
+    private void runPass() {
+        requested.set(false);
+        List<SyncCallback> callbacks;
+        synchronized (waiting) {
+            callbacks = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        push(pushed -> pull(() -> {
+            for (SyncCallback callback : callbacks) {
+                callback.onSyncFinished(pushed);
+            }
+            // Anything asked for while this pass was out runs next
+            runNext();
+        }));
+    }
+
+    private void push(SyncCallback next) {
+        List<FinancialData> pending = database.loadPending();
+        if (pending.isEmpty()) {
+            next.onSyncFinished(true);
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(pending.size());
+        for (FinancialData data : pending) {
+            ids.add(data.getId());
+        }
+        firebaseManager.uploadData(pending, success -> executor.execute(() -> {
+            if (success) {
+                database.markSynced(ids);
+            } else {
+                Log.w(TAG, pending.size() + " statements stay pending until the next sync");
+            }
+            next.onSyncFinished(success);
+        }));
+    }
+
+    // Only asks for what the server committed after this user's watermark
+    private void pull(Runnable next) {
+        String userId = firebaseManager.getUserId();
+        if (userId == null) {
+            next.run();
+            return;
+        }
+
+        long watermark = database.loadWatermark(userId);
+        Set<String> known = database.loadIds();
+        firebaseManager.fetchChanges(watermark, known, changes -> executor.execute(() -> {
+            if (changes.complete && (!changes.isEmpty() || changes.watermarkNanos != watermark)) {
+                int changed = database.applyRemoteChanges(userId, changes, System.currentTimeMillis());
+                if (changed > 0) {
+                    Log.d(TAG, "Merged " + changed + " statement changes from Firestore");
+                    rememberPulledRows(userId, changes, known);
+                }
+            }
+            next.run();
+        }));
+    }
+
+    // Same account scoping as StatementRepository.screenDuplicates
+    private void rememberPulledRows(String userId, RemoteChanges changes, Set<String> known) {
+        Set<String> deleted = new HashSet<>(changes.deletedIds);
+        for (FinancialData data : changes.statements) {
+            if (data.getTransactions() != null && !known.contains(data.getId()) && !deleted.contains(data.getId())) {
+                dedupIndex.commit(dedupIndex.screen(data.getTransactions(), userId));
+            }
+        }
+        // Cleared on another device: nothing here can duplicate what is gone
+        if (!changes.deletedIds.isEmpty() && !database.hasStatements()) {
+            dedupIndex.clear();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.statementanalyzer.data;
+
+import com.example.statementanalyzer.model.TransactionTable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Packs a statement's transactions into chunk documents of up to CHUNK_ROWS
+ * rows each, so a statement costs a handful of Firestore reads instead of
+ * one per transaction. A chunk stores its rows column by column, the same
+ * shape as TransactionTable: epoch days, cents, and per-chunk dictionaries
+ * for descriptions and categories with an index per row. -1 stands for a
+ * null string.
+ *
+ * Every chunk carries FORMAT_VERSION. A reader that finds a version it
+ * doesn't know fails instead of guessing, so the format can change later
+ * without old installs misreading new data.
+ */
+final class TransactionChunks {
+
+    static final int FORMAT_VERSION = 1;
+
+    // ~40 bytes a row with a typical description keeps a chunk far below Firestore's 1 MiB document limit
+    static final int CHUNK_ROWS = 400;
+
+    static final String FIELD_VERSION = "version";
+    static final String FIELD_INDEX = "index";
+    static final String FIELD_COUNT = "count";
+    static final String FIELD_DAYS = "days";
+    static final String FIELD_CENTS = "cents";
+    static final String FIELD_DESCRIPTIONS = "descriptions";
+    static final String FIELD_DESCRIPTION_IDS = "descriptionIds";
+    static final String FIELD_CATEGORIES = "categories";
+    static final String FIELD_CATEGORY_IDS = "categoryIds";
+
+    private TransactionChunks() {
+    }
+
+    static int chunkCount(int rows) {
+        return (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    // Zero-padded so chunk documents list in order in the console
+    static String chunkId(int index) {
+        return String.format(Locale.ROOT, "%04d", index);
+    }
+
+    static List<Map<String, Object>> encode(TransactionTable table) {
+        int rows = table != null ? table.size() : 0;
+        List<Map<String, Object>> chunks = new ArrayList<>(chunkCount(rows));
+        for (int start = 0; start < rows; start += CHUNK_ROWS) {
+            chunks.add(encodeChunk(table, chunks.size(), start, Math.min(start + CHUNK_ROWS, rows)));
+        }
+        return chunks;
+    }
+
+    private static Map<String, Object> encodeChunk(TransactionTable table, int index, int start, int end) {
+        int count = end - start;
+        List<Long> days = new ArrayList<>(count);
+        List<Long> cents = new ArrayList<>(count);
+        List<Long> descriptionIds = new ArrayList<>(count);
+        List<Long> categoryIds = new ArrayList<>(count);
+        List<String> descriptions = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        Map<String, Long> descriptionIndex = new HashMap<>();
+        Map<String, Long> categoryIndex = new HashMap<>();
+
+        for (int row = start; row < end; row++) {
+            days.add((long) table.getEpochDay(row));
+            cents.add(table.getCents(row));
+            descriptionIds.add(intern(table.getDescription(row), descriptions, descriptionIndex));
+            categoryIds.add(intern(table.getCategory(row), categories, categoryIndex));
+        }
+
+        Map<String, Object> chunk = new HashMap<>();
+        chunk.put(FIELD_VERSION, (long) FORMAT_VERSION);
+        chunk.put(FIELD_INDEX, (long) index);
+        chunk.put(FIELD_COUNT, (long) count);
+        chunk.put(FIELD_DAYS, days);
+        chunk.put(FIELD_CENTS, cents);
+        chunk.put(FIELD_DESCRIPTIONS, descriptions);
+        chunk.put(FIELD_DESCRIPTION_IDS, descriptionIds);
+        chunk.put(FIELD_CATEGORIES, categories);
+        chunk.put(FIELD_CATEGORY_IDS, categoryIds);
+        return chunk;
+    }
+
+    private static long intern(String value, List<String> values, Map<String, Long> index) {
+        if (value == null) {
+            return -1;
+        }
+        Long id = index.get(value);
+        if (id == null) {
+            id = (long) values.size();
+            values.add(value);
+            index.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Appends the rows of every chunk to table, in chunk index order whatever
+     * order the chunks came back in. Throws IllegalArgumentException for an
+     * unknown version or a chunk whose columns don't line up.
+     */
+    static void decode(List<Map<String, Object>> chunks, TransactionTable table) {
+        List<Map<String, Object>> ordered = new ArrayList<>(chunks);
+        ordered.sort((a, b) -> Long.compare(number(a, FIELD_INDEX), number(b, FIELD_INDEX)));
+        for (Map<String, Object> chunk : ordered) {
+            decodeChunk(chunk, table);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void decodeChunk(Map<String, Object> chunk, TransactionTable table) {
+        long version = number(chunk, FIELD_VERSION);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported transaction chunk version " + version);
+        }
+        int count = (int) number(chunk, FIELD_COUNT);
+        List<Number> days = (List<Number>) column(chunk, FIELD_DAYS, count);
+        List<Number> cents = (List<Number>) column(chunk, FIELD_CENTS, count);
+        List<Number> descriptionIds = (List<Number>) column(chunk, FIELD_DESCRIPTION_IDS, count);
+        List<Number> categoryIds = (List<Number>) column(chunk, FIELD_CATEGORY_IDS, count);
+        List<String> descriptions = (List<String>) chunk.get(FIELD_DESCRIPTIONS);
+        List<String> categories = (List<String>) chunk.get(FIELD_CATEGORIES);
+
+        for (int row = 0; row < count; row++) {
+            table.add(days.get(row).intValue(), cents.get(row).longValue(),
+                    lookup(descriptions, descriptionIds.get(row)), lookup(categories, categoryIds.get(row)));
+        }
+    }
+
+    private static List<?> column(Map<String, Object> chunk, String field, int count) {
+        Object value = chunk.get(field);
+        if (!(value instanceof List) || ((List<?>) value).size() != count) {
+            throw new IllegalArgumentException("Transaction chunk column " + field + " doesn't have " + count + " rows");
+        }
+        return (List<?>) value;
+    }
+
+    private static String lookup(List<String> values, Number id) {
+        int index = id.intValue();
+        if (index < 0) {
+            return null;
+        }
+        if (values == null || index >= values.size()) {
+            throw new IllegalArgumentException("Transaction chunk refers to a missing string " + index);
+        }
+        return values.get(index);
+    }
+
+    private static long number(Map<String, Object> chunk, String field) {
+        Object value = chunk.get(field);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Transaction chunk is missing " + field);
+        }
+        return ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.statementanalyzer.extraction;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Lets another thread stop a parse that is in progress. Parsing checks the token
+ * before every PDF page, every few thousand CSV or OFX rows and every buffer
+ * hashed for the parse cache. Once it sees the cancellation it throws
+ * InterruptedIOException, which travels the same path as any other parse
+ * failure.
+ */
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Parsing was cancelled");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.statementanalyzer.extraction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Aho-Corasick automaton over the category keywords. A description is scanned
+ * once, case-insensitively, and every keyword occurrence is seen in that single
+ * pass regardless of how many keywords are registered.
+ *
+ * When several keywords occur, the longest one wins ("gas bill" beats "gas"); on
+ * equal length the keyword that was added first wins. Instances are immutable and
+ * safe to share between threads.
+ */
+public final class CategoryMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NO_MATCH = -1;
+
+    // Sparse goto function: labels[state] is sorted, targets[state] is parallel to it
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    // Best keyword ending at each state, following dictionary suffix links
+    private final int[] output;
+
+    private final int[] keywordLengths;
+    private final String[] keywordCategories;
+
+    private CategoryMatcher(char[][] labels, int[][] targets, int[] fail, int[] output,
+                            int[] keywordLengths, String[] keywordCategories) {
+        this.labels = labels;
+        this.targets = targets;
+        this.fail = fail;
+        this.output = output;
+        this.keywordLengths = keywordLengths;
+        this.keywordCategories = keywordCategories;
+    }
+
+    // Returns the category of the winning keyword, or null when none occurs
+    public String match(CharSequence text) {
+        int state = ROOT;
+        int best = NO_MATCH;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+
+            int next;
+            while ((next = transition(state, c)) == NO_MATCH && state != ROOT) {
+                state = fail[state];
+            }
+            state = next == NO_MATCH ? ROOT : next;
+
+            int keyword = output[state];
+            if (keyword != NO_MATCH && beats(keyword, best)) {
+                best = keyword;
+            }
+        }
+
+        return best == NO_MATCH ? null : keywordCategories[best];
+    }
+
+    public int size() {
+        return keywordLengths.length;
+    }
+
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(labels[state], c);
+        return index >= 0 ? targets[state][index] : NO_MATCH;
+    }
+
+    // Longer keywords win; among equal lengths the one registered first
+    private boolean beats(int keyword, int current) {
+        if (current == NO_MATCH) {
+            return true;
+        }
+        int lengthDelta = keywordLengths[keyword] - keywordLengths[current];
+        return lengthDelta > 0 || (lengthDelta == 0 && keyword < current);
+    }
+
+    public static class Builder {
+        // Insertion order is the tie-break priority; re-adding a keyword keeps its slot
+        private final Map<String, String> keywords = new LinkedHashMap<>();
+
+        public Builder add(String keyword, String category) {
+            if (keyword == null || keyword.isEmpty()) {
+                throw new IllegalArgumentException("keyword must not be empty");
+            }
+            keywords.put(keyword.toLowerCase(Locale.ROOT), category);
+            return this;
+        }
+
+        public Builder addAll(Map<String, String> keywordCategories) {
+            for (Map.Entry<String, String> entry : keywordCategories.entrySet()) {
+                add(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        // Order-sensitive hash of the rules, since registration order decides ties
+        public int contentHash() {
+            int hash = 1;
+            for (Map.Entry<String, String> entry : keywords.entrySet()) {
+                hash = 31 * hash + entry.getKey().hashCode();
+                hash = 31 * hash + Objects.hashCode(entry.getValue());
+            }
+            return hash;
+        }
+
+        public CategoryMatcher build() {
+            int keywordCount = keywords.size();
+            int[] keywordLengths = new int[keywordCount];
+            String[] keywordCategories = new String[keywordCount];
+
+            // Trie construction with hash maps, compiled to sorted arrays below
+            List<Map<Character, Integer>> children = new ArrayList<>();
+            List<Integer> terminal = new ArrayList<>();
+            children.add(new HashMap<>());
+            terminal.add(NO_MATCH);
+
+            int keywordId = 0;
+            for (Map.Entry<String, String> entry : keywords.entrySet()) {
+                String keyword = entry.getKey();
+                int state = ROOT;
+                for (int i = 0; i < keyword.length(); i++) {
+                    Integer next = children.get(state).get(keyword.charAt(i));
+                    if (next == null) {
+                        next = children.size();
+                        children.add(new HashMap<>());
+                        terminal.add(NO_MATCH);
+                        children.get(state).put(keyword.charAt(i), next);
+                    }
+                    state = next;
+                }
+                terminal.set(state, keywordId);
+                keywordLengths[keywordId] = keyword.length();
+                keywordCategories[keywordId] = entry.getValue();
+                keywordId++;
+            }
+
+            int stateCount = children.size();
+            char[][] labels = new char[stateCount][];
+            int[][] targets = new int[stateCount][];
+            for (int state = 0; state < stateCount; state++) {
+                Map<Character, Integer> edges = children.get(state);
+                char[] stateLabels = new char[edges.size()];
+                int i = 0;
+                for (Character label : edges.keySet()) {
+                    stateLabels[i++] = label;
+                }
+                Arrays.sort(stateLabels);
+
+                int[] stateTargets = new int[stateLabels.length];
+                for (i = 0; i < stateLabels.length; i++) {
+                    stateTargets[i] = edges.get(stateLabels[i]);
+                }
+                labels[state] = stateLabels;
+                targets[state] = stateTargets;
+            }
+
+            // Breadth-first pass computes failure links; parents are always finished first
+            int[] fail = new int[stateCount];
+            int[] output = new int[stateCount];
+            output[ROOT] = NO_MATCH;
+
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : targets[ROOT]) {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+
+                // A keyword ending here is longer than any keyword on the suffix chain
+                output[state] = terminal.get(state) != NO_MATCH ? terminal.get(state) : output[fail[state]];
+
+                for (int i = 0; i < labels[state].length; i++) {
+                    char c = labels[state][i];
+                    int child = targets[state][i];
+
+                    int fallback = fail[state];
+                    int next;
+                    while ((next = transitionOf(labels, targets, fallback, c)) == NO_MATCH && fallback != ROOT) {
+                        fallback = fail[fallback];
+                    }
+                    fail[child] = next == NO_MATCH ? ROOT : next;
+                    queue.add(child);
+                }
+            }
+
+            return new CategoryMatcher(labels, targets, fail, output, keywordLengths, keywordCategories);
+        }
+
+        private static int transitionOf(char[][] labels, int[][] targets, int state, char c) {
+            int index = Arrays.binarySearch(labels[state], c);
+            return index >= 0 ? targets[state][index] : NO_MATCH;
+        }
+    }
+}
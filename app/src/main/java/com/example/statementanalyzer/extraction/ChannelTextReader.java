@@ -0,0 +1,224 @@
+package com.example.statementanalyzer.extraction;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes a byte channel straight into the caller's char array. The charset is
+ * chosen from the first buffer of bytes: a byte order mark wins, then UTF-16
+ * without a mark, then UTF-8 if those bytes are valid UTF-8, and otherwise the
+ * fallback, which for bank exports is usually Windows-1252. The BOM itself is
+ * never returned, so the first header cell reads "Date" with no U+FEFF in front.
+ *
+ * The byte buffer and the decoders are kept per thread and reused by the next
+ * reader on that thread, so importing a folder of statements doesn't allocate
+ * them once per file.
+ */
+public final class ChannelTextReader extends Reader {
+
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    public static final Charset WINDOWS_1252 = Charset.isSupported("windows-1252")
+            ? Charset.forName("windows-1252") : StandardCharsets.ISO_8859_1;
+
+    private static final ThreadLocal<Buffers> SPARE_BUFFERS = new ThreadLocal<>();
+
+    private final ReadableByteChannel channel;
+    private final Buffers buffers;
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private final Charset charset;
+    private boolean endOfInput;
+    private boolean flushed;
+    private boolean closed;
+
+    public ChannelTextReader(ReadableByteChannel channel, Charset fallback) throws IOException {
+        this.channel = channel;
+
+        Buffers spare = SPARE_BUFFERS.get();
+        if (spare != null) {
+            SPARE_BUFFERS.set(null);
+            buffers = spare;
+        } else {
+            buffers = new Buffers();
+        }
+        bytes = buffers.bytes;
+        bytes.clear();
+        fill();
+
+        charset = detectCharset(bytes, fallback);
+        skipByteOrderMark(bytes);
+        decoder = buffers.decoderFor(charset);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (result.isOverflow() || out.position() > offset && !endOfInput) {
+                return out.position() - offset;
+            }
+            if (endOfInput) {
+                if (!flushed && decoder.flush(out).isUnderflow()) {
+                    flushed = true;
+                }
+                int decoded = out.position() - offset;
+                return decoded > 0 ? decoded : -1;
+            }
+            // Keep a split multi-byte sequence and read the next block behind it
+            bytes.compact();
+            fill();
+        }
+    }
+
+    // Reads until the buffer is full or the channel ends, leaving it ready to drain
+    private void fill() throws IOException {
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                endOfInput = true;
+                break;
+            }
+        }
+        bytes.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            SPARE_BUFFERS.set(buffers);
+        }
+    }
+
+    static Charset detectCharset(ByteBuffer head, Charset fallback) {
+        int start = head.position();
+        int length = head.remaining();
+        int b0 = length > 0 ? head.get(start) & 0xff : -1;
+        int b1 = length > 1 ? head.get(start + 1) & 0xff : -1;
+        int b2 = length > 2 ? head.get(start + 2) & 0xff : -1;
+
+        if (b0 == 0xef && b1 == 0xbb && b2 == 0xbf) {
+            return StandardCharsets.UTF_8;
+        }
+        if (b0 == 0xff && b1 == 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (b0 == 0xfe && b1 == 0xff) {
+            return StandardCharsets.UTF_16BE;
+        }
+
+        // ASCII text saved as UTF-16 has a zero in every other byte
+        int evenZeros = 0;
+        int oddZeros = 0;
+        int sampled = Math.min(length, 512) & ~1;
+        for (int i = 0; i < sampled; i++) {
+            if (head.get(start + i) == 0) {
+                if ((i & 1) == 0) {
+                    evenZeros++;
+                } else {
+                    oddZeros++;
+                }
+            }
+        }
+        if (sampled > 0 && oddZeros > sampled * 3 / 8 && evenZeros == 0) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (sampled > 0 && evenZeros > sampled * 3 / 8 && oddZeros == 0) {
+            return StandardCharsets.UTF_16BE;
+        }
+
+        return isValidUtf8(head, start, start + length) ? StandardCharsets.UTF_8 : fallback;
+    }
+
+    private static void skipByteOrderMark(ByteBuffer head) {
+        int start = head.position();
+        int length = head.remaining();
+        if (length >= 3 && (head.get(start) & 0xff) == 0xef && (head.get(start + 1) & 0xff) == 0xbb
+                && (head.get(start + 2) & 0xff) == 0xbf) {
+            head.position(start + 3);
+        } else if (length >= 2) {
+            int b0 = head.get(start) & 0xff;
+            int b1 = head.get(start + 1) & 0xff;
+            if ((b0 == 0xff && b1 == 0xfe) || (b0 == 0xfe && b1 == 0xff)) {
+                head.position(start + 2);
+            }
+        }
+    }
+
+    // A sequence cut off by the end of the sample still counts as valid
+    private static boolean isValidUtf8(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        while (i < end) {
+            int b = buffer.get(i) & 0xff;
+            int continuation;
+            if (b < 0x80) {
+                i++;
+                continue;
+            } else if (b >= 0xc2 && b <= 0xdf) {
+                continuation = 1;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                continuation = 2;
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= end) {
+                    return true;
+                }
+                if ((buffer.get(i + k) & 0xc0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    private static final class Buffers {
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+
+        CharsetDecoder decoderFor(Charset charset) {
+            CharsetDecoder decoder = decoders.get(charset);
+            if (decoder == null) {
+                // A stray bad byte becomes U+FFFD instead of failing the whole import
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                decoders.put(charset, decoder);
+            }
+            return decoder.reset();
+        }
+    }
+}
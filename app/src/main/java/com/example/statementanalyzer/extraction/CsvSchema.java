@@ -0,0 +1,182 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Column layout of one bank's CSV export: where the date, description and amount
+ * live, how the amount is signed and printed, and which date layout the rows use.
+ * CsvSchemaDetector infers it once per header signature. After that DocumentParser
+ * reads the rows by index without looking at the header again.
+ */
+public final class CsvSchema {
+
+    private static final String FORMAT_VERSION = "1";
+
+    private final char delimiter;
+    private final int dateColumn;
+    private final int descriptionColumn;
+    // -1 when the export splits money into debit and credit columns
+    private final int amountColumn;
+    private final int debitColumn;
+    private final int creditColumn;
+    // Card exports often print purchases as positive amounts and payments as negative
+    private final boolean invertSign;
+    // "1.234,56" instead of "1,234.56"
+    private final boolean decimalComma;
+    private final StatementDateParser.Layout dateLayout;
+
+    CsvSchema(char delimiter, int dateColumn, int descriptionColumn, int amountColumn, int debitColumn,
+              int creditColumn, boolean invertSign, boolean decimalComma, StatementDateParser.Layout dateLayout) {
+        this.delimiter = delimiter;
+        this.dateColumn = dateColumn;
+        this.descriptionColumn = descriptionColumn;
+        this.amountColumn = amountColumn;
+        this.debitColumn = debitColumn;
+        this.creditColumn = creditColumn;
+        this.invertSign = invertSign;
+        this.decimalComma = decimalComma;
+        this.dateLayout = dateLayout;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    public int getDescriptionColumn() {
+        return descriptionColumn;
+    }
+
+    public int getAmountColumn() {
+        return amountColumn;
+    }
+
+    public int getDebitColumn() {
+        return debitColumn;
+    }
+
+    public int getCreditColumn() {
+        return creditColumn;
+    }
+
+    public boolean isSplitAmount() {
+        return amountColumn < 0;
+    }
+
+    public boolean isInvertSign() {
+        return invertSign;
+    }
+
+    public boolean isDecimalComma() {
+        return decimalComma;
+    }
+
+    public StatementDateParser.Layout getDateLayout() {
+        return dateLayout;
+    }
+
+    public String getDate(CSVRecord record) {
+        return cell(record, dateColumn);
+    }
+
+    public String getDescription(CSVRecord record) {
+        String description = cell(record, descriptionColumn);
+        return description != null ? description.trim() : "";
+    }
+
+    // Signed cents with income positive, or CurrencyUtils.INVALID when the row has no amount
+    public long getCents(CSVRecord record) {
+        if (!isSplitAmount()) {
+            long cents = parseAmount(cell(record, amountColumn));
+            return cents == CurrencyUtils.INVALID || !invertSign ? cents : -cents;
+        }
+
+        // Banks disagree on whether the debit column carries a minus sign; the column decides
+        long debit = parseAmount(cell(record, debitColumn));
+        long credit = parseAmount(cell(record, creditColumn));
+        if (debit == CurrencyUtils.INVALID && credit == CurrencyUtils.INVALID) {
+            return CurrencyUtils.INVALID;
+        }
+        long cents = 0;
+        if (credit != CurrencyUtils.INVALID) {
+            cents += Math.abs(credit);
+        }
+        if (debit != CurrencyUtils.INVALID) {
+            cents -= Math.abs(debit);
+        }
+        return cents;
+    }
+
+    long parseAmount(String text) {
+        if (text == null) {
+            return CurrencyUtils.INVALID;
+        }
+        if (!decimalComma) {
+            return CurrencyUtils.parseCents(text);
+        }
+        // Swap the separators so "1.234,56" reads as "1,234.56"
+        StringBuilder swapped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            swapped.append(c == ',' ? '.' : c == '.' ? ',' : c);
+        }
+        return CurrencyUtils.parseCents(swapped);
+    }
+
+    private static String cell(CSVRecord record, int column) {
+        return column >= 0 && column < record.size() ? record.get(column) : null;
+    }
+
+    /**
+     * Identifies an export layout: the delimiter plus the header names, compared
+     * without case or surrounding whitespace. Two files from the same bank and
+     * account type share a signature.
+     */
+    public static String signature(char delimiter, List<String> headers) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ delimiter) * 0x100000001b3L;
+        for (String header : headers) {
+            String normalized = header.trim().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < normalized.length(); i++) {
+                hash = (hash ^ normalized.charAt(i)) * 0x100000001b3L;
+            }
+            // Keeps ["ab", "c"] apart from ["a", "bc"]
+            hash = (hash ^ 0x1f) * 0x100000001b3L;
+        }
+        return headers.size() + "-" + Long.toHexString(hash);
+    }
+
+    // Compact form for SharedPreferences
+    public String encode() {
+        return FORMAT_VERSION + "|" + (int) delimiter + "|" + dateColumn + "|" + descriptionColumn + "|"
+                + amountColumn + "|" + debitColumn + "|" + creditColumn + "|" + (invertSign ? 1 : 0) + "|"
+                + (decimalComma ? 1 : 0) + "|" + (dateLayout != null ? dateLayout.name() : "");
+    }
+
+    // null when the value was written by another format version or is damaged
+    public static CsvSchema decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] parts = encoded.split("\\|", -1);
+        if (parts.length != 10 || !FORMAT_VERSION.equals(parts[0])) {
+            return null;
+        }
+        try {
+            StatementDateParser.Layout layout = parts[9].isEmpty() ? null : StatementDateParser.Layout.valueOf(parts[9]);
+            return new CsvSchema((char) Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), Integer.parseInt(parts[5]),
+                    Integer.parseInt(parts[6]), "1".equals(parts[7]), "1".equals(parts[8]), layout);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
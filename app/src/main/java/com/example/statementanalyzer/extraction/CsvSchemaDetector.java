@@ -0,0 +1,342 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Infers a CsvSchema from the header and the first rows of an export. Column roles
+ * come from header names first. The names include the usual translations, so
+ * "Buchungstag" and "Fecha" are found as well as "Date". Each named column is
+ * then checked against the sample values. When no header matches a role, the
+ * values decide: a column of dates, a column of amounts, the longest text.
+ * The sample also decides the date layout, the decimal separator, and whether
+ * the bank prints charges as positive numbers.
+ */
+public final class CsvSchemaDetector {
+
+    // Rows read ahead of the first transaction to infer the schema
+    public static final int SAMPLE_ROWS = 20;
+
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+
+    // A named column is only trusted if most of its sample values fit the role
+    private static final double MIN_MATCH_SHARE = 0.8;
+
+    // Best name first within each role
+    private static final String[] DATE_NAMES = {
+            "transaction date", "trans date", "date", "posted", "posting date", "booking date",
+            "buchungstag", "buchungsdatum", "datum", "fecha", "data", "date op\u00e9ration", "date operation",
+            "data operazione", "datum transactie", "data movimento", "valuta"
+    };
+    private static final String[] DESCRIPTION_NAMES = {
+            "description", "merchant", "payee", "details", "narrative", "memo", "name",
+            "verwendungszweck", "buchungstext", "beschreibung", "empf\u00e4nger", "auftraggeber",
+            "libell\u00e9", "libelle", "concepto", "descripci\u00f3n", "descripcion", "descrizione", "causale",
+            "omschrijving", "naam", "descri\u00e7\u00e3o", "descricao", "hist\u00f3rico"
+    };
+    private static final String[] AMOUNT_NAMES = {
+            "amount", "transaction amount", "betrag", "umsatz", "montant", "importe", "importo",
+            "bedrag", "valor"
+    };
+    private static final String[] DEBIT_NAMES = {
+            "debit", "debits", "withdrawal", "withdrawals", "paid out", "money out", "outflow",
+            "soll", "lastschrift", "ausgang", "d\u00e9bit", "cargo", "cargos", "addebiti", "addebito", "uscite",
+            "af", "afschrijving", "d\u00e9bito", "debito"
+    };
+    private static final String[] CREDIT_NAMES = {
+            "credit", "credits", "deposit", "deposits", "paid in", "money in", "inflow",
+            "haben", "gutschrift", "eingang", "cr\u00e9dit", "abono", "abonos", "accrediti", "accredito", "entrate",
+            "bij", "bijschrijving", "cr\u00e9dito", "credito"
+    };
+    // Never the transaction amount, even though the values look like money
+    private static final String[] BALANCE_NAMES = {
+            "balance", "running balance", "available", "saldo", "kontostand", "solde"
+    };
+
+    // A negative row like this on an otherwise positive card export means charges are positive
+    private static final String[] PAYMENT_MARKERS = {
+            "payment", "thank you", "autopay", "refund", "credit"
+    };
+
+    private CsvSchemaDetector() {
+    }
+
+    // The most frequent candidate outside quotes in the header line; ',' when none occurs
+    public static char sniffDelimiter(String headerLine) {
+        int[] counts = new int[DELIMITERS.length];
+        boolean quoted = false;
+        for (int i = 0; i < headerLine.length(); i++) {
+            char c = headerLine.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                for (int d = 0; d < DELIMITERS.length; d++) {
+                    if (c == DELIMITERS[d]) {
+                        counts[d]++;
+                    }
+                }
+            }
+        }
+        int best = 0;
+        for (int d = 1; d < DELIMITERS.length; d++) {
+            if (counts[d] > counts[best]) {
+                best = d;
+            }
+        }
+        return DELIMITERS[best];
+    }
+
+    // null when no date, description and amount (or debit and credit) columns can be found,
+    // and for a header-only file: names alone would give a schema nothing has confirmed
+    public static CsvSchema detect(char delimiter, List<String> headers, List<CSVRecord> samples) {
+        if (samples.isEmpty()) {
+            return null;
+        }
+        int columns = headers.size();
+        String[] names = new String[columns];
+        boolean[] used = new boolean[columns];
+        for (int i = 0; i < columns; i++) {
+            names[i] = headers.get(i).trim().toLowerCase(Locale.ROOT);
+            used[i] = matchesAny(names[i], BALANCE_NAMES);
+        }
+
+        boolean decimalComma = prefersDecimalComma(samples);
+        CsvSchema probe = new CsvSchema(delimiter, -1, -1, -1, -1, -1, false, decimalComma, null);
+
+        int dateColumn = claim(names, used, DATE_NAMES, column -> dateShare(samples, column) >= MIN_MATCH_SHARE);
+        int debitColumn = claim(names, used, DEBIT_NAMES, column -> amountShare(probe, samples, column) >= MIN_MATCH_SHARE);
+        int creditColumn = claim(names, used, CREDIT_NAMES, column -> amountShare(probe, samples, column) >= MIN_MATCH_SHARE);
+        int amountColumn = claim(names, used, AMOUNT_NAMES, column -> amountShare(probe, samples, column) >= MIN_MATCH_SHARE);
+        int descriptionColumn = claim(names, used, DESCRIPTION_NAMES, column -> true);
+
+        // Unnamed roles fall back to what the values look like
+        if (dateColumn < 0) {
+            dateColumn = firstUnused(used, columns,
+                    column -> hasValues(samples, column) && dateShare(samples, column) >= MIN_MATCH_SHARE);
+        }
+        boolean split = debitColumn >= 0 && creditColumn >= 0;
+        if (amountColumn < 0 && !split) {
+            amountColumn = firstUnused(used, columns,
+                    column -> hasValues(samples, column) && amountShare(probe, samples, column) >= MIN_MATCH_SHARE);
+        }
+        if (descriptionColumn < 0) {
+            descriptionColumn = longestText(used, columns, samples, probe);
+        }
+
+        if (dateColumn < 0 || descriptionColumn < 0 || (amountColumn < 0 && !split)) {
+            return null;
+        }
+        if (amountColumn >= 0) {
+            // A single amount column wins over a half-found debit/credit pair
+            debitColumn = -1;
+            creditColumn = -1;
+        }
+
+        boolean invertSign = amountColumn >= 0 && chargesPrintedPositive(probe, samples, amountColumn, descriptionColumn);
+        StatementDateParser.Layout layout = dateLayout(samples, dateColumn, delimiter == ';' || decimalComma);
+        return new CsvSchema(delimiter, dateColumn, descriptionColumn, amountColumn, debitColumn, creditColumn,
+                invertSign, decimalComma, layout);
+    }
+
+    private interface ColumnCheck {
+        boolean accepts(int column);
+    }
+
+    // Best-ranked name first; a named column that fails the value check is left for other roles
+    private static int claim(String[] names, boolean[] used, String[] roleNames, ColumnCheck check) {
+        for (String roleName : roleNames) {
+            for (int column = 0; column < names.length; column++) {
+                if (!used[column] && containsWord(names[column], roleName) && check.accepts(column)) {
+                    used[column] = true;
+                    return column;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int firstUnused(boolean[] used, int columns, ColumnCheck check) {
+        for (int column = 0; column < columns; column++) {
+            if (!used[column] && check.accepts(column)) {
+                used[column] = true;
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    // The unclaimed column with the most text that isn't a number
+    private static int longestText(boolean[] used, int columns, List<CSVRecord> samples, CsvSchema probe) {
+        int best = -1;
+        long bestLength = 0;
+        for (int column = 0; column < columns; column++) {
+            if (used[column] || amountShare(probe, samples, column) >= MIN_MATCH_SHARE) {
+                continue;
+            }
+            long length = 0;
+            for (CSVRecord record : samples) {
+                if (column < record.size()) {
+                    length += record.get(column).trim().length();
+                }
+            }
+            if (length > bestLength) {
+                best = column;
+                bestLength = length;
+            }
+        }
+        if (best >= 0) {
+            used[best] = true;
+        }
+        return best;
+    }
+
+    // An empty column fits every role, so only its name can pick it
+    private static boolean hasValues(List<CSVRecord> samples, int column) {
+        for (CSVRecord record : samples) {
+            if (column < record.size() && !record.get(column).trim().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double dateShare(List<CSVRecord> samples, int column) {
+        int filled = 0;
+        int dates = 0;
+        for (CSVRecord record : samples) {
+            String value = column < record.size() ? record.get(column).trim() : "";
+            if (value.isEmpty()) {
+                continue;
+            }
+            filled++;
+            if (isDate(value)) {
+                dates++;
+            }
+        }
+        // A column left blank in every sample row gives nothing to check against
+        return filled == 0 ? 1.0 : (double) dates / filled;
+    }
+
+    private static boolean isDate(String value) {
+        for (StatementDateParser.Layout layout : StatementDateParser.Layout.values()) {
+            if (StatementDateParser.parse(layout, value, 0, value.length()) != StatementDateParser.INVALID) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double amountShare(CsvSchema probe, List<CSVRecord> samples, int column) {
+        int filled = 0;
+        int amounts = 0;
+        for (CSVRecord record : samples) {
+            String value = column < record.size() ? record.get(column).trim() : "";
+            if (value.isEmpty()) {
+                continue;
+            }
+            filled++;
+            // "15.01.2024" would otherwise pass as an amount once commas and points are swapped
+            if (probe.parseAmount(value) != CurrencyUtils.INVALID && !isDate(value)) {
+                amounts++;
+            }
+        }
+        return filled == 0 ? 1.0 : (double) amounts / filled;
+    }
+
+    // "12,50" / "1.234,56" outnumber "12.50" / "1,234.56" among the sample values
+    private static boolean prefersDecimalComma(List<CSVRecord> samples) {
+        int comma = 0;
+        int point = 0;
+        for (CSVRecord record : samples) {
+            for (int column = 0; column < record.size(); column++) {
+                String value = record.get(column).trim();
+                int length = value.length();
+                if (length < 4 || !isDigit(value.charAt(length - 1)) || !isDigit(value.charAt(length - 2))
+                        || !isDigit(value.charAt(length - 4))) {
+                    continue;
+                }
+                if (value.charAt(length - 3) == ',') {
+                    comma++;
+                } else if (value.charAt(length - 3) == '.') {
+                    point++;
+                }
+            }
+        }
+        return comma > point;
+    }
+
+    private static boolean chargesPrintedPositive(CsvSchema probe, List<CSVRecord> samples,
+                                                  int amountColumn, int descriptionColumn) {
+        int positive = 0;
+        int negative = 0;
+        boolean paymentIsNegative = false;
+        for (CSVRecord record : samples) {
+            long cents = amountColumn < record.size() ? probe.parseAmount(record.get(amountColumn)) : CurrencyUtils.INVALID;
+            if (cents == CurrencyUtils.INVALID || cents == 0) {
+                continue;
+            }
+            if (cents > 0) {
+                positive++;
+            } else {
+                negative++;
+                String description = descriptionColumn < record.size()
+                        ? record.get(descriptionColumn).toLowerCase(Locale.ROOT) : "";
+                paymentIsNegative |= matchesAny(description, PAYMENT_MARKERS);
+            }
+        }
+        return paymentIsNegative && positive >= 4 * negative;
+    }
+
+    // The layout that reads the most sample dates; day-first wins ties for European exports
+    private static StatementDateParser.Layout dateLayout(List<CSVRecord> samples, int dateColumn, boolean european) {
+        StatementDateParser.Layout best = null;
+        int bestCount = 0;
+        for (StatementDateParser.Layout layout : StatementDateParser.Layout.values()) {
+            int count = 0;
+            for (CSVRecord record : samples) {
+                String value = dateColumn < record.size() ? record.get(dateColumn).trim() : "";
+                if (StatementDateParser.parse(layout, value, 0, value.length()) != StatementDateParser.INVALID) {
+                    count++;
+                }
+            }
+            boolean preferred = european && layout == StatementDateParser.Layout.DAY_MONTH_YEAR_SLASH;
+            if (count > bestCount || (count == bestCount && count > 0 && preferred)) {
+                best = layout;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static boolean matchesAny(String text, String[] words) {
+        for (String word : words) {
+            if (containsWord(text, word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // word occurs in text with no letter or digit directly on either side
+    static boolean containsWord(String text, String word) {
+        int from = 0;
+        int index;
+        while ((index = text.indexOf(word, from)) >= 0) {
+            int end = index + word.length();
+            if ((index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1)))
+                    && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+                return true;
+            }
+            from = index + 1;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,349 +1,793 @@
 package com.example.statementanalyzer.extraction;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
+import com.example.statementanalyzer.model.Aggregator;
 import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.StatementSummary;
 import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class DocumentParser {
 
     private static final String TAG = "DocumentParser";
+    private static final String PARSE_CACHE_DIR = "parsed-statements";
+    private static final long PARSE_CACHE_MAX_BYTES = 16L * 1024L * 1024L;
+    private static final String CSV_SCHEMA_PREFS = "csv_schemas";
     private final Context context;
 
-    // Common date formats in financial statements
-    private final SimpleDateFormat[] dateFormats = {
-            new SimpleDateFormat("MM/dd/yyyy", Locale.US),
-            new SimpleDateFormat("MM-dd-yyyy", Locale.US),
-            new SimpleDateFormat("yyyy-MM-dd", Locale.US),
-            new SimpleDateFormat("MMM dd, yyyy", Locale.US)
-    };
+    // Statement period header, e.g. "Statement Period: Jan 1, 2024 to Jan 31, 2024"
+    private static final Pattern PERIOD_PATTERN = Pattern.compile("(?i)statement period:?\\s*(\\w+\\s*\\d+,?\\s*\\d+)\\s*(?:to|-)\\s*(\\w+\\s*\\d+,?\\s*\\d+)");
 
-    // Common categories for transactions
-    private final Map<String, String> categoryKeywords = new HashMap<>();
+    // Quicken's QFX is OFX with an extra sign-on block, so both go to the same reader
+    public static final List<String> OFX_MIME_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "application/x-ofx", "application/ofx", "application/vnd.intu.qfx", "application/x-qfx"));
+
+    // Common categories for transactions, compiled into a single-pass matcher.
+    // Registration order breaks ties between equally long keywords.
+    private final CategoryMatcher.Builder categoryKeywords = new CategoryMatcher.Builder();
+    private volatile CategoryMatcher categoryMatcher;
+
+    // PDF page workers for parses that don't ask for their own count
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private PdfMemoryPolicy memoryPolicy;
+    private ParseCache parseCache;
+    private final TemplateRegistry templateRegistry = TemplateRegistry.withDefaults();
+
+    // Inferred CSV layouts by header signature, mirrored in SharedPreferences
+    private final Map<String, CsvSchema> csvSchemas = new ConcurrentHashMap<>();
 
     public DocumentParser(Context context) {
         this.context = context;
+        // One document per page-range worker, and BatchImportManager splits the cores
+        // between its files, so at most one PDDocument per core is loaded at a time
+        this.memoryPolicy = PdfMemoryPolicy.forDevice(context, Runtime.getRuntime().availableProcessors());
+        this.parseCache = new ParseCache(new File(context.getCacheDir(), PARSE_CACHE_DIR), PARSE_CACHE_MAX_BYTES);
         initializeCategoryKeywords();
     }
 
+    // Extra user or merchant keywords; the matcher is recompiled on next use
+    public synchronized void addCategoryKeyword(String keyword, String category) {
+        categoryKeywords.add(keyword, category);
+        categoryMatcher = null;
+    }
+
+    private CategoryMatcher getCategoryMatcher() {
+        CategoryMatcher matcher = categoryMatcher;
+        if (matcher == null) {
+            synchronized (this) {
+                matcher = categoryMatcher;
+                if (matcher == null) {
+                    matcher = categoryKeywords.build();
+                    categoryMatcher = matcher;
+                }
+            }
+        }
+        return matcher;
+    }
+
+    // Number of worker threads used to strip PDF pages; 1 keeps everything on the calling thread
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Caps how much of each loaded PDF stays on the heap; the rest spills to scratch files
+    public void setMemoryPolicy(PdfMemoryPolicy memoryPolicy) {
+        this.memoryPolicy = memoryPolicy;
+    }
+
+    // Bank layouts tried before the generic line pattern; register more to support other issuers
+    public TemplateRegistry getTemplateRegistry() {
+        return templateRegistry;
+    }
+
+    // Results of earlier parses keyed by document content; null disables caching
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
     private void initializeCategoryKeywords() {
         // Shopping
-        categoryKeywords.put("amazon", "Shopping");
-        categoryKeywords.put("walmart", "Shopping");
-        categoryKeywords.put("target", "Shopping");
-        categoryKeywords.put("ebay", "Shopping");
-        categoryKeywords.put("store", "Shopping");
-        categoryKeywords.put("shop", "Shopping");
+        categoryKeywords.add("amazon", "Shopping");
+        categoryKeywords.add("walmart", "Shopping");
+        categoryKeywords.add("target", "Shopping");
+        categoryKeywords.add("ebay", "Shopping");
+        categoryKeywords.add("store", "Shopping");
+        categoryKeywords.add("shop", "Shopping");
 
         // Groceries
-        categoryKeywords.put("grocery", "Groceries");
-        categoryKeywords.put("supermarket", "Groceries");
-        categoryKeywords.put("food", "Groceries");
-        categoryKeywords.put("market", "Groceries");
+        categoryKeywords.add("grocery", "Groceries");
+        categoryKeywords.add("supermarket", "Groceries");
+        categoryKeywords.add("food", "Groceries");
+        categoryKeywords.add("market", "Groceries");
 
         // Dining
-        categoryKeywords.put("restaurant", "Dining");
-        categoryKeywords.put("cafe", "Dining");
-        categoryKeywords.put("coffee", "Dining");
-        categoryKeywords.put("starbucks", "Dining");
-        categoryKeywords.put("mcdonald", "Dining");
-        categoryKeywords.put("burger", "Dining");
-        categoryKeywords.put("pizza", "Dining");
+        categoryKeywords.add("restaurant", "Dining");
+        categoryKeywords.add("cafe", "Dining");
+        categoryKeywords.add("coffee", "Dining");
+        categoryKeywords.add("starbucks", "Dining");
+        categoryKeywords.add("mcdonald", "Dining");
+        categoryKeywords.add("burger", "Dining");
+        categoryKeywords.add("pizza", "Dining");
 
         // Transportation
-        categoryKeywords.put("gas", "Transportation");
-        categoryKeywords.put("uber", "Transportation");
-        categoryKeywords.put("lyft", "Transportation");
-        categoryKeywords.put("taxi", "Transportation");
-        categoryKeywords.put("transit", "Transportation");
-        categoryKeywords.put("parking", "Transportation");
-        categoryKeywords.put("auto", "Transportation");
+        categoryKeywords.add("gas", "Transportation");
+        categoryKeywords.add("uber", "Transportation");
+        categoryKeywords.add("lyft", "Transportation");
+        categoryKeywords.add("taxi", "Transportation");
+        categoryKeywords.add("transit", "Transportation");
+        categoryKeywords.add("parking", "Transportation");
+        categoryKeywords.add("auto", "Transportation");
 
         // Utilities
-        categoryKeywords.put("electric", "Utilities");
-        categoryKeywords.put("water", "Utilities");
-        categoryKeywords.put("gas bill", "Utilities");
-        categoryKeywords.put("internet", "Utilities");
-        categoryKeywords.put("phone", "Utilities");
-        categoryKeywords.put("mobile", "Utilities");
-        categoryKeywords.put("utility", "Utilities");
+        categoryKeywords.add("electric", "Utilities");
+        categoryKeywords.add("water", "Utilities");
+        categoryKeywords.add("gas bill", "Utilities");
+        categoryKeywords.add("internet", "Utilities");
+        categoryKeywords.add("phone", "Utilities");
+        categoryKeywords.add("mobile", "Utilities");
+        categoryKeywords.add("utility", "Utilities");
 
         // Housing
-        categoryKeywords.put("rent", "Housing");
-        categoryKeywords.put("mortgage", "Housing");
-        categoryKeywords.put("apartment", "Housing");
-        categoryKeywords.put("home", "Housing");
+        categoryKeywords.add("rent", "Housing");
+        categoryKeywords.add("mortgage", "Housing");
+        categoryKeywords.add("apartment", "Housing");
+        categoryKeywords.add("home", "Housing");
 
         // Entertainment
-        categoryKeywords.put("movie", "Entertainment");
-        categoryKeywords.put("netflix", "Entertainment");
-        categoryKeywords.put("spotify", "Entertainment");
-        categoryKeywords.put("hulu", "Entertainment");
-        categoryKeywords.put("disney", "Entertainment");
-        categoryKeywords.put("theater", "Entertainment");
-        categoryKeywords.put("game", "Entertainment");
+        categoryKeywords.add("movie", "Entertainment");
+        categoryKeywords.add("netflix", "Entertainment");
+        categoryKeywords.add("spotify", "Entertainment");
+        categoryKeywords.add("hulu", "Entertainment");
+        categoryKeywords.add("disney", "Entertainment");
+        categoryKeywords.add("theater", "Entertainment");
+        categoryKeywords.add("game", "Entertainment");
 
         // Health
-        categoryKeywords.put("doctor", "Health");
-        categoryKeywords.put("medical", "Health");
-        categoryKeywords.put("pharmacy", "Health");
-        categoryKeywords.put("hospital", "Health");
-        categoryKeywords.put("clinic", "Health");
-        categoryKeywords.put("dental", "Health");
-        categoryKeywords.put("vision", "Health");
+        categoryKeywords.add("doctor", "Health");
+        categoryKeywords.add("medical", "Health");
+        categoryKeywords.add("pharmacy", "Health");
+        categoryKeywords.add("hospital", "Health");
+        categoryKeywords.add("clinic", "Health");
+        categoryKeywords.add("dental", "Health");
+        categoryKeywords.add("vision", "Health");
 
         // Income
-        categoryKeywords.put("salary", "Income");
-        categoryKeywords.put("deposit", "Income");
-        categoryKeywords.put("payroll", "Income");
-        categoryKeywords.put("direct deposit", "Income");
-        categoryKeywords.put("payment received", "Income");
-        categoryKeywords.put("refund", "Income");
+        categoryKeywords.add("salary", "Income");
+        categoryKeywords.add("deposit", "Income");
+        categoryKeywords.add("payroll", "Income");
+        categoryKeywords.add("direct deposit", "Income");
+        categoryKeywords.add("payment received", "Income");
+        categoryKeywords.add("refund", "Income");
     }
 
     public List<FinancialData> parseDocument(Uri documentUri) throws IOException {
-        String mimeType = context.getContentResolver().getType(documentUri);
+        return parseDocument(documentUri, ParseListener.NONE, new CancellationToken());
+    }
 
-        if (mimeType != null) {
-            if (mimeType.equals("application/pdf")) {
-                return parsePdf(documentUri);
-            } else if (mimeType.equals("text/csv") || mimeType.equals("application/vnd.ms-excel")) {
-                return parseCsv(documentUri);
-            }
+    /**
+     * Like parseDocument(Uri), reporting pages or rows to the listener as they are
+     * parsed. Cancelling the token makes this throw InterruptedIOException within
+     * one PDF page or ROW_INTERVAL CSV/OFX rows.
+     */
+    public List<FinancialData> parseDocument(Uri documentUri, ParseListener listener,
+                                             CancellationToken cancellation) throws IOException {
+        return parseDocument(documentUri, listener, cancellation, parallelism);
+    }
+
+    // Strips PDF pages on up to parallelism workers for this parse only, whatever setParallelism says
+    public List<FinancialData> parseDocument(Uri documentUri, ParseListener listener,
+                                             CancellationToken cancellation, int parallelism) throws IOException {
+        ParseProgress progress = new ParseProgress(listener, cancellation);
+        progress.throwIfCancelled();
+
+        // Rejected from the first few KB, before the cache hashes the whole file
+        FormatSniffer.Format format = sniffFormat(documentUri);
+        if (format == FormatSniffer.Format.ZIP || format == FormatSniffer.Format.OLE2) {
+            throw new IOException("Spreadsheets aren't supported; export the statement as CSV or PDF");
+        } else if (format == FormatSniffer.Format.UNKNOWN) {
+            throw new IOException("Unsupported file type");
         }
 
-        // Try to determine type by extension
-        String fileName = documentUri.getLastPathSegment();
-        if (fileName != null) {
-            if (fileName.toLowerCase().endsWith(".pdf")) {
-                return parsePdf(documentUri);
-            } else if (fileName.toLowerCase().endsWith(".csv")) {
-                return parseCsv(documentUri);
-            }
+        ParseCache cache = parseCache;
+        if (cache == null) {
+            return parseUncached(documentUri, format, progress, parallelism);
         }
 
-        throw new IOException("Unsupported file type");
+        // Hashing is a plain sequential read; a hit never loads PDFBox or scans a line
+        String cacheKey = ParseCache.computeKey(openInputStream(documentUri), getCacheNamespace(), cancellation);
+        List<FinancialData> cached = cache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<FinancialData> result = parseUncached(documentUri, format, progress, parallelism);
+        cache.put(cacheKey, result);
+        return result;
     }
 
-    private List<FinancialData> parsePdf(Uri pdfUri) throws IOException {
-        InputStream inputStream = context.getContentResolver().openInputStream(pdfUri);
-        PDDocument document = PDDocument.load(inputStream);
+    // Anything that changes the output for the same bytes belongs in the namespace
+    private synchronized String getCacheNamespace() {
+        int templates = 1;
+        for (StatementTemplate template : templateRegistry.getTemplates()) {
+            templates = 31 * templates + template.getName().hashCode();
+        }
+        return "parser-" + ParseCache.PARSER_VERSION
+                + "/keywords-" + Integer.toHexString(categoryKeywords.contentHash())
+                + "/templates-" + Integer.toHexString(templates);
+    }
 
-        try {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+    private InputStream openInputStream(Uri uri) throws IOException {
+        InputStream inputStream = context.getContentResolver().openInputStream(uri);
+        if (inputStream == null) {
+            throw new IOException("Unable to open " + uri);
+        }
+        return inputStream;
+    }
 
-            // Extract statement period
-            Date startDate = null;
-            Date endDate = null;
+    // Text formats are decoded from a file channel when the provider has a real file
+    // behind the Uri, and from a channel over the stream otherwise
+    private ChannelTextReader openTextReader(Uri uri) throws IOException {
+        ReadableByteChannel channel = null;
+        try {
+            ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor != null) {
+                // Closing the channel closes the stream, which closes the descriptor
+                channel = new ParcelFileDescriptor.AutoCloseInputStream(descriptor).getChannel();
+            }
+        } catch (IOException | SecurityException e) {
+            Log.d(TAG, "No file descriptor for " + uri, e);
+        }
+        if (channel == null) {
+            channel = Channels.newChannel(openInputStream(uri));
+        }
+        try {
+            return new ChannelTextReader(channel, ChannelTextReader.WINDOWS_1252);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
 
-            Pattern periodPattern = Pattern.compile("(?i)statement period:?\\s*(\\w+\\s*\\d+,?\\s*\\d+)\\s*(?:to|-)\\s*(\\w+\\s*\\d+,?\\s*\\d+)");
-            Matcher periodMatcher = periodPattern.matcher(text);
+    // The bytes decide, not the mime type or the name; both are often missing or wrong
+    private FormatSniffer.Format sniffFormat(Uri uri) throws IOException {
+        try (InputStream inputStream = openInputStream(uri)) {
+            return FormatSniffer.sniff(inputStream);
+        }
+    }
 
-            if (periodMatcher.find()) {
-                String startDateStr = periodMatcher.group(1);
-                String endDateStr = periodMatcher.group(2);
+    private List<FinancialData> parseUncached(Uri documentUri, FormatSniffer.Format format,
+                                              ParseProgress progress, int parallelism) throws IOException {
+        switch (format) {
+            case PDF:
+                return parsePdf(documentUri, progress, new ParallelPdfExtractor(parallelism));
+            case CSV:
+                return parseCsv(documentUri, progress);
+            case OFX:
+                return parseOfx(documentUri, progress);
+            default:
+                throw new IllegalStateException("Unsupported format " + format);
+        }
+    }
 
-                startDate = parseDate(startDateStr);
-                endDate = parseDate(endDateStr);
-            } else {
-                // If statement period not found, use current month
-                Calendar cal = Calendar.getInstance();
-                cal.set(Calendar.DAY_OF_MONTH, 1);
-                startDate = cal.getTime();
+    private List<FinancialData> parsePdf(Uri pdfUri, ParseProgress progress,
+                                         ParallelPdfExtractor parallelPdfExtractor) throws IOException {
+        File pdfFile = copyToScratchFile(pdfUri);
 
-                cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
-                endDate = cal.getTime();
+        try {
+            // Known layouts parse line by line with state carried across pages, so they
+            // stay sequential; only the generic pattern fans pages out to workers
+            if (parallelPdfExtractor.getParallelism() > 1) {
+                String firstPage;
+                int pageCount;
+                try (PDDocument document = PDDocument.load(pdfFile, memoryPolicy.toMemoryUsageSetting(context.getCacheDir()))) {
+                    firstPage = stripFirstPage(document);
+                    pageCount = document.getNumberOfPages();
+                }
+                if (templateRegistry.match(firstPage) == null) {
+                    return parsePdfParallel(pdfFile, pageCount, progress, parallelPdfExtractor);
+                }
             }
 
-            // Extract transactions
             List<Transaction> transactions = new ArrayList<>();
+            FinancialData financialData = parsePdfFile(pdfFile, transactions::add, progress);
+            financialData.setTransactions(transactions);
 
-            // Pattern for transaction lines (date, description, amount)
-            Pattern transactionPattern = Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})\\s+([\\w\\s&.,'\\-]+)\\s+([\\-+]?\\$?\\d+,?\\d+\\.\\d{2})");
-            Matcher transactionMatcher = transactionPattern.matcher(text);
+            List<FinancialData> result = new ArrayList<>();
+            result.add(financialData);
+            return result;
 
-            while (transactionMatcher.find()) {
-                String dateStr = transactionMatcher.group(1);
-                String description = transactionMatcher.group(2).trim();
-                String amountStr = transactionMatcher.group(3).replaceAll("[\\$,]", "");
+        } finally {
+            deleteScratchFile(pdfFile);
+        }
+    }
 
-                Date date = parseDate(dateStr);
-                double amount = Double.parseDouble(amountStr);
-                String category = categorizeTransaction(description, amount);
+    private String stripFirstPage(PDDocument document) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(1);
+        stripper.setEndPage(1);
+        return stripper.getText(document);
+    }
 
-                Transaction transaction = new Transaction(date, description, amount, category);
-                transactions.add(transaction);
+    // Every worker opens its own PDDocument on the shared scratch copy
+    private List<FinancialData> parsePdfParallel(File pdfFile, int pageCount, ParseProgress progress,
+                                                 ParallelPdfExtractor parallelPdfExtractor) throws IOException {
+        PeriodHolder period = new PeriodHolder();
+        StatementDateParser dateParser = new StatementDateParser();
+        AtomicReference<StatementSummary> summary = new AtomicReference<>(StatementSummary.EMPTY);
+
+        MemoryUsageSetting memoryUsageSetting = memoryPolicy.toMemoryUsageSetting(context.getCacheDir());
+        List<Transaction> transactions = parallelPdfExtractor.extract(pdfFile, memoryUsageSetting, pageCount, (pageNumber, pages, pageText, sink) -> {
+            progress.throwIfCancelled();
+            if (period.needsPage(pageNumber)) {
+                Matcher periodMatcher = PERIOD_PATTERN.matcher(pageText);
+                if (periodMatcher.find()) {
+                    period.offer(pageNumber, parsePeriodDate(periodMatcher.group(1)), parsePeriodDate(periodMatcher.group(2)));
+                }
             }
 
-            // Create financial data object
-            FinancialData financialData = new FinancialData();
-            financialData.setStartDate(startDate);
-            financialData.setEndDate(endDate);
-            financialData.setTransactions(transactions);
+            // Each page is totalled on its worker and folded in; cent sums don't depend on order
+            Aggregator pageAggregator = new Aggregator();
+            extractTransactions(pageText, dateParser, aggregating(pageAggregator, sink));
+            summary.accumulateAndGet(pageAggregator.summarize(), StatementSummary::merge);
+            progress.pageParsed(pageCount);
+        });
+
+        FinancialData financialData = new FinancialData();
+        if (period.found()) {
+            financialData.setStartDate(period.startDate);
+            financialData.setEndDate(period.endDate);
+        } else {
+            // If statement period not found, use current month
+            Calendar cal = Calendar.getInstance();
+            cal.set(Calendar.DAY_OF_MONTH, 1);
+            financialData.setStartDate(cal.getTime());
+
+            cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
+            financialData.setEndDate(cal.getTime());
+        }
+        financialData.setTransactions(transactions);
+        summary.get().applyTo(financialData);
 
-            // Calculate totals
-            double totalIncome = 0;
-            double totalExpenses = 0;
-            Map<String, Double> categoryTotals = new HashMap<>();
+        List<FinancialData> result = new ArrayList<>();
+        result.add(financialData);
+        return result;
+    }
 
-            for (Transaction transaction : transactions) {
-                double amount = transaction.getAmount();
-                String category = transaction.getCategory();
+    // PDFBox reads a local file with random access instead of buffering the whole
+    // stream on the heap. The copy goes channel to channel, so the document bytes
+    // never pass through a Java byte array either.
+    private File copyToScratchFile(Uri uri) throws IOException {
+        File file = File.createTempFile("statement", ".pdf", context.getCacheDir());
 
-                if (amount > 0) {
-                    totalIncome += amount;
-                } else {
-                    totalExpenses += amount;
-                }
+        try (FileChannel target = new FileOutputStream(file).getChannel()) {
+            ParcelFileDescriptor descriptor = null;
+            try {
+                descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            } catch (IOException | SecurityException e) {
+                // Some providers only serve streams; fall back to openInputStream below
+                Log.d(TAG, "No file descriptor for " + uri, e);
+            }
 
-                double currentTotal = categoryTotals.getOrDefault(category, 0.0);
-                categoryTotals.put(category, currentTotal + amount);
+            if (descriptor != null) {
+                try (FileChannel source = new FileInputStream(descriptor.getFileDescriptor()).getChannel()) {
+                    long size = source.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                } finally {
+                    descriptor.close();
+                }
+            } else {
+                InputStream inputStream = openInputStream(uri);
+                try (ReadableByteChannel source = Channels.newChannel(inputStream)) {
+                    long position = 0;
+                    long transferred;
+                    while ((transferred = target.transferFrom(source, position, 1024L * 1024L)) > 0) {
+                        position += transferred;
+                    }
+                }
             }
+        } catch (IOException e) {
+            deleteScratchFile(file);
+            throw e;
+        }
+        return file;
+    }
 
-            financialData.setTotalIncome(totalIncome);
-            financialData.setTotalExpenses(totalExpenses);
-            financialData.setCategoryTotals(categoryTotals);
+    private void deleteScratchFile(File file) {
+        if (!file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
 
-            List<FinancialData> result = new ArrayList<>();
-            result.add(financialData);
-            return result;
+    /**
+     * Strips the PDF one page at a time and hands every transaction to the sink as
+     * soon as its page has been scanned, so only a single page of text is held in
+     * memory. The returned FinancialData carries the statement period and totals
+     * but no transaction list; the sink owns the transactions.
+     */
+    public FinancialData parsePdfStreaming(Uri pdfUri, TransactionSink sink) throws IOException {
+        return parsePdfStreaming(pdfUri, sink, ParseListener.NONE, new CancellationToken());
+    }
 
+    public FinancialData parsePdfStreaming(Uri pdfUri, TransactionSink sink, ParseListener listener,
+                                           CancellationToken cancellation) throws IOException {
+        File pdfFile = copyToScratchFile(pdfUri);
+        try {
+            return parsePdfFile(pdfFile, sink, new ParseProgress(listener, cancellation));
         } finally {
-            document.close();
-            inputStream.close();
+            deleteScratchFile(pdfFile);
         }
     }
 
-    private List<FinancialData> parseCsv(Uri csvUri) throws IOException {
-        InputStream inputStream = context.getContentResolver().openInputStream(csvUri);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+    private FinancialData parsePdfFile(File pdfFile, TransactionSink sink, ParseProgress progress) throws IOException {
+        PDDocument document = null;
 
         try {
-            CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader());
-            List<CSVRecord> records = csvParser.getRecords();
-
-            // Determine column indices
-            int dateIndex = -1;
-            int descriptionIndex = -1;
-            int amountIndex = -1;
-
-            for (int i = 0; i < csvParser.getHeaderMap().size(); i++) {
-                String header = csvParser.getHeaderNames().get(i).toLowerCase();
-
-                if (header.contains("date")) {
-                    dateIndex = i;
-                } else if (header.contains("description") || header.contains("merchant") || header.contains("payee")) {
-                    descriptionIndex = i;
-                } else if (header.contains("amount") || header.contains("transaction")) {
-                    amountIndex = i;
+            document = PDDocument.load(pdfFile, memoryPolicy.toMemoryUsageSetting(context.getCacheDir()));
+
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pageCount = document.getNumberOfPages();
+
+            Date startDate = null;
+            Date endDate = null;
+            boolean periodFound = false;
+
+            Aggregator aggregator = new Aggregator();
+            TransactionSink aggregatingSink = aggregating(aggregator, sink);
+            StatementDateParser dateParser = new StatementDateParser();
+            StatementLineParser lineParser = null;
+
+            for (int page = 1; page <= pageCount; page++) {
+                progress.throwIfCancelled();
+
+                // Strip only the current page so text never accumulates across pages
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                String pageText = stripper.getText(document);
+
+                // The statement period is normally printed in the header of the first page
+                if (!periodFound) {
+                    Matcher periodMatcher = PERIOD_PATTERN.matcher(pageText);
+                    if (periodMatcher.find()) {
+                        startDate = parsePeriodDate(periodMatcher.group(1));
+                        endDate = parsePeriodDate(periodMatcher.group(2));
+                        periodFound = true;
+                    }
                 }
+
+                // The first page decides the layout for the whole document
+                if (lineParser == null) {
+                    StatementTemplate template = templateRegistry.match(pageText);
+                    if (!periodFound && template != null) {
+                        // Banks that print the period their own way still anchor the year of every row
+                        String[] period = template.findPeriod(pageText);
+                        endDate = period != null ? parsePeriodDate(period[1]) : null;
+                        if (endDate != null) {
+                            startDate = period[0] != null ? parsePeriodDate(period[0]) : dayAfterMonthBefore(endDate);
+                            periodFound = true;
+                        }
+                    }
+                    lineParser = selectLineParser(template, endDate, dateParser);
+                }
+                lineParser.parsePage(pageText, aggregatingSink);
+                sink.onPageComplete(page, pageCount);
+                progress.pageParsed(pageCount);
             }
 
-            if (dateIndex == -1 || descriptionIndex == -1 || amountIndex == -1) {
-                throw new IOException("CSV format not recognized");
+            if (!periodFound) {
+                // If statement period not found, use current month
+                Calendar cal = Calendar.getInstance();
+                cal.set(Calendar.DAY_OF_MONTH, 1);
+                startDate = cal.getTime();
+
+                cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
+                endDate = cal.getTime();
             }
 
-            // Extract transactions
-            List<Transaction> transactions = new ArrayList<>();
-            Date earliestDate = null;
-            Date latestDate = null;
+            // Create financial data object
+            FinancialData financialData = new FinancialData();
+            financialData.setStartDate(startDate);
+            financialData.setEndDate(endDate);
+            financialData.setTransactions(new ArrayList<>());
+            aggregator.summarize().applyTo(financialData);
+            return financialData;
 
-            for (CSVRecord record : records) {
-                String dateStr = record.get(dateIndex);
-                String description = record.get(descriptionIndex);
-                String amountStr = record.get(amountIndex).replaceAll("[\\$,]", "");
+        } finally {
+            // The scratch file belongs to the caller, which deletes it
+            if (document != null) {
+                document.close();
+            }
+        }
+    }
 
-                Date date = parseDate(dateStr);
-                if (date == null) continue;
+    private StatementLineParser selectLineParser(StatementTemplate template, Date periodEnd,
+                                                 StatementDateParser dateParser) throws IOException {
+        if (template == null) {
+            return (pageText, sink) -> extractTransactions(pageText.toString(), dateParser, sink);
+        }
 
-                double amount = Double.parseDouble(amountStr);
-                String category = categorizeTransaction(description, amount);
+        Log.d(TAG, "Parsing with the " + template.getName() + " template");
+        if (periodEnd == null) {
+            if (!template.isYearInDate()) {
+                // Today's year would put every row of an older statement in the wrong year
+                throw new IOException("Couldn't find the statement period on this "
+                        + template.getName() + " statement, so its dates have no year");
+            }
+            // Rows carry their own year; the period only settles two-digit years
+            periodEnd = new Date();
+        }
+        return template.newLineParser(DateUtils.toEpochDay(periodEnd), this::categorizeTransaction);
+    }
 
-                Transaction transaction = new Transaction(date, description, amount, category);
-                transactions.add(transaction);
+    // Start of a monthly statement that only printed its closing date
+    private static Date dayAfterMonthBefore(Date endDate) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(endDate);
+        cal.add(Calendar.MONTH, -1);
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        return cal.getTime();
+    }
 
-                // Track statement period
-                if (earliestDate == null || date.before(earliestDate)) {
-                    earliestDate = date;
+    // Scans one chunk of statement text for (date, description, amount) lines
+    private void extractTransactions(String text, StatementDateParser dateParser, TransactionSink sink) {
+        // Finds the same lines the old date/description/amount regex did, without its backtracking
+        TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(text);
+
+        while (tokenizer.next()) {
+            String dateStr = text.substring(tokenizer.dateStart(), tokenizer.dateEnd());
+            String description = text.substring(tokenizer.descriptionStart(), tokenizer.descriptionEnd()).trim();
+
+            // Read the amount straight out of the page text into cents
+            long cents = CurrencyUtils.parseCents(text, tokenizer.amountStart(), tokenizer.amountEnd());
+            if (cents == CurrencyUtils.INVALID) continue;
+
+            Date date = dateParser.parse(dateStr);
+            double amount = CurrencyUtils.toAmount(cents);
+            String category = categorizeTransaction(description, amount);
+
+            sink.onTransaction(new Transaction(date, description, amount, category));
+        }
+    }
+
+    private List<FinancialData> parseCsv(Uri csvUri, ParseProgress progress) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        FinancialData financialData = parseCsvStreaming(csvUri, transactions::add, progress);
+        financialData.setTransactions(transactions);
+
+        List<FinancialData> result = new ArrayList<>();
+        result.add(financialData);
+        return result;
+    }
+
+    /**
+     * Reads the CSV one record at a time and pushes each transaction to the sink
+     * before the next record is parsed. The sink runs on the parsing thread, so a
+     * slow consumer throttles the reader and nothing piles up in between; peak
+     * memory is whatever the sink decides to keep. The statement period and totals
+     * are finalized once the end of the stream is reached.
+     */
+    public FinancialData parseCsvStreaming(Uri csvUri, TransactionSink sink) throws IOException {
+        return parseCsvStreaming(csvUri, sink, ParseListener.NONE, new CancellationToken());
+    }
+
+    public FinancialData parseCsvStreaming(Uri csvUri, TransactionSink sink, ParseListener listener,
+                                           CancellationToken cancellation) throws IOException {
+        return parseCsvStreaming(csvUri, sink, new ParseProgress(listener, cancellation));
+    }
+
+    private FinancialData parseCsvStreaming(Uri csvUri, TransactionSink sink, ParseProgress progress) throws IOException {
+        try (BufferedReader reader = new BufferedReader(openTextReader(csvUri))) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("CSV file is empty");
+            }
+            char delimiter = CsvSchemaDetector.sniffDelimiter(headerLine);
+            CSVFormat format = CSVFormat.DEFAULT.builder().setDelimiter(delimiter).build();
+            List<String> headers = CSVParser.parse(headerLine, format).iterator().next().toList();
+            String signature = CsvSchema.signature(delimiter, headers);
+
+            CSVParser csvParser = new CSVParser(reader, format);
+            Iterator<CSVRecord> records = csvParser.iterator();
+
+            // A known header signature skips detection and binds the columns by index
+            List<CSVRecord> sample = new ArrayList<>();
+            CsvSchema schema = loadCsvSchema(signature);
+            boolean remembered = schema != null;
+            if (schema == null) {
+                while (sample.size() < CsvSchemaDetector.SAMPLE_ROWS && records.hasNext()) {
+                    sample.add(records.next());
+                }
+                if (sample.isEmpty()) {
+                    // Nothing to import, and nothing to confirm a schema worth saving
+                    throw new IOException("CSV file has no transactions");
                 }
-                if (latestDate == null || date.after(latestDate)) {
-                    latestDate = date;
+                schema = CsvSchemaDetector.detect(delimiter, headers, sample);
+                if (schema == null) {
+                    throw new IOException("CSV format not recognized");
                 }
+                saveCsvSchema(signature, schema);
+            }
+
+            Aggregator aggregator = new Aggregator();
+            TransactionSink aggregatingSink = aggregating(aggregator, sink);
+            StatementDateParser dateParser = new StatementDateParser(schema.getDateLayout());
+
+            // The sampled rows go first, then the parser pulls the rest lazily
+            int rows = 0;
+            for (CSVRecord record : sample) {
+                rows++;
+                progress.rowParsed();
+                emitCsvRecord(record, schema, dateParser, aggregatingSink);
+            }
+            while (records.hasNext()) {
+                rows++;
+                progress.rowParsed();
+                emitCsvRecord(records.next(), schema, dateParser, aggregatingSink);
+            }
+            progress.rowsFinished();
+
+            // The statement period is the span of transaction dates the aggregator saw
+            StatementSummary summary = aggregator.summarize();
+            if (remembered && rows > 0 && summary.getTransactionCount() == 0) {
+                // The saved schema doesn't fit this file after all; detect again next time
+                forgetCsvSchema(signature);
             }
 
-            // Create financial data object
             FinancialData financialData = new FinancialData();
-            financialData.setStartDate(earliestDate);
-            financialData.setEndDate(latestDate);
-            financialData.setTransactions(transactions);
+            financialData.setStartDate(summary.getFirstDate());
+            financialData.setEndDate(summary.getLastDate());
+            financialData.setTransactions(new ArrayList<>());
+            summary.applyTo(financialData);
+            return financialData;
+        }
+    }
 
-            // Calculate totals
-            double totalIncome = 0;
-            double totalExpenses = 0;
-            Map<String, Double> categoryTotals = new HashMap<>();
+    private void emitCsvRecord(CSVRecord record, CsvSchema schema, StatementDateParser dateParser, TransactionSink sink) {
+        Date date = dateParser.parse(schema.getDate(record));
+        if (date == null) return;
 
-            for (Transaction transaction : transactions) {
-                double amount = transaction.getAmount();
-                String category = transaction.getCategory();
+        long cents = schema.getCents(record);
+        if (cents == CurrencyUtils.INVALID) return;
 
-                if (amount > 0) {
-                    totalIncome += amount;
-                } else {
-                    totalExpenses += amount;
-                }
+        String description = schema.getDescription(record);
+        double amount = CurrencyUtils.toAmount(cents);
+        String category = categorizeTransaction(description, amount);
 
-                double currentTotal = categoryTotals.getOrDefault(category, 0.0);
-                categoryTotals.put(category, currentTotal + amount);
+        sink.onTransaction(new Transaction(date, description, amount, category));
+    }
+
+    private CsvSchema loadCsvSchema(String signature) {
+        CsvSchema schema = csvSchemas.get(signature);
+        if (schema == null) {
+            schema = CsvSchema.decode(csvSchemaPreferences().getString(signature, null));
+            if (schema != null) {
+                csvSchemas.put(signature, schema);
             }
+        }
+        return schema;
+    }
 
-            financialData.setTotalIncome(totalIncome);
-            financialData.setTotalExpenses(totalExpenses);
-            financialData.setCategoryTotals(categoryTotals);
+    private void saveCsvSchema(String signature, CsvSchema schema) {
+        csvSchemas.put(signature, schema);
+        csvSchemaPreferences().edit().putString(signature, schema.encode()).apply();
+    }
 
-            List<FinancialData> result = new ArrayList<>();
-            result.add(financialData);
-            return result;
+    private void forgetCsvSchema(String signature) {
+        Log.d(TAG, "Dropping saved CSV schema " + signature);
+        csvSchemas.remove(signature);
+        csvSchemaPreferences().edit().remove(signature).apply();
+    }
 
-        } finally {
-            reader.close();
-            inputStream.close();
-        }
+    private SharedPreferences csvSchemaPreferences() {
+        return context.getSharedPreferences(CSV_SCHEMA_PREFS, Context.MODE_PRIVATE);
     }
 
-    private Date parseDate(String dateStr) {
-        for (SimpleDateFormat format : dateFormats) {
-            try {
-                return format.parse(dateStr);
-            } catch (ParseException e) {
-                // Try next format
+    private List<FinancialData> parseOfx(Uri ofxUri, ParseProgress progress) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        FinancialData financialData = parseOfxStreaming(ofxUri, transactions::add, progress);
+        financialData.setTransactions(transactions);
+
+        List<FinancialData> result = new ArrayList<>();
+        result.add(financialData);
+        return result;
+    }
+
+    /**
+     * Streams the STMTTRN records of an OFX or QFX file into the sink, the same way
+     * parseCsvStreaming does for CSV rows. Amounts and dates are already
+     * machine-readable, so there is no layout guessing. The statement period is
+     * taken from the BANKTRANLIST bounds, or from the transaction dates if the file
+     * has none.
+     */
+    public FinancialData parseOfxStreaming(Uri ofxUri, TransactionSink sink) throws IOException {
+        return parseOfxStreaming(ofxUri, sink, ParseListener.NONE, new CancellationToken());
+    }
+
+    public FinancialData parseOfxStreaming(Uri ofxUri, TransactionSink sink, ParseListener listener,
+                                           CancellationToken cancellation) throws IOException {
+        return parseOfxStreaming(ofxUri, sink, new ParseProgress(listener, cancellation));
+    }
+
+    private FinancialData parseOfxStreaming(Uri ofxUri, TransactionSink sink, ParseProgress progress) throws IOException {
+        // OfxPullParser buffers on its own, so it reads the decoder directly
+        try (ChannelTextReader reader = openTextReader(ofxUri)) {
+            Aggregator aggregator = new Aggregator();
+            TransactionSink aggregatingSink = aggregating(aggregator, sink);
+            int[] period = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+            new OfxStatementReader().read(reader, new OfxStatementReader.Listener() {
+                @Override
+                public void onTransaction(int epochDay, long cents, String description) throws IOException {
+                    progress.rowParsed();
+                    double amount = CurrencyUtils.toAmount(cents);
+                    String category = categorizeTransaction(description, amount);
+                    aggregatingSink.onTransaction(new Transaction(DateUtils.toDate(epochDay), description, amount, category));
+                }
+
+                @Override
+                public void onStatementPeriod(int startEpochDay, int endEpochDay) {
+                    // A file with several accounts spans all of their lists
+                    period[0] = Math.min(period[0], startEpochDay);
+                    period[1] = Math.max(period[1], endEpochDay);
+                }
+            });
+            progress.rowsFinished();
+
+            StatementSummary summary = aggregator.summarize();
+            FinancialData financialData = new FinancialData();
+            if (period[0] <= period[1]) {
+                financialData.setStartDate(DateUtils.toDate(period[0]));
+                financialData.setEndDate(DateUtils.toDate(period[1]));
+            } else {
+                financialData.setStartDate(summary.getFirstDate());
+                financialData.setEndDate(summary.getLastDate());
             }
+            financialData.setTransactions(new ArrayList<>());
+            summary.applyTo(financialData);
+            return financialData;
         }
-        return null;
+    }
+
+    // Period headers use a different layout than the rows, so they get their own parser
+    private Date parsePeriodDate(String dateStr) {
+        return new StatementDateParser().parse(dateStr);
     }
 
     private String categorizeTransaction(String description, double amount) {
@@ -352,15 +796,46 @@ public class DocumentParser {
             return "Income";
         }
 
-        // Check for category keywords
-        String lowerDesc = description.toLowerCase();
-        for (Map.Entry<String, String> entry : categoryKeywords.entrySet()) {
-            if (lowerDesc.contains(entry.getKey())) {
-                return entry.getValue();
-            }
+        // Check for category keywords; the longest keyword found wins
+        String category = getCategoryMatcher().match(description);
+        if (category != null) {
+            return category;
         }
 
         // Default category for expenses
         return "Miscellaneous";
     }
-}
\ No newline at end of file
+
+    // Keeps the statement period from the lowest-numbered page that printed one,
+    // whichever worker thread happens to find it first
+    private static class PeriodHolder {
+        private int page = Integer.MAX_VALUE;
+        private Date startDate;
+        private Date endDate;
+
+        synchronized boolean needsPage(int pageNumber) {
+            return pageNumber < page;
+        }
+
+        synchronized void offer(int pageNumber, Date start, Date end) {
+            if (pageNumber < page) {
+                page = pageNumber;
+                startDate = start;
+                endDate = end;
+            }
+        }
+
+        synchronized boolean found() {
+            return page != Integer.MAX_VALUE;
+        }
+    }
+
+    // Feeds every transaction to the aggregator before passing it on, so totals are
+    // built in the same pass that extracts the rows
+    private static TransactionSink aggregating(Aggregator aggregator, TransactionSink downstream) {
+        return transaction -> {
+            aggregator.add(transaction);
+            downstream.onTransaction(transaction);
+        };
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.statementanalyzer.extraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+
+/**
+ * Decides what a document is from its first few KB, without trusting the mime
+ * type or the file name. Content URIs often carry neither, and a mislabelled
+ * file would otherwise be copied and handed to PDFBox before it fails. Only the
+ * head is read, so rejecting a photo or a spreadsheet costs microseconds.
+ */
+public final class FormatSniffer {
+
+    public enum Format {
+        PDF,
+        OFX,
+        CSV,
+        // xlsx, docx and zipped exports
+        ZIP,
+        // Legacy .xls and .doc
+        OLE2,
+        UNKNOWN
+    }
+
+    static final int HEAD_SIZE = 4096;
+
+    // The PDF spec lets readers accept junk before the header within the first KB
+    private static final int PDF_HEADER_WINDOW = 1024;
+
+    // Complete lines after the header compared against its delimiter count
+    private static final int CHECKED_LINES = 10;
+
+    private FormatSniffer() {
+    }
+
+    // Reads up to HEAD_SIZE bytes; the stream is left open
+    public static Format sniff(InputStream inputStream) throws IOException {
+        byte[] head = new byte[HEAD_SIZE];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = inputStream.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        return sniff(head, length);
+    }
+
+    public static Format sniff(byte[] head, int length) {
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K'
+                && (head[2] == 3 || head[2] == 5 || head[2] == 7) && (head[3] == 4 || head[3] == 6 || head[3] == 8)) {
+            return Format.ZIP;
+        }
+        if (length >= 8 && (head[0] & 0xff) == 0xd0 && (head[1] & 0xff) == 0xcf
+                && (head[2] & 0xff) == 0x11 && (head[3] & 0xff) == 0xe0) {
+            return Format.OLE2;
+        }
+        if (indexOf(head, Math.min(length, PDF_HEADER_WINDOW), "%PDF-") >= 0) {
+            return Format.PDF;
+        }
+
+        String text = decodeHead(head, length);
+        if (text == null) {
+            return Format.UNKNOWN;
+        }
+        String upper = text.toUpperCase(Locale.ROOT);
+        if (upper.trim().startsWith("OFXHEADER:") || upper.contains("<?OFX") || upper.contains("<OFX>")) {
+            return Format.OFX;
+        }
+        return looksDelimited(text) ? Format.CSV : Format.UNKNOWN;
+    }
+
+    // null when the head isn't text: NUL bytes or control characters in a charset that was supposed to fit
+    private static String decodeHead(byte[] head, int length) {
+        ByteBuffer bytes = ByteBuffer.wrap(head, 0, length);
+        Charset charset = ChannelTextReader.detectCharset(bytes, ChannelTextReader.WINDOWS_1252);
+        CharBuffer chars;
+        try {
+            // A multi-byte character cut off at the end of the head is not an error
+            chars = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+        } catch (IOException e) {
+            return null;
+        }
+
+        int start = chars.length() > 0 && chars.charAt(0) == '\uFEFF' ? 1 : 0;
+        int control = 0;
+        for (int i = start; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c == 0) {
+                return null;
+            }
+            if (c < 0x20 && c != '\n' && c != '\r' && c != '\t' && c != '\f') {
+                control++;
+            }
+        }
+        // Text exports have practically none; binary formats have plenty
+        if (control * 100 > chars.length()) {
+            return null;
+        }
+        return chars.subSequence(start, chars.length()).toString();
+    }
+
+    // A header with at least two columns, and rows that mostly split the same way
+    static boolean looksDelimited(String text) {
+        int headerEnd = lineEnd(text, 0);
+        String header = text.substring(0, headerEnd).trim();
+        if (header.isEmpty()) {
+            return false;
+        }
+        char delimiter = CsvSchemaDetector.sniffDelimiter(header);
+        int columns = countDelimiters(header, delimiter);
+        if (columns == 0) {
+            return false;
+        }
+
+        int checked = 0;
+        int matching = 0;
+        int pos = skipLineBreak(text, headerEnd);
+        while (checked < CHECKED_LINES && pos < text.length()) {
+            int end = lineEnd(text, pos);
+            if (end == text.length()) {
+                // The head may have cut this line off
+                break;
+            }
+            String line = text.substring(pos, end);
+            if (!line.trim().isEmpty()) {
+                checked++;
+                // Trailing empty columns are often dropped, extra ones come from unquoted text
+                if (countDelimiters(line, delimiter) >= Math.max(1, columns / 2)) {
+                    matching++;
+                }
+            }
+            pos = skipLineBreak(text, end);
+        }
+        return checked == 0 || matching * 2 > checked;
+    }
+
+    private static int countDelimiters(String line, char delimiter) {
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == delimiter && !quoted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int lineEnd(String text, int from) {
+        int pos = from;
+        while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipLineBreak(String text, int pos) {
+        if (pos < text.length() && text.charAt(pos) == '\r') {
+            pos++;
+        }
+        if (pos < text.length() && text.charAt(pos) == '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOf(byte[] bytes, int length, String ascii) {
+        outer:
+        for (int i = 0; i + ascii.length() <= length; i++) {
+            for (int k = 0; k < ascii.length(); k++) {
+                if (bytes[i + k] != ascii.charAt(k)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
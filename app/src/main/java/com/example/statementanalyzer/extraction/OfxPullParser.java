@@ -0,0 +1,228 @@
+package com.example.statementanalyzer.extraction;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull tokenizer for OFX. It covers both the SGML dialect of OFX 1.x, where leaf
+ * elements are never closed, and the XML dialect of 2.x. It only reports tags
+ * and text. Which element a text belongs to is left to the caller; in both
+ * dialects that is simply the start tag right before it.
+ *
+ * Headers, processing instructions, comments and attributes are skipped. Memory
+ * stays the same however large the file is: one read buffer, plus one builder
+ * each for the current tag name and text, both capped.
+ */
+final class OfxPullParser {
+
+    static final int START_TAG = 1;
+    static final int END_TAG = 2;
+    static final int TEXT = 3;
+    static final int END_DOCUMENT = 4;
+
+    // Longer names or values are cut off; real OFX elements are far shorter
+    private static final int MAX_NAME = 64;
+    private static final int MAX_TEXT = 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+
+    OfxPullParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    int next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return END_DOCUMENT;
+            }
+            if (c != '<') {
+                if (readText(c)) {
+                    return TEXT;
+                }
+                continue;
+            }
+
+            c = read();
+            if (c == '?') {
+                // <?xml ...?> and <?OFX ...?>
+                skipPast('?', '>');
+            } else if (c == '!') {
+                skipDeclaration();
+            } else if (c == '/') {
+                readName(read());
+                return END_TAG;
+            } else if (c >= 0) {
+                readName(c);
+                return START_TAG;
+            }
+        }
+    }
+
+    // Tag names are compared case-insensitively; OFX prints them upper case
+    boolean isTag(String tag) {
+        int length = name.length();
+        if (length != tag.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toUpperCase(name.charAt(i)) != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    CharSequence getName() {
+        return name;
+    }
+
+    // Trimmed, with XML entities decoded. Only valid until the next call to next().
+    CharSequence getText() {
+        return text;
+    }
+
+    // Reads the rest of a tag after '<' or '</'; attributes and a trailing '/' are dropped
+    private void readName(int c) throws IOException {
+        name.setLength(0);
+        while (c >= 0 && c != '>' && !Character.isWhitespace(c) && c != '/') {
+            if (name.length() < MAX_NAME) {
+                name.append((char) c);
+            }
+            c = read();
+        }
+        while (c >= 0 && c != '>') {
+            c = read();
+        }
+    }
+
+    // Collects text up to the next '<'; returns false when it was only whitespace
+    private boolean readText(int c) throws IOException {
+        text.setLength(0);
+        boolean entity = false;
+        while (c >= 0 && c != '<') {
+            if (text.length() < MAX_TEXT && (text.length() > 0 || !Character.isWhitespace(c))) {
+                text.append((char) c);
+                entity |= c == '&';
+            }
+            c = read();
+            if (c == '<') {
+                // Leave it for next(); read() just took it from the buffer
+                position--;
+                break;
+            }
+        }
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        text.setLength(end);
+        if (entity) {
+            decodeEntities();
+        }
+        return end > 0;
+    }
+
+    private void decodeEntities() {
+        int out = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int semicolon = c == '&' ? indexOf(';', i + 1, Math.min(length, i + 10)) : -1;
+            char decoded = semicolon > 0 ? entity(i + 1, semicolon) : 0;
+            if (decoded != 0) {
+                text.setCharAt(out++, decoded);
+                i = semicolon;
+            } else {
+                text.setCharAt(out++, c);
+            }
+        }
+        text.setLength(out);
+    }
+
+    // &amp; &lt; &gt; &quot; &apos; &#38; &#x26;, or 0 if unknown
+    private char entity(int start, int end) {
+        String entity = text.substring(start, end);
+        switch (entity) {
+            case "amp":
+                return '&';
+            case "lt":
+                return '<';
+            case "gt":
+                return '>';
+            case "quot":
+                return '"';
+            case "apos":
+                return '\'';
+            default:
+                break;
+        }
+        if (entity.length() > 1 && entity.charAt(0) == '#') {
+            try {
+                int code = entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return code > 0 && code <= Character.MAX_VALUE ? (char) code : 0;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // <!-- comment --> or <!DOCTYPE ...>
+    private void skipDeclaration() throws IOException {
+        int c = read();
+        if (c == '-' && read() == '-') {
+            int dashes = 0;
+            while ((c = read()) >= 0) {
+                if (c == '>' && dashes >= 2) {
+                    return;
+                }
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+            return;
+        }
+        while (c >= 0 && c != '>') {
+            c = read();
+        }
+    }
+
+    private void skipPast(char first, char second) throws IOException {
+        int previous = -1;
+        int c;
+        while ((c = read()) >= 0) {
+            if (previous == first && c == second) {
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams the STMTTRN records of an OFX or QFX download (1.x SGML or 2.x XML)
+ * without building a tree. Each record goes to the listener as soon as its
+ * closing tag is read. Only the fields of the current record are held, so
+ * memory doesn't grow with the file. Bank and credit card statements
+ * (STMTRS / CCSTMTRS) share the same record layout.
+ */
+public class OfxStatementReader {
+
+    public interface Listener {
+        // description is NAME, or MEMO when the bank left NAME empty. Throwing stops the read.
+        void onTransaction(int epochDay, long cents, String description) throws IOException;
+
+        // DTSTART / DTEND of a BANKTRANLIST; called once per list
+        default void onStatementPeriod(int startEpochDay, int endEpochDay) {
+        }
+    }
+
+    private static final int NONE = 0;
+    private static final int DTPOSTED = 1;
+    private static final int TRNAMT = 2;
+    private static final int NAME = 3;
+    private static final int MEMO = 4;
+    private static final int DTSTART = 5;
+    private static final int DTEND = 6;
+
+    private final StringBuilder posted = new StringBuilder();
+    private final StringBuilder amount = new StringBuilder();
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder memo = new StringBuilder();
+
+    private int periodStart = StatementDateParser.INVALID;
+    private int periodEnd = StatementDateParser.INVALID;
+
+    // Reads the whole document and returns how many transactions were delivered
+    public int read(Reader reader, Listener listener) throws IOException {
+        OfxPullParser parser = new OfxPullParser(reader);
+        boolean inTransaction = false;
+        int field = NONE;
+        int count = 0;
+
+        int event;
+        while ((event = parser.next()) != OfxPullParser.END_DOCUMENT) {
+            if (event == OfxPullParser.START_TAG) {
+                if (parser.isTag("STMTTRN")) {
+                    inTransaction = true;
+                    clearFields();
+                    field = NONE;
+                } else if (parser.isTag("BANKTRANLIST")) {
+                    periodStart = StatementDateParser.INVALID;
+                    periodEnd = StatementDateParser.INVALID;
+                    field = NONE;
+                } else {
+                    field = fieldOf(parser, inTransaction);
+                }
+            } else if (event == OfxPullParser.TEXT) {
+                // SGML leaves leaf elements open, so text belongs to the last start tag
+                store(field, parser.getText());
+                field = NONE;
+            } else {
+                if (parser.isTag("STMTTRN") && inTransaction) {
+                    inTransaction = false;
+                    if (emit(listener)) {
+                        count++;
+                    }
+                } else if (parser.isTag("BANKTRANLIST")
+                        && periodStart != StatementDateParser.INVALID && periodEnd != StatementDateParser.INVALID) {
+                    listener.onStatementPeriod(periodStart, periodEnd);
+                }
+                field = NONE;
+            }
+        }
+        return count;
+    }
+
+    private static int fieldOf(OfxPullParser parser, boolean inTransaction) {
+        if (inTransaction) {
+            if (parser.isTag("DTPOSTED")) return DTPOSTED;
+            if (parser.isTag("TRNAMT")) return TRNAMT;
+            if (parser.isTag("NAME")) return NAME;
+            if (parser.isTag("MEMO")) return MEMO;
+        } else {
+            if (parser.isTag("DTSTART")) return DTSTART;
+            if (parser.isTag("DTEND")) return DTEND;
+        }
+        return NONE;
+    }
+
+    private void store(int field, CharSequence text) {
+        switch (field) {
+            case DTPOSTED:
+                posted.setLength(0);
+                posted.append(text);
+                break;
+            case TRNAMT:
+                amount.setLength(0);
+                amount.append(text);
+                break;
+            case NAME:
+                name.setLength(0);
+                name.append(text);
+                break;
+            case MEMO:
+                memo.setLength(0);
+                memo.append(text);
+                break;
+            case DTSTART:
+                periodStart = parseDate(text);
+                break;
+            case DTEND:
+                periodEnd = parseDate(text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Records without a usable date or amount are dropped, like unreadable CSV rows
+    private boolean emit(Listener listener) throws IOException {
+        int epochDay = parseDate(posted);
+        if (epochDay == StatementDateParser.INVALID) {
+            return false;
+        }
+        long cents = CurrencyUtils.parseCents(amount, 0, amount.length());
+        if (cents == CurrencyUtils.INVALID) {
+            return false;
+        }
+        String description = (name.length() > 0 ? name : memo).toString();
+        listener.onTransaction(epochDay, cents, description);
+        return true;
+    }
+
+    private void clearFields() {
+        posted.setLength(0);
+        amount.setLength(0);
+        name.setLength(0);
+        memo.setLength(0);
+    }
+
+    // OFX dates are YYYYMMDD, optionally followed by HHMMSS[.XXX][gmt offset:tz];
+    // only the calendar date is kept
+    static int parseDate(CharSequence text) {
+        if (text.length() < 8) {
+            return StatementDateParser.INVALID;
+        }
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return StatementDateParser.INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (text.length() > 8 && (text.charAt(8) < '0' || text.charAt(8) > '9') && text.charAt(8) != '[') {
+            return StatementDateParser.INVALID;
+        }
+        int year = value / 10_000;
+        int month = value / 100 % 100;
+        int day = value % 100;
+        if (month < 1 || month > 12 || day < 1 || day > DateUtils.lengthOfMonth(year, month)) {
+            return StatementDateParser.INVALID;
+        }
+        return DateUtils.toEpochDay(year, month, day);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.model.Transaction;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits the page range of a PDF across a bounded fork-join pool. PDFBox objects
+ * are not thread-safe, so every leaf task opens its own PDDocument and
+ * PDFTextStripper on the same file. Per-page results are merged back in page order.
+ */
+public class ParallelPdfExtractor {
+
+    public interface PageHandler {
+        // Must be safe to call from several worker threads at once. An IOException fails
+        // extract(); workers on other ranges only stop early if their pages throw too,
+        // as they do once a CancellationToken is cancelled.
+        void onPage(int pageNumber, int pageCount, String pageText, TransactionSink sink) throws IOException;
+    }
+
+    // Each leaf re-loads the document, so tiny ranges cost more than they save
+    private static final int MIN_PAGES_PER_TASK = 8;
+
+    private final int parallelism;
+
+    public ParallelPdfExtractor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelPdfExtractor(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public List<Transaction> extract(File pdfFile, PageHandler handler) throws IOException {
+        return extract(pdfFile, MemoryUsageSetting.setupMainMemoryOnly(), handler);
+    }
+
+    // Loads the document once to count its pages; callers that already have it open
+    // should pass the count instead
+    public List<Transaction> extract(File pdfFile, MemoryUsageSetting memoryUsageSetting,
+                                     PageHandler handler) throws IOException {
+        int pageCount;
+        try (PDDocument document = PDDocument.load(pdfFile, memoryUsageSetting)) {
+            pageCount = document.getNumberOfPages();
+        }
+        return extract(pdfFile, memoryUsageSetting, pageCount, handler);
+    }
+
+    // The memory setting is applied to every worker's PDDocument individually
+    public List<Transaction> extract(File pdfFile, MemoryUsageSetting memoryUsageSetting, int pageCount,
+                                     PageHandler handler) throws IOException {
+        if (pageCount == 0) {
+            return new ArrayList<>();
+        }
+
+        int pagesPerTask = Math.max(MIN_PAGES_PER_TASK, (pageCount + parallelism - 1) / parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            List<List<Transaction>> pages = pool.invoke(
+                    new PageRangeTask(pdfFile, memoryUsageSetting, handler, 1, pageCount, pageCount, pagesPerTask));
+
+            List<Transaction> transactions = new ArrayList<>();
+            for (List<Transaction> pageTransactions : pages) {
+                transactions.addAll(pageTransactions);
+            }
+            return transactions;
+
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class PageRangeTask extends RecursiveTask<List<List<Transaction>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File pdfFile;
+        private final MemoryUsageSetting memoryUsageSetting;
+        private final PageHandler handler;
+        private final int firstPage;
+        private final int lastPage;
+        private final int pageCount;
+        private final int pagesPerTask;
+
+        PageRangeTask(File pdfFile, MemoryUsageSetting memoryUsageSetting, PageHandler handler,
+                      int firstPage, int lastPage, int pageCount, int pagesPerTask) {
+            this.pdfFile = pdfFile;
+            this.memoryUsageSetting = memoryUsageSetting;
+            this.handler = handler;
+            this.firstPage = firstPage;
+            this.lastPage = lastPage;
+            this.pageCount = pageCount;
+            this.pagesPerTask = pagesPerTask;
+        }
+
+        @Override
+        protected List<List<Transaction>> compute() {
+            if (lastPage - firstPage + 1 <= pagesPerTask) {
+                return extractRange();
+            }
+
+            int middle = (firstPage + lastPage) >>> 1;
+            PageRangeTask left = new PageRangeTask(pdfFile, memoryUsageSetting, handler, firstPage, middle, pageCount, pagesPerTask);
+            PageRangeTask right = new PageRangeTask(pdfFile, memoryUsageSetting, handler, middle + 1, lastPage, pageCount, pagesPerTask);
+
+            left.fork();
+            List<List<Transaction>> rightPages = right.compute();
+            List<List<Transaction>> pages = left.join();
+
+            // Left half first keeps the merged list in page order
+            pages.addAll(rightPages);
+            return pages;
+        }
+
+        private List<List<Transaction>> extractRange() {
+            List<List<Transaction>> pages = new ArrayList<>(lastPage - firstPage + 1);
+
+            try (PDDocument document = PDDocument.load(pdfFile, memoryUsageSetting)) {
+                PDFTextStripper stripper = new PDFTextStripper();
+
+                for (int page = firstPage; page <= lastPage; page++) {
+                    stripper.setStartPage(page);
+                    stripper.setEndPage(page);
+                    String pageText = stripper.getText(document);
+
+                    List<Transaction> pageTransactions = new ArrayList<>();
+                    handler.onPage(page, pageCount, pageText, pageTransactions::add);
+                    pages.add(pageTransactions);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return pages;
+        }
+    }
+}
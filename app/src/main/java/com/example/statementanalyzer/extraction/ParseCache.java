@@ -0,0 +1,391 @@
+package com.example.statementanalyzer.extraction;
+
+import android.util.Log;
+
+import com.example.statementanalyzer.model.CategoryRegistry;
+import com.example.statementanalyzer.model.CategoryTotals;
+import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.StatementSummary;
+import com.example.statementanalyzer.model.StringDictionary;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of parse results. The key is a SHA-256 over a parser
+ * namespace (version plus categorization rules) followed by the document bytes,
+ * so a re-upload of the same statement returns without PDFBox or the line scan,
+ * and any change to the parser silently invalidates old entries.
+ *
+ * Entries are written in a compact binary form: per statement a description and
+ * category dictionary followed by varint-encoded rows with delta-coded dates.
+ * The directory is trimmed least-recently-used first once it exceeds maxBytes.
+ */
+public class ParseCache {
+
+    private static final String TAG = "ParseCache";
+
+    // Bump whenever extraction or categorization changes the output for the same bytes
+    public static final int PARSER_VERSION = 3;
+
+    private static final int MAGIC = 0x53414331; // "SAC1"
+    private static final int FORMAT_VERSION = 1;
+    private static final long NO_DATE_MILLIS = Long.MIN_VALUE;
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+    private final long maxBytes;
+
+    // Access-ordered index of key -> entry size; the head is the eviction candidate
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean indexLoaded;
+
+    public ParseCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public static String computeKey(InputStream inputStream, String namespace) throws IOException {
+        return computeKey(inputStream, namespace, new CancellationToken());
+    }
+
+    // Streams the document through SHA-256 without holding it in memory; closes the stream.
+    // The token is checked between buffers, so a large file can be cancelled mid-hash.
+    public static String computeKey(InputStream inputStream, String namespace,
+                                    CancellationToken cancellation) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+        digest.update(namespace.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                cancellation.throwIfCancelled();
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(hash[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    // Fresh objects on every hit, so callers may modify what they get back
+    public synchronized List<FinancialData> get(String key) {
+        loadIndex();
+        if (!entries.containsKey(key)) {
+            return null;
+        }
+
+        File file = fileFor(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            List<FinancialData> result = read(in, file.length());
+            // Touch the entry so it moves to the most-recently-used end
+            entries.get(key);
+            // Persist recency for the next process; the in-memory index is authoritative until then
+            file.setLastModified(System.currentTimeMillis());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            // A damaged entry costs one re-parse; it must never fail the import
+            Log.w(TAG, "Dropping unreadable cache entry " + key, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, List<FinancialData> financialDataList) {
+        loadIndex();
+        File file = fileFor(key);
+        File temp = new File(directory, key + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                write(out, financialDataList);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache " + key, e);
+            temp.delete();
+            return;
+        }
+
+        Long previous = entries.put(key, file.length());
+        totalBytes += file.length() - (previous == null ? 0 : previous);
+        evict();
+    }
+
+    public synchronized void clear() {
+        loadIndex();
+        for (String key : new ArrayList<>(entries.keySet())) {
+            remove(key);
+        }
+    }
+
+    public synchronized long sizeInBytes() {
+        loadIndex();
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            fileFor(eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        fileFor(key).delete();
+    }
+
+    // Rebuilds the LRU order from file timestamps the first time the cache is touched
+    private void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        indexLoaded = true;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                totalBytes += file.length();
+            } else {
+                // Leftover from an interrupted write
+                file.delete();
+            }
+        }
+        evict();
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    static void write(DataOutputStream out, List<FinancialData> financialDataList) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeVarInt(out, financialDataList.size());
+
+        CategoryRegistry registry = CategoryRegistry.getInstance();
+        for (FinancialData data : financialDataList) {
+            out.writeLong(data.getStartDate() == null ? NO_DATE_MILLIS : data.getStartDate().getTime());
+            out.writeLong(data.getEndDate() == null ? NO_DATE_MILLIS : data.getEndDate().getTime());
+
+            StatementSummary summary = data.getSummary();
+            writeVarLong(out, summary.getIncomeCents());
+            writeVarLong(out, summary.getExpenseCents());
+
+            CategoryTotals categoryTotals = data.getCategoryCents();
+            writeVarInt(out, categoryTotals.size());
+            for (int id = categoryTotals.first(); id >= 0; id = categoryTotals.next(id)) {
+                out.writeUTF(registry.getName(id));
+                writeVarLong(out, categoryTotals.getCents(id));
+            }
+
+            // Must not swap the caller's transaction list for a view over a new table
+            TransactionTable table = data.toTransactionTable();
+            if (table == null) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+
+            // Descriptions: the table's own dense dictionary, written in id order
+            StringDictionary descriptions = table.getDescriptionDictionary();
+            writeVarInt(out, descriptions.size());
+            for (int id = 0; id < descriptions.size(); id++) {
+                out.writeUTF(descriptions.get(id));
+            }
+
+            // Categories: registry ids are process-local, so remap to a per-statement list
+            Map<Integer, Integer> localCategoryIds = new HashMap<>();
+            List<String> categoryNames = new ArrayList<>();
+            for (int row = 0; row < table.size(); row++) {
+                int categoryId = table.getCategoryId(row);
+                if (categoryId != CategoryRegistry.NULL_ID && !localCategoryIds.containsKey(categoryId)) {
+                    localCategoryIds.put(categoryId, categoryNames.size());
+                    categoryNames.add(registry.getName(categoryId));
+                }
+            }
+            writeVarInt(out, categoryNames.size());
+            for (String name : categoryNames) {
+                out.writeUTF(name);
+            }
+
+            // Rows: dates are delta-coded against the previous row, ids shifted so NULL_ID is 0
+            writeVarInt(out, table.size());
+            int previousDay = 0;
+            for (int row = 0; row < table.size(); row++) {
+                int epochDay = table.getEpochDay(row);
+                if (epochDay == TransactionTable.NO_DATE) {
+                    out.writeBoolean(false);
+                } else {
+                    out.writeBoolean(true);
+                    writeVarLong(out, (long) epochDay - previousDay);
+                    previousDay = epochDay;
+                }
+                writeVarLong(out, table.getCents(row));
+                writeVarInt(out, table.getDescriptionId(row) + 1);
+                int categoryId = table.getCategoryId(row);
+                writeVarInt(out, categoryId == CategoryRegistry.NULL_ID ? 0 : localCategoryIds.get(categoryId) + 1);
+            }
+        }
+    }
+
+    // Every counted item takes at least a byte, so no count can exceed maxCount, the entry's size
+    static List<FinancialData> read(DataInputStream in, long maxCount) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown cache format");
+        }
+
+        CategoryRegistry registry = CategoryRegistry.getInstance();
+        int statementCount = readCount(in, maxCount);
+        List<FinancialData> result = new ArrayList<>(statementCount);
+        for (int s = 0; s < statementCount; s++) {
+            FinancialData data = new FinancialData();
+            long startMillis = in.readLong();
+            long endMillis = in.readLong();
+            data.setStartDate(startMillis == NO_DATE_MILLIS ? null : new Date(startMillis));
+            data.setEndDate(endMillis == NO_DATE_MILLIS ? null : new Date(endMillis));
+            data.setTotalIncome(CurrencyUtils.toAmount(readVarLong(in)));
+            data.setTotalExpenses(CurrencyUtils.toAmount(readVarLong(in)));
+
+            CategoryTotals categoryTotals = new CategoryTotals();
+            int categoryCount = readCount(in, maxCount);
+            for (int i = 0; i < categoryCount; i++) {
+                categoryTotals.setCents(registry.intern(in.readUTF()), readVarLong(in));
+            }
+
+            if (in.readBoolean()) {
+                String[] descriptions = new String[readCount(in, maxCount)];
+                for (int i = 0; i < descriptions.length; i++) {
+                    descriptions[i] = in.readUTF();
+                }
+                String[] categories = new String[readCount(in, maxCount)];
+                for (int i = 0; i < categories.length; i++) {
+                    categories[i] = in.readUTF();
+                }
+
+                int rows = readCount(in, maxCount);
+                TransactionTable table = new TransactionTable(rows);
+                int previousDay = 0;
+                for (int row = 0; row < rows; row++) {
+                    int epochDay = TransactionTable.NO_DATE;
+                    if (in.readBoolean()) {
+                        epochDay = (int) (previousDay + readVarLong(in));
+                        previousDay = epochDay;
+                    }
+                    long cents = readVarLong(in);
+                    table.add(epochDay, cents, lookup(descriptions, readVarInt(in) - 1),
+                            lookup(categories, readVarInt(in) - 1));
+                }
+                data.setTransactionTable(table);
+            }
+            data.setCategoryCents(categoryTotals);
+            result.add(data);
+        }
+        return result;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    // ZigZag + base-128 varint: small magnitudes of either sign take one or two bytes
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    private static int readCount(DataInputStream in, long maxCount) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Corrupt cache entry");
+        }
+        return count;
+    }
+
+    // -1 is a null string; anything else must point into the entry's own dictionary
+    private static String lookup(String[] values, int id) throws IOException {
+        if (id == -1) {
+            return null;
+        }
+        if (id < 0 || id >= values.length) {
+            throw new IOException("Corrupt cache entry");
+        }
+        return values[id];
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt cache entry");
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Corrupt cache entry");
+    }
+}
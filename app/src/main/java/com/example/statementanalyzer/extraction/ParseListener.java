@@ -0,0 +1,20 @@
+package com.example.statementanalyzer.extraction;
+
+/**
+ * Progress callbacks from DocumentParser. They run on the parsing thread, or on
+ * PDF page workers when a document is split across cores, so implementations
+ * should only hand the numbers off (e.g. post to the UI thread).
+ */
+public interface ParseListener {
+
+    ParseListener NONE = new ParseListener() {
+    };
+
+    // PDFs know their page count up front; pages may finish out of order when parsed in parallel
+    default void onPagesParsed(int pagesParsed, int pageCount, double pagesPerSecond) {
+    }
+
+    // CSV and OFX files are streamed, so there is no total until the end
+    default void onRowsParsed(int rowsParsed, double rowsPerSecond) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.statementanalyzer.extraction;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the work of one parse, reports it to the ParseListener and checks the
+ * CancellationToken between units of work. One instance per parseDocument call.
+ */
+final class ParseProgress {
+
+    // Rows between reports and cancellation checks; one row costs microseconds
+    static final int ROW_INTERVAL = 2048;
+
+    private final ParseListener listener;
+    private final CancellationToken cancellation;
+    private final long startNanos = System.nanoTime();
+
+    // Page workers finish pages concurrently
+    private final AtomicInteger pages = new AtomicInteger();
+    private int rows;
+
+    ParseProgress(ParseListener listener, CancellationToken cancellation) {
+        this.listener = listener != null ? listener : ParseListener.NONE;
+        this.cancellation = cancellation != null ? cancellation : new CancellationToken();
+    }
+
+    void throwIfCancelled() throws InterruptedIOException {
+        cancellation.throwIfCancelled();
+    }
+
+    void pageParsed(int pageCount) {
+        int parsed = pages.incrementAndGet();
+        listener.onPagesParsed(parsed, pageCount, perSecond(parsed));
+    }
+
+    // Called by a single thread for every streamed row
+    void rowParsed() throws InterruptedIOException {
+        if (++rows % ROW_INTERVAL == 0) {
+            cancellation.throwIfCancelled();
+            listener.onRowsParsed(rows, perSecond(rows));
+        }
+    }
+
+    void rowsFinished() {
+        listener.onRowsParsed(rows, perSecond(rows));
+    }
+
+    private double perSecond(int count) {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        return count * 1_000_000_000.0 / elapsed;
+    }
+}
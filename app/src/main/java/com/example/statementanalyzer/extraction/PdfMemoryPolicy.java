@@ -0,0 +1,96 @@
+package com.example.statementanalyzer.extraction;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+import java.io.File;
+
+/**
+ * Controls how much of a loaded PDF (raw streams and the parsed object graph)
+ * PDFBox may keep on the Java heap before spilling to scratch files on disk.
+ */
+public final class PdfMemoryPolicy {
+
+    public enum Mode {
+        MAIN_MEMORY,
+        MIXED,
+        TEMP_FILE_ONLY
+    }
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    // Below this a document spills its page tree and fonts too, and every page turns into disk reads
+    private static final long MIN_BYTES_PER_DOCUMENT = MEGABYTE;
+
+    private final Mode mode;
+    private final long maxMainMemoryBytes;
+
+    private PdfMemoryPolicy(Mode mode, long maxMainMemoryBytes) {
+        this.mode = mode;
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+    }
+
+    public static PdfMemoryPolicy mainMemoryOnly() {
+        return new PdfMemoryPolicy(Mode.MAIN_MEMORY, -1);
+    }
+
+    // Keeps up to maxMainMemoryBytes in the heap and spills the rest to disk
+    public static PdfMemoryPolicy mixed(long maxMainMemoryBytes) {
+        if (maxMainMemoryBytes <= 0) {
+            throw new IllegalArgumentException("maxMainMemoryBytes must be positive");
+        }
+        return new PdfMemoryPolicy(Mode.MIXED, maxMainMemoryBytes);
+    }
+
+    public static PdfMemoryPolicy tempFileOnly() {
+        return new PdfMemoryPolicy(Mode.TEMP_FILE_ONLY, 0);
+    }
+
+    // Splits totalBytes evenly between documents loaded at the same time, so the
+    // cap holds for all of them together rather than for each one
+    public static PdfMemoryPolicy mixedShared(long totalBytes, int openDocuments) {
+        return mixed(Math.max(MIN_BYTES_PER_DOCUMENT, totalBytes / Math.max(1, openDocuments)));
+    }
+
+    // Low-RAM phones go straight to disk; everyone else gets an eighth of the app's
+    // heap class, shared by up to openDocuments PDDocuments loaded at once
+    public static PdfMemoryPolicy forDevice(Context context, int openDocuments) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null) {
+            return mixedShared(16 * MEGABYTE, openDocuments);
+        }
+        if (activityManager.isLowRamDevice()) {
+            return tempFileOnly();
+        }
+        return mixedShared(Math.max(4 * MEGABYTE, activityManager.getMemoryClass() * MEGABYTE / 8), openDocuments);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+    public MemoryUsageSetting toMemoryUsageSetting(File tempDir) {
+        MemoryUsageSetting setting;
+        switch (mode) {
+            case MIXED:
+                setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+                break;
+            case TEMP_FILE_ONLY:
+                setting = MemoryUsageSetting.setupTempFileOnly();
+                break;
+            default:
+                setting = MemoryUsageSetting.setupMainMemoryOnly();
+                break;
+        }
+        if (tempDir != null) {
+            setting.setTempDir(tempDir);
+        }
+        return setting;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Hand-rolled date tokenizer for statement dates. Nothing is thrown on a
+ * mismatch and no formatter objects are involved, so the parse itself does not
+ * allocate.
+ *
+ * One instance is meant to live for one document. The first few dates decide
+ * which layout the document uses; after that the layout is locked in and tried
+ * first, and the other layouts are only consulted for rows that don't fit. All
+ * state is atomic, so page workers can share an instance.
+ */
+public class StatementDateParser {
+
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    public enum Layout {
+        MONTH_DAY_YEAR_SLASH,  // 01/15/2024
+        MONTH_DAY_YEAR_DASH,   // 01-15-2024
+        YEAR_MONTH_DAY_DASH,   // 2024-01-15
+        MONTH_NAME_DAY_YEAR,   // Jan 15, 2024
+        DAY_MONTH_YEAR_DOT,    // 15.01.2024
+        DAY_MONTH_YEAR_SLASH   // 15/01/2024
+    }
+
+    // Layouts tried when nothing is known about the document. Day-first with slashes
+    // reads US dates wrongly, so it is only used when a caller picks it explicitly.
+    private static final Layout[] LAYOUTS = {
+            Layout.MONTH_DAY_YEAR_SLASH,
+            Layout.MONTH_DAY_YEAR_DASH,
+            Layout.YEAR_MONTH_DAY_DASH,
+            Layout.MONTH_NAME_DAY_YEAR,
+            Layout.DAY_MONTH_YEAR_DOT
+    };
+
+    private static final int MONTH_FIRST = 0;
+    private static final int YEAR_FIRST = 1;
+    private static final int DAY_FIRST = 2;
+
+    // Dates parsed before the most frequent layout is locked in
+    private static final int SAMPLE_SIZE = 5;
+
+    private static final String[] MONTH_PREFIXES = {
+            "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+
+    // Two-digit years land in the 100-year window ending 20 years from now
+    private static final int TWO_DIGIT_YEAR_PIVOT = Calendar.getInstance().get(Calendar.YEAR) + 20;
+
+    private final AtomicIntegerArray layoutHits = new AtomicIntegerArray(Layout.values().length);
+    private volatile Layout lockedLayout;
+
+    public StatementDateParser() {
+    }
+
+    // Starts locked to a layout that is already known, e.g. from a saved CSV schema
+    public StatementDateParser(Layout layout) {
+        this.lockedLayout = layout;
+    }
+
+    public Layout getLockedLayout() {
+        return lockedLayout;
+    }
+
+    public Date parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        int epochDay = parseEpochDay(text, 0, text.length());
+        return epochDay == INVALID ? null : DateUtils.toDate(epochDay);
+    }
+
+    // Returns days since 1970-01-01, or INVALID when no layout fits text[start, end)
+    public int parseEpochDay(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+
+        Layout locked = lockedLayout;
+        if (locked != null) {
+            int epochDay = parse(locked, text, start, end);
+            if (epochDay != INVALID) {
+                return epochDay;
+            }
+        }
+
+        for (Layout layout : LAYOUTS) {
+            if (layout == locked) {
+                continue;
+            }
+            int epochDay = parse(layout, text, start, end);
+            if (epochDay != INVALID) {
+                if (locked == null) {
+                    learn(layout);
+                }
+                return epochDay;
+            }
+        }
+        return INVALID;
+    }
+
+    private void learn(Layout layout) {
+        layoutHits.incrementAndGet(layout.ordinal());
+
+        int total = 0;
+        Layout best = LAYOUTS[0];
+        for (Layout candidate : LAYOUTS) {
+            int hits = layoutHits.get(candidate.ordinal());
+            total += hits;
+            if (hits > layoutHits.get(best.ordinal())) {
+                best = candidate;
+            }
+        }
+        if (total >= SAMPLE_SIZE) {
+            lockedLayout = best;
+        }
+    }
+
+    public static int parse(Layout layout, CharSequence text, int start, int end) {
+        switch (layout) {
+            case MONTH_DAY_YEAR_SLASH:
+                return parseNumeric(text, start, end, '/', MONTH_FIRST);
+            case MONTH_DAY_YEAR_DASH:
+                return parseNumeric(text, start, end, '-', MONTH_FIRST);
+            case YEAR_MONTH_DAY_DASH:
+                return parseNumeric(text, start, end, '-', YEAR_FIRST);
+            case DAY_MONTH_YEAR_DOT:
+                return parseNumeric(text, start, end, '.', DAY_FIRST);
+            case DAY_MONTH_YEAR_SLASH:
+                return parseNumeric(text, start, end, '/', DAY_FIRST);
+            default:
+                return parseMonthName(text, start, end);
+        }
+    }
+
+    // M/d/y, y-M-d or d.M.y with 1-2 digit month and day and a 2 or 4 digit year
+    private static int parseNumeric(CharSequence text, int start, int end, char separator, int order) {
+        int pos = start;
+        int first = 0;
+        int firstDigits = 0;
+        while (pos < end && firstDigits < 4 && isDigit(text.charAt(pos))) {
+            first = first * 10 + (text.charAt(pos++) - '0');
+            firstDigits++;
+        }
+        if (firstDigits == 0 || pos >= end || text.charAt(pos) != separator) {
+            return INVALID;
+        }
+        pos++;
+
+        int second = 0;
+        int secondDigits = 0;
+        while (pos < end && secondDigits < 2 && isDigit(text.charAt(pos))) {
+            second = second * 10 + (text.charAt(pos++) - '0');
+            secondDigits++;
+        }
+        if (secondDigits == 0 || pos >= end || text.charAt(pos) != separator) {
+            return INVALID;
+        }
+        pos++;
+
+        int third = 0;
+        int thirdDigits = 0;
+        while (pos < end && thirdDigits < 4 && isDigit(text.charAt(pos))) {
+            third = third * 10 + (text.charAt(pos++) - '0');
+            thirdDigits++;
+        }
+        // Anything may follow the date (a time, a column), except more digits
+        if (pos < end && isDigit(text.charAt(pos))) {
+            return INVALID;
+        }
+
+        if (order == YEAR_FIRST) {
+            if (firstDigits != 4 || thirdDigits == 0 || thirdDigits > 2) {
+                return INVALID;
+            }
+            return toEpochDay(first, second, third);
+        }
+        if (firstDigits > 2 || (thirdDigits != 2 && thirdDigits != 4)) {
+            return INVALID;
+        }
+        int year = thirdDigits == 2 ? expandYear(third) : third;
+        return order == DAY_FIRST ? toEpochDay(year, second, first) : toEpochDay(year, first, second);
+    }
+
+    // "Jan 15, 2024", "January 15 2024"
+    private static int parseMonthName(CharSequence text, int start, int end) {
+        int pos = start;
+        while (pos < end && Character.isLetter(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos - start < 3) {
+            return INVALID;
+        }
+
+        int month = 0;
+        for (int i = 0; i < MONTH_PREFIXES.length && month == 0; i++) {
+            String prefix = MONTH_PREFIXES[i];
+            if (Character.toLowerCase(text.charAt(start)) == prefix.charAt(0)
+                    && Character.toLowerCase(text.charAt(start + 1)) == prefix.charAt(1)
+                    && Character.toLowerCase(text.charAt(start + 2)) == prefix.charAt(2)) {
+                month = i + 1;
+            }
+        }
+        if (month == 0) {
+            return INVALID;
+        }
+        if (pos < end && text.charAt(pos) == '.') {
+            pos++;
+        }
+        pos = skipSpaces(text, pos, end);
+
+        int day = 0;
+        int dayDigits = 0;
+        while (pos < end && dayDigits < 2 && isDigit(text.charAt(pos))) {
+            day = day * 10 + (text.charAt(pos++) - '0');
+            dayDigits++;
+        }
+        if (dayDigits == 0) {
+            return INVALID;
+        }
+        boolean comma = pos < end && text.charAt(pos) == ',';
+        if (comma) {
+            pos++;
+        }
+        int yearStart = skipSpaces(text, pos, end);
+        if (yearStart == pos && !comma) {
+            // Day and year must be separated, otherwise "Jan 152024" would parse
+            return INVALID;
+        }
+        pos = yearStart;
+
+        int year = 0;
+        int yearDigits = 0;
+        while (pos < end && yearDigits < 4 && isDigit(text.charAt(pos))) {
+            year = year * 10 + (text.charAt(pos++) - '0');
+            yearDigits++;
+        }
+        if ((yearDigits != 2 && yearDigits != 4) || (pos < end && isDigit(text.charAt(pos)))) {
+            return INVALID;
+        }
+        return toEpochDay(yearDigits == 2 ? expandYear(year) : year, month, day);
+    }
+
+    private static int toEpochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > DateUtils.lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return DateUtils.toEpochDay(year, month, day);
+    }
+
+    private static int expandYear(int twoDigitYear) {
+        int year = (TWO_DIGIT_YEAR_PIVOT / 100) * 100 + twoDigitYear;
+        return year > TWO_DIGIT_YEAR_PIVOT ? year - 100 : year;
+    }
+
+    private static int skipSpaces(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
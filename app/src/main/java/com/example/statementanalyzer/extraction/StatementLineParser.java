@@ -0,0 +1,15 @@
+package com.example.statementanalyzer.extraction;
+
+/**
+ * Turns the text of one statement page into transactions. A parser instance
+ * belongs to one document and sees its pages in order, so it may carry state
+ * from page to page, such as a running balance.
+ */
+public interface StatementLineParser {
+
+    void parsePage(CharSequence pageText, TransactionSink sink);
+
+    interface Categorizer {
+        String categorize(String description, double amount);
+    }
+}
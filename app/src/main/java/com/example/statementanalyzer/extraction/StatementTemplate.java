@@ -0,0 +1,152 @@
+package com.example.statementanalyzer.extraction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Describes one bank's statement layout: the strings that identify the issuer on
+ * the first page, the column headers its transaction table uses, and how dates
+ * and amounts are printed on a transaction line. TemplateRegistry picks the
+ * best-matching template and asks it for a line parser.
+ */
+public final class StatementTemplate {
+
+    public enum AmountLayout {
+        // One signed amount per line, optionally followed by a running balance
+        SIGNED,
+        // Unsigned amount followed by a running balance; the sign comes from how the balance moved
+        BALANCE_DELTA
+    }
+
+    private final String name;
+    private final String[] issuerMarkers;
+    private final String[] headerTokens;
+    private final int minHeaderTokens;
+    private final boolean yearInDate;
+    private final AmountLayout amountLayout;
+    private final Pattern periodPattern;
+
+    private StatementTemplate(Builder builder) {
+        this.name = builder.name;
+        this.issuerMarkers = builder.issuerMarkers.toArray(new String[0]);
+        this.headerTokens = builder.headerTokens.toArray(new String[0]);
+        this.minHeaderTokens = Math.min(builder.minHeaderTokens, headerTokens.length);
+        this.yearInDate = builder.yearInDate;
+        this.amountLayout = builder.amountLayout;
+        this.periodPattern = builder.periodPattern;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isYearInDate() {
+        return yearInDate;
+    }
+
+    public AmountLayout getAmountLayout() {
+        return amountLayout;
+    }
+
+    // 0 when the head of the first page doesn't look like this bank, otherwise
+    // higher for more matching header tokens. The head must already be lower case.
+    int score(String lowerCaseHead) {
+        boolean issuer = false;
+        for (String marker : issuerMarkers) {
+            if (lowerCaseHead.contains(marker)) {
+                issuer = true;
+                break;
+            }
+        }
+        if (!issuer) {
+            return 0;
+        }
+
+        int headers = 0;
+        for (String token : headerTokens) {
+            if (lowerCaseHead.contains(token)) {
+                headers++;
+            }
+        }
+        return headers < minHeaderTokens ? 0 : 1 + headers;
+    }
+
+    // The statement period as this bank prints it: {first day, last day}, with the
+    // first day null when only the closing date is printed. Null if text lacks it.
+    String[] findPeriod(CharSequence text) {
+        if (periodPattern == null) {
+            return null;
+        }
+        Matcher matcher = periodPattern.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.groupCount() >= 2
+                ? new String[]{matcher.group(1), matcher.group(2)}
+                : new String[]{null, matcher.group(1)};
+    }
+
+    // periodEndEpochDay supplies the year for layouts that print only month and day
+    public StatementLineParser newLineParser(int periodEndEpochDay, StatementLineParser.Categorizer categorizer) {
+        return new TemplateLineParser(this, periodEndEpochDay, categorizer);
+    }
+
+    public static class Builder {
+        private final String name;
+        private final List<String> issuerMarkers = new ArrayList<>();
+        private final List<String> headerTokens = new ArrayList<>();
+        private int minHeaderTokens = 1;
+        private boolean yearInDate = true;
+        private AmountLayout amountLayout = AmountLayout.SIGNED;
+        private Pattern periodPattern;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder issuer(String... markers) {
+            for (String marker : markers) {
+                issuerMarkers.add(marker.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public Builder headers(String... tokens) {
+            for (String token : tokens) {
+                headerTokens.add(token.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public Builder minHeaderTokens(int minHeaderTokens) {
+            this.minHeaderTokens = minHeaderTokens;
+            return this;
+        }
+
+        public Builder yearInDate(boolean yearInDate) {
+            this.yearInDate = yearInDate;
+            return this;
+        }
+
+        public Builder amountLayout(AmountLayout amountLayout) {
+            this.amountLayout = amountLayout;
+            return this;
+        }
+
+        // Case-insensitive; groups are the first and last day, or just the closing date
+        public Builder period(String regex) {
+            this.periodPattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            return this;
+        }
+
+        public StatementTemplate build() {
+            if (issuerMarkers.isEmpty()) {
+                throw new IllegalArgumentException("template " + name + " needs an issuer marker");
+            }
+            return new StatementTemplate(this);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Line parser driven by a StatementTemplate. Each line is read once: a date at
+ * the start, up to two money columns at the end, and the description between
+ * them. Lines that don't have that shape (headers, footers, page numbers) are
+ * skipped. No regex is involved.
+ */
+class TemplateLineParser implements StatementLineParser {
+
+    private static final String[] BALANCE_SEED_MARKERS = {
+            "beginning balance", "opening balance", "previous balance", "balance forward"
+    };
+
+    // Used to sign a BALANCE_DELTA row when the running balance can't tell
+    private static final String[] CREDIT_MARKERS = {
+            "deposit", "credit", "refund", "payroll", "interest paid", "transfer from", "zelle from"
+    };
+
+    private final StatementTemplate template;
+    private final Categorizer categorizer;
+    private final int periodEndYear;
+    private final int periodEndMonth;
+
+    private long balance;
+    private boolean balanceKnown;
+
+    // Epoch day of the date that scanDate last accepted
+    private int lastEpochDay;
+
+    // Reused for the (start, end) of the trailing money columns of the current line
+    private final int[] moneyStart = new int[2];
+    private final int[] moneyEnd = new int[2];
+
+    TemplateLineParser(StatementTemplate template, int periodEndEpochDay, Categorizer categorizer) {
+        this.template = template;
+        this.categorizer = categorizer;
+
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(periodEndEpochDay * DateUtils.MILLIS_PER_DAY);
+        this.periodEndYear = calendar.get(Calendar.YEAR);
+        this.periodEndMonth = calendar.get(Calendar.MONTH) + 1;
+    }
+
+    @Override
+    public void parsePage(CharSequence text, TransactionSink sink) {
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            parseLine(text, lineStart, lineEnd, sink);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private void parseLine(CharSequence text, int start, int end, TransactionSink sink) {
+        start = skipSpaces(text, start, end);
+        end = trimSpaces(text, start, end);
+        if (start == end) {
+            return;
+        }
+
+        int moneyCount = scanMoneyColumns(text, start, end);
+
+        int dateEnd = scanDate(text, start, end);
+        if (dateEnd < 0) {
+            // Not a transaction row; it may still carry the opening balance
+            if (moneyCount > 0 && containsAny(text, start, moneyStart[0], BALANCE_SEED_MARKERS)) {
+                balance = CurrencyUtils.parseCents(text, moneyStart[0], moneyEnd[0]);
+                balanceKnown = true;
+            }
+            return;
+        }
+        if (moneyCount == 0) {
+            return;
+        }
+
+        // With two columns the first is the amount and the last the running balance
+        int amountColumn = moneyCount == 2 ? 1 : 0;
+        int descriptionStart = skipSpaces(text, dateEnd, end);
+        int descriptionEnd = trimSpaces(text, descriptionStart, moneyStart[amountColumn]);
+        if (descriptionStart >= descriptionEnd) {
+            return;
+        }
+
+        long cents = CurrencyUtils.parseCents(text, moneyStart[amountColumn], moneyEnd[amountColumn]);
+        String description = text.subSequence(descriptionStart, descriptionEnd).toString();
+
+        if (template.getAmountLayout() == StatementTemplate.AmountLayout.BALANCE_DELTA) {
+            cents = signFromBalance(cents, moneyCount == 2
+                    ? CurrencyUtils.parseCents(text, moneyStart[0], moneyEnd[0])
+                    : CurrencyUtils.INVALID, description);
+        }
+
+        double amount = CurrencyUtils.toAmount(cents);
+        sink.onTransaction(new Transaction(DateUtils.toDate(lastEpochDay), description, amount,
+                categorizer.categorize(description, amount)));
+    }
+
+    private long signFromBalance(long cents, long newBalance, String description) {
+        long signed;
+        if (cents < 0) {
+            signed = cents;
+        } else if (balanceKnown && newBalance != CurrencyUtils.INVALID && balance + cents == newBalance) {
+            signed = cents;
+        } else if (balanceKnown && newBalance != CurrencyUtils.INVALID && balance - cents == newBalance) {
+            signed = -cents;
+        } else {
+            String lower = description.toLowerCase(Locale.ROOT);
+            signed = -cents;
+            for (String marker : CREDIT_MARKERS) {
+                if (lower.contains(marker)) {
+                    signed = cents;
+                    break;
+                }
+            }
+        }
+
+        if (newBalance != CurrencyUtils.INVALID) {
+            balance = newBalance;
+            balanceKnown = true;
+        } else if (balanceKnown) {
+            balance += signed;
+        }
+        return signed;
+    }
+
+    // Fills moneyStart/moneyEnd from the right, last column at index 0; returns how many were found
+    private int scanMoneyColumns(CharSequence text, int start, int end) {
+        int count = 0;
+        int tokenEnd = end;
+        while (count < 2 && tokenEnd > start) {
+            int tokenStart = tokenEnd;
+            while (tokenStart > start && !Character.isWhitespace(text.charAt(tokenStart - 1))) {
+                tokenStart--;
+            }
+            int markerEnd = tokenEnd;
+            // A detached CR/DR marker belongs to the amount before it
+            if (tokenEnd - tokenStart == 2 && isCreditDebitMarker(text, tokenStart) && tokenStart > start) {
+                int previousEnd = trimSpaces(text, start, tokenStart);
+                int previousStart = previousEnd;
+                while (previousStart > start && !Character.isWhitespace(text.charAt(previousStart - 1))) {
+                    previousStart--;
+                }
+                tokenStart = previousStart;
+                tokenEnd = previousEnd;
+            }
+            if (!isMoneyToken(text, tokenStart, tokenEnd)
+                    || CurrencyUtils.parseCents(text, tokenStart, markerEnd) == CurrencyUtils.INVALID) {
+                break;
+            }
+            moneyStart[count] = tokenStart;
+            moneyEnd[count] = markerEnd;
+            count++;
+            tokenEnd = trimSpaces(text, start, tokenStart);
+        }
+        return count;
+    }
+
+    // Money columns always print cents: "1,234.56", "-45.00", "(12.50)", "$9.99"
+    private static boolean isMoneyToken(CharSequence text, int start, int end) {
+        int last = end - 1;
+        if (last >= start && text.charAt(last) == ')') {
+            last--;
+        }
+        return last - 2 > start
+                && isDigit(text.charAt(last))
+                && isDigit(text.charAt(last - 1))
+                && text.charAt(last - 2) == '.';
+    }
+
+    private static boolean isCreditDebitMarker(CharSequence text, int start) {
+        char c1 = Character.toUpperCase(text.charAt(start));
+        char c2 = Character.toUpperCase(text.charAt(start + 1));
+        return c2 == 'R' && (c1 == 'C' || c1 == 'D');
+    }
+
+    // Reads "MM/DD", "MM/DD/YY" or "MM/DD/YYYY" at the start of the line; returns the
+    // index after it, or -1 when the line doesn't start with a date in this layout
+    private int scanDate(CharSequence text, int start, int end) {
+        int pos = start;
+        int month = 0;
+        int digits = 0;
+        while (pos < end && digits < 2 && isDigit(text.charAt(pos))) {
+            month = month * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if (digits == 0 || pos >= end || (text.charAt(pos) != '/' && text.charAt(pos) != '-')) {
+            return -1;
+        }
+        char separator = text.charAt(pos++);
+
+        int day = 0;
+        digits = 0;
+        while (pos < end && digits < 2 && isDigit(text.charAt(pos))) {
+            day = day * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            return -1;
+        }
+
+        int year;
+        if (pos < end && text.charAt(pos) == separator) {
+            pos++;
+            year = 0;
+            digits = 0;
+            while (pos < end && digits < 4 && isDigit(text.charAt(pos))) {
+                year = year * 10 + (text.charAt(pos++) - '0');
+                digits++;
+            }
+            if (digits != 2 && digits != 4) {
+                return -1;
+            }
+            if (digits == 2) {
+                year += year + 2000 > periodEndYear + 20 ? 1900 : 2000;
+            }
+        } else if (template.isYearInDate()) {
+            return -1;
+        } else {
+            // A December row on a statement that closes in January belongs to the year before
+            year = month > periodEndMonth ? periodEndYear - 1 : periodEndYear;
+        }
+
+        if (pos < end && !Character.isWhitespace(text.charAt(pos))) {
+            return -1;
+        }
+        if (month < 1 || month > 12 || day < 1 || day > DateUtils.lengthOfMonth(year, month)) {
+            return -1;
+        }
+        lastEpochDay = DateUtils.toEpochDay(year, month, day);
+        return pos;
+    }
+
+    private static boolean containsAny(CharSequence text, int start, int end, String[] markers) {
+        String lower = text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        for (String marker : markers) {
+            if (lower.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int skipSpaces(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimSpaces(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.statementanalyzer.extraction;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Known statement layouts. match() fingerprints the first page by looking for
+ * issuer strings and table headers in its first few kilobytes; that is a handful
+ * of substring scans over one lower-cased string, well under a millisecond.
+ * When nothing matches, DocumentParser falls back to the generic line pattern.
+ */
+public class TemplateRegistry {
+
+    // Issuer names and column headers sit at the top of the first page
+    private static final int FINGERPRINT_CHARS = 4096;
+
+    private final List<StatementTemplate> templates = new CopyOnWriteArrayList<>();
+
+    public static TemplateRegistry withDefaults() {
+        TemplateRegistry registry = new TemplateRegistry();
+
+        // Checking: "01/15 Card Purchase Starbucks 4.75 1,234.56", dates without a year
+        registry.register(new StatementTemplate.Builder("Chase")
+                .issuer("jpmorgan chase bank", "chase.com")
+                .headers("transaction detail", "description", "amount", "balance")
+                .minHeaderTokens(2)
+                .yearInDate(false)
+                .amountLayout(StatementTemplate.AmountLayout.BALANCE_DELTA)
+                .period("(\\w+ \\d{1,2}, \\d{4})\\s+through\\s+(\\w+ \\d{1,2}, \\d{4})")
+                .build());
+
+        // "01/15/24 Checkcard 0114 Starbucks -4.75", signed amounts
+        registry.register(new StatementTemplate.Builder("Bank of America")
+                .issuer("bank of america")
+                .headers("date", "description", "amount")
+                .minHeaderTokens(2)
+                .yearInDate(true)
+                .amountLayout(StatementTemplate.AmountLayout.SIGNED)
+                .build());
+
+        // Deposits and withdrawals share one column; the daily balance follows some rows.
+        // Only the closing date is printed, next to the page count: "March 31, 2024 Page 1 of 4"
+        registry.register(new StatementTemplate.Builder("Wells Fargo")
+                .issuer("wells fargo")
+                .headers("transaction history", "ending daily balance", "deposits/", "withdrawals/")
+                .minHeaderTokens(1)
+                .yearInDate(false)
+                .amountLayout(StatementTemplate.AmountLayout.BALANCE_DELTA)
+                .period("(\\w+ \\d{1,2}, \\d{4})\\W+page 1 of")
+                .build());
+
+        return registry;
+    }
+
+    public void register(StatementTemplate template) {
+        templates.add(template);
+    }
+
+    public List<StatementTemplate> getTemplates() {
+        return templates;
+    }
+
+    // Best-scoring template for this first page, or null to use the generic parser
+    public StatementTemplate match(CharSequence firstPageText) {
+        if (firstPageText == null || templates.isEmpty()) {
+            return null;
+        }
+        int length = Math.min(firstPageText.length(), FINGERPRINT_CHARS);
+        String head = firstPageText.subSequence(0, length).toString().toLowerCase(Locale.ROOT);
+
+        StatementTemplate best = null;
+        int bestScore = 0;
+        for (StatementTemplate template : templates) {
+            int score = template.score(head);
+            if (score > bestScore) {
+                best = template;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.statementanalyzer.extraction;
+
+/**
+ * Single-pass replacement for the generic transaction pattern
+ *
+ *     (\d{1,2}[/-]\d{1,2}[/-]\d{2,4})\s+([\w\s&.,'\-]+)\s+([\-+]?\$?\d+,?\d+\.\d{2})
+ *
+ * that finds exactly the same (date, description, amount) spans Matcher.find()
+ * would, without backtracking. The greedy description class overlaps the \s+
+ * around it, so the regex retries every split of a long line; on garbled text
+ * that is quadratic per match attempt. Here the same decision is O(1) per start
+ * position after one linear precomputation:
+ *
+ * - The date is fixed by its digits. The year must be a 2-4 digit run followed by
+ *   whitespace, or the match fails.
+ * - With the first \s+ taken greedily, the regex settles on the rightmost
+ *   whitespace run inside the description's character run that is immediately
+ *   followed by a valid amount. The second \s+ can only end where whitespace
+ *   ends, since an amount never starts with whitespace.
+ * - If no such run exists, the only other split takes a single space from a
+ *   whitespace run of three or more after the date, with the amount right after.
+ *
+ * The description span is reported untrimmed, like group 2. One instance walks
+ * one text and is not thread-safe.
+ */
+final class TransactionLineTokenizer {
+
+    private final CharSequence text;
+    private final int length;
+    private int position;
+
+    // Index just past the run of whitespace / description-class chars / digits starting at i
+    private final int[] whitespaceEnd;
+    private final int[] classEnd;
+    private final int[] digitEnd;
+    // Largest b <= i where a whitespace run ends and a valid amount starts, or -1
+    private final int[] lastAmountAfterSpace;
+
+    private int dateStart;
+    private int dateEnd;
+    private int descriptionStart;
+    private int descriptionEnd;
+    private int amountStart;
+    private int amountEnd;
+
+    TransactionLineTokenizer(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+        this.whitespaceEnd = new int[length + 1];
+        this.classEnd = new int[length + 1];
+        this.digitEnd = new int[length + 1];
+        this.lastAmountAfterSpace = new int[length + 1];
+
+        whitespaceEnd[length] = length;
+        classEnd[length] = length;
+        digitEnd[length] = length;
+        for (int i = length - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            whitespaceEnd[i] = isWhitespace(c) ? whitespaceEnd[i + 1] : i;
+            classEnd[i] = isDescriptionChar(c) ? classEnd[i + 1] : i;
+            digitEnd[i] = isDigit(c) ? digitEnd[i + 1] : i;
+        }
+
+        lastAmountAfterSpace[0] = -1;
+        for (int b = 1; b <= length; b++) {
+            boolean runEnds = isWhitespace(text.charAt(b - 1)) && (b == length || !isWhitespace(text.charAt(b)));
+            lastAmountAfterSpace[b] = runEnds && amountEndAt(b) >= 0 ? b : lastAmountAfterSpace[b - 1];
+        }
+    }
+
+    // Advances to the next match after the previous one, like Matcher.find()
+    boolean next() {
+        for (int p = position; p < length; p++) {
+            if (matchAt(p)) {
+                position = amountEnd;
+                return true;
+            }
+        }
+        position = length;
+        return false;
+    }
+
+    int dateStart() {
+        return dateStart;
+    }
+
+    int dateEnd() {
+        return dateEnd;
+    }
+
+    int descriptionStart() {
+        return descriptionStart;
+    }
+
+    int descriptionEnd() {
+        return descriptionEnd;
+    }
+
+    int amountStart() {
+        return amountStart;
+    }
+
+    int amountEnd() {
+        return amountEnd;
+    }
+
+    private boolean matchAt(int p) {
+        int d = dateEndAt(p);
+        if (d < 0 || d >= length || !isWhitespace(text.charAt(d))) {
+            return false;
+        }
+
+        int spaceEnd = whitespaceEnd[d];
+        int runEnd = classEnd[d];
+
+        // Description starts right after the whitespace; pick the rightmost amount that fits
+        if (spaceEnd < runEnd) {
+            int b = lastAmountAfterSpace[runEnd];
+            if (b > spaceEnd) {
+                return found(p, d, spaceEnd, b - 1, b);
+            }
+        }
+
+        // Otherwise the description is one whitespace char taken from the run after the date
+        if (spaceEnd - d >= 3 && amountEndAt(spaceEnd) >= 0) {
+            return found(p, d, spaceEnd - 2, spaceEnd - 1, spaceEnd);
+        }
+        return false;
+    }
+
+    private boolean found(int p, int d, int descStart, int descEnd, int amountPosition) {
+        dateStart = p;
+        dateEnd = d;
+        descriptionStart = descStart;
+        descriptionEnd = descEnd;
+        amountStart = amountPosition;
+        amountEnd = amountEndAt(amountPosition);
+        return true;
+    }
+
+    // \d{1,2}[/-]\d{1,2}[/-]\d{2,4} at p; -1 if it doesn't fit. Year digits must end the run.
+    private int dateEndAt(int p) {
+        int pos = digitGroupEnd(p);
+        if (pos < 0 || pos >= length || !isDateSeparator(text.charAt(pos))) {
+            return -1;
+        }
+        pos = digitGroupEnd(pos + 1);
+        if (pos < 0 || pos >= length || !isDateSeparator(text.charAt(pos))) {
+            return -1;
+        }
+        int yearStart = pos + 1;
+        if (yearStart >= length) {
+            return -1;
+        }
+        int yearDigits = digitEnd[yearStart] - yearStart;
+        return yearDigits >= 2 && yearDigits <= 4 ? yearStart + yearDigits : -1;
+    }
+
+    // One or two digits at pos; -1 unless a non-digit follows
+    private int digitGroupEnd(int pos) {
+        if (pos >= length) {
+            return -1;
+        }
+        int digits = digitEnd[pos] - pos;
+        return digits >= 1 && digits <= 2 ? pos + digits : -1;
+    }
+
+    // [\-+]?\$?\d+,?\d+\.\d{2} at pos; returns the match end or -1
+    private int amountEndAt(int pos) {
+        if (pos < length && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            pos++;
+        }
+        if (pos < length && text.charAt(pos) == '$') {
+            pos++;
+        }
+        if (pos >= length) {
+            return -1;
+        }
+        int digits = digitEnd[pos] - pos;
+        if (digits == 0) {
+            return -1;
+        }
+        int after = pos + digits;
+        if (after < length && text.charAt(after) == ',') {
+            // 1,234.56: digits after the comma, then the decimals
+            int groupStart = after + 1;
+            if (groupStart >= length || digitEnd[groupStart] == groupStart) {
+                return -1;
+            }
+            return centsEnd(digitEnd[groupStart]);
+        }
+        // 12.50: the two \d+ need at least two digits before the point
+        return digits >= 2 ? centsEnd(after) : -1;
+    }
+
+    private int centsEnd(int pointPosition) {
+        if (pointPosition + 2 < length
+                && text.charAt(pointPosition) == '.'
+                && isDigit(text.charAt(pointPosition + 1))
+                && isDigit(text.charAt(pointPosition + 2))) {
+            return pointPosition + 3;
+        }
+        return -1;
+    }
+
+    // java.util.regex \s without UNICODE_CHARACTER_CLASS
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // [\w\s&.,'\-] with ASCII \w
+    private static boolean isDescriptionChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_'
+                || isWhitespace(c) || c == '&' || c == '.' || c == ',' || c == '\'' || c == '-';
+    }
+
+    private static boolean isDateSeparator(char c) {
+        return c == '/' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.model.Transaction;
+
+/**
+ * Receives transactions as soon as the parser extracts them, instead of waiting
+ * for the whole document to be read.
+ */
+public interface TransactionSink {
+
+    void onTransaction(Transaction transaction);
+
+    // Called after every page of a PDF has been scanned (1-based page number)
+    default void onPageComplete(int pageNumber, int pageCount) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.statementanalyzer.model;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.util.Date;
+
+/**
+ * Single-pass accumulator for statement totals. Parsers feed it each transaction
+ * as it is extracted; summarize() snapshots the running state as an immutable
+ * StatementSummary. Partial results from other aggregators (parallel page
+ * workers, other statements) are folded in with addAll or StatementSummary.merge.
+ * Not thread-safe; give every worker its own instance.
+ */
+public class Aggregator {
+
+    private final CategoryRegistry registry = CategoryRegistry.getInstance();
+
+    private int firstEpochDay = TransactionTable.NO_DATE;
+    private int lastEpochDay = TransactionTable.NO_DATE;
+    private long incomeCents;
+    private long expenseCents;
+    private int transactionCount;
+    private CategoryTotals categoryTotals = new CategoryTotals();
+
+    public void add(Transaction transaction) {
+        Date date = transaction.getDate();
+        add(date == null ? TransactionTable.NO_DATE : DateUtils.toEpochDay(date),
+                CurrencyUtils.toCents(transaction.getAmount()),
+                registry.intern(transaction.getCategory()));
+    }
+
+    public void add(int epochDay, long amountCents, int categoryId) {
+        if (epochDay != TransactionTable.NO_DATE) {
+            firstEpochDay = StatementSummary.minDay(firstEpochDay, epochDay);
+            lastEpochDay = StatementSummary.maxDay(lastEpochDay, epochDay);
+        }
+        if (amountCents > 0) {
+            incomeCents += amountCents;
+        } else {
+            expenseCents += amountCents;
+        }
+        categoryTotals.add(categoryId, amountCents);
+        transactionCount++;
+    }
+
+    // Appending a whole table walks the primitive columns directly
+    public void addAll(TransactionTable table) {
+        for (int row = 0; row < table.size(); row++) {
+            add(table.getEpochDay(row), table.getCents(row), table.getCategoryId(row));
+        }
+    }
+
+    public void addAll(StatementSummary summary) {
+        firstEpochDay = StatementSummary.minDay(firstEpochDay, summary.getFirstEpochDay());
+        lastEpochDay = StatementSummary.maxDay(lastEpochDay, summary.getLastEpochDay());
+        incomeCents += summary.getIncomeCents();
+        expenseCents += summary.getExpenseCents();
+        transactionCount += summary.getTransactionCount();
+        categoryTotals.addAll(summary.categoryTotalsView());
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public StatementSummary summarize() {
+        return new StatementSummary(firstEpochDay, lastEpochDay, incomeCents, expenseCents,
+                transactionCount, categoryTotals.copy());
+    }
+
+    public void reset() {
+        firstEpochDay = TransactionTable.NO_DATE;
+        lastEpochDay = TransactionTable.NO_DATE;
+        incomeCents = 0;
+        expenseCents = 0;
+        transactionCount = 0;
+        categoryTotals = new CategoryTotals();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.statementanalyzer.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide mapping from category name to a small dense int id. Ids never
+ * change once assigned, so they can index plain arrays (see CategoryTotals) and
+ * be compared across statements. Safe to use from parser worker threads.
+ */
+public final class CategoryRegistry {
+
+    public static final int NULL_ID = -1;
+
+    private static final CategoryRegistry INSTANCE = new CategoryRegistry();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[32];
+    private volatile int size;
+
+    private CategoryRegistry() {
+    }
+
+    public static CategoryRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public int intern(String name) {
+        if (name == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = name;
+            names = current;
+            // Publish the name before the id becomes visible to lock-free readers
+            ids.put(name, size);
+            return size++;
+        }
+    }
+
+    // Id of a known category, or NULL_ID without registering it
+    public int lookup(String name) {
+        Integer id = name == null ? null : ids.get(name);
+        return id == null ? NULL_ID : id;
+    }
+
+    public String getName(int id) {
+        return id == NULL_ID ? null : names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.statementanalyzer.model;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Per-category totals in cents, stored in a long[] indexed by CategoryRegistry id.
+ * Adding and merging never box or hash. asMap() exposes the familiar
+ * Map&lt;String, Double&gt; shape for Firestore and JSON. Not thread-safe.
+ */
+public class CategoryTotals {
+
+    private final CategoryRegistry registry = CategoryRegistry.getInstance();
+
+    private long[] cents;
+    // Distinguishes "present with a zero total" from "never seen"
+    private final BitSet present = new BitSet();
+
+    public CategoryTotals() {
+        cents = new long[Math.max(16, registry.size())];
+    }
+
+    public static CategoryTotals fromMap(Map<String, ? extends Number> totals) {
+        CategoryTotals categoryTotals = new CategoryTotals();
+        if (totals != null) {
+            for (Map.Entry<String, ? extends Number> entry : totals.entrySet()) {
+                if (entry.getValue() != null) {
+                    categoryTotals.setCents(CategoryRegistry.getInstance().intern(entry.getKey()),
+                            CurrencyUtils.toCents(entry.getValue().doubleValue()));
+                }
+            }
+        }
+        return categoryTotals;
+    }
+
+    public void add(String category, long amountCents) {
+        add(registry.intern(category), amountCents);
+    }
+
+    public void add(int categoryId, long amountCents) {
+        if (categoryId == CategoryRegistry.NULL_ID) {
+            return;
+        }
+        ensureCapacity(categoryId);
+        cents[categoryId] += amountCents;
+        present.set(categoryId);
+    }
+
+    public void setCents(int categoryId, long amountCents) {
+        if (categoryId == CategoryRegistry.NULL_ID) {
+            return;
+        }
+        ensureCapacity(categoryId);
+        cents[categoryId] = amountCents;
+        present.set(categoryId);
+    }
+
+    public void addAll(CategoryTotals other) {
+        for (int id = other.present.nextSetBit(0); id >= 0; id = other.present.nextSetBit(id + 1)) {
+            add(id, other.cents[id]);
+        }
+    }
+
+    public boolean contains(int categoryId) {
+        return categoryId >= 0 && present.get(categoryId);
+    }
+
+    public long getCents(int categoryId) {
+        return contains(categoryId) ? cents[categoryId] : 0L;
+    }
+
+    public long getCents(String category) {
+        return getCents(registry.lookup(category));
+    }
+
+    // Iterate with: for (int id = first(); id >= 0; id = next(id))
+    public int first() {
+        return present.nextSetBit(0);
+    }
+
+    public int next(int categoryId) {
+        return present.nextSetBit(categoryId + 1);
+    }
+
+    public int size() {
+        return present.cardinality();
+    }
+
+    public CategoryTotals copy() {
+        CategoryTotals copy = new CategoryTotals();
+        copy.addAll(this);
+        return copy;
+    }
+
+    public Map<String, Double> asMap() {
+        return new MapView();
+    }
+
+    private void ensureCapacity(int categoryId) {
+        if (categoryId >= cents.length) {
+            cents = Arrays.copyOf(cents, Math.max(categoryId + 1, cents.length * 2));
+        }
+    }
+
+    // Live view; values are converted from cents as they are read
+    private class MapView extends AbstractMap<String, Double> {
+
+        @Override
+        public Double get(Object key) {
+            int id = key instanceof String ? registry.lookup((String) key) : CategoryRegistry.NULL_ID;
+            return contains(id) ? CurrencyUtils.toAmount(cents[id]) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && contains(registry.lookup((String) key));
+        }
+
+        @Override
+        public Double put(String key, Double value) {
+            Double previous = get(key);
+            setCents(registry.intern(key), CurrencyUtils.toCents(value));
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return CategoryTotals.this.size();
+        }
+
+        @Override
+        public Set<Entry<String, Double>> entrySet() {
+            return new AbstractSet<Entry<String, Double>>() {
+                @Override
+                public Iterator<Entry<String, Double>> iterator() {
+                    return new Iterator<Entry<String, Double>>() {
+                        private int nextId = first();
+
+                        @Override
+                        public boolean hasNext() {
+                            return nextId >= 0;
+                        }
+
+                        @Override
+                        public Entry<String, Double> next() {
+                            if (nextId < 0) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = nextId;
+                            nextId = CategoryTotals.this.next(id);
+                            return new SimpleImmutableEntry<>(registry.getName(id),
+                                    CurrencyUtils.toAmount(cents[id]));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return CategoryTotals.this.size();
+                }
+            };
+        }
+    }
+}
@@ -1,20 +1,34 @@
 package com.example.statementanalyzer.model;
 
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class FinancialData {
+    // Shared by the local store and the Firestore document; null until the statement is saved
+    private String id;
     private Date startDate;
     private Date endDate;
-    private double totalIncome;
-    private double totalExpenses;
-    private Map<String, Double> categoryTotals;
+    // Kept in cents so appends and merged summaries add up exactly
+    private long incomeCents;
+    private long expenseCents;
+    private CategoryTotals categoryTotals;
     private List<Transaction> transactions;
+    private TransactionTable transactionTable;
 
     public FinancialData() {
-        this.categoryTotals = new HashMap<>();
+        this.categoryTotals = new CategoryTotals();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
     }
 
     public Date getStartDate() {
@@ -34,51 +48,92 @@ public class FinancialData {
     }
 
     public double getTotalIncome() {
-        return totalIncome;
+        return CurrencyUtils.toAmount(incomeCents);
     }
 
     public void setTotalIncome(double totalIncome) {
-        this.totalIncome = totalIncome;
+        this.incomeCents = CurrencyUtils.toCents(totalIncome);
     }
 
     public double getTotalExpenses() {
-        return totalExpenses;
+        return CurrencyUtils.toAmount(expenseCents);
     }
 
     public void setTotalExpenses(double totalExpenses) {
-        this.totalExpenses = totalExpenses;
+        this.expenseCents = CurrencyUtils.toCents(totalExpenses);
     }
 
+    // Map view over the cent totals, kept for Firestore/JSON and existing callers
     public Map<String, Double> getCategoryTotals() {
-        return categoryTotals;
+        return categoryTotals.asMap();
     }
 
     public void setCategoryTotals(Map<String, Double> categoryTotals) {
+        this.categoryTotals = CategoryTotals.fromMap(categoryTotals);
+    }
+
+    public CategoryTotals getCategoryCents() {
+        return categoryTotals;
+    }
+
+    public void setCategoryCents(CategoryTotals categoryTotals) {
         this.categoryTotals = categoryTotals;
     }
 
+    // This statement's totals as an immutable summary, for merging across statements
+    public StatementSummary getSummary() {
+        return new StatementSummary(
+                startDate == null ? TransactionTable.NO_DATE : DateUtils.toEpochDay(startDate),
+                endDate == null ? TransactionTable.NO_DATE : DateUtils.toEpochDay(endDate),
+                incomeCents, expenseCents,
+                transactions == null ? 0 : transactions.size(),
+                categoryTotals.copy());
+    }
+
     public List<Transaction> getTransactions() {
         return transactions;
     }
 
     public void setTransactions(List<Transaction> transactions) {
         this.transactions = transactions;
+        this.transactionTable = null;
+    }
+
+    // Columnar form of the transactions. Data that was built from a plain list is
+    // converted on first access; from then on getTransactions() returns a view
+    // over the same table, so both stay in sync.
+    public TransactionTable getTransactionTable() {
+        if (transactionTable == null && transactions != null) {
+            transactionTable = TransactionTable.from(transactions);
+            transactions = transactionTable.asTransactionList();
+        }
+        return transactionTable;
+    }
+
+    // Columnar form for readers that must leave this object as it is: a statement
+    // still built from a plain list gets a new table and keeps its list
+    public TransactionTable toTransactionTable() {
+        if (transactionTable == null && transactions != null) {
+            return TransactionTable.from(transactions);
+        }
+        return transactionTable;
+    }
+
+    public void setTransactionTable(TransactionTable transactionTable) {
+        this.transactionTable = transactionTable;
+        this.transactions = transactionTable == null ? null : transactionTable.asTransactionList();
     }
 
     public void addTransaction(Transaction transaction) {
         this.transactions.add(transaction);
 
-        // Update totals
-        double amount = transaction.getAmount();
-        if (amount > 0) {
-            totalIncome += amount;
+        // Same rules as Aggregator.add, so appending matches a fresh parse to the cent
+        long cents = CurrencyUtils.toCents(transaction.getAmount());
+        if (cents > 0) {
+            incomeCents += cents;
         } else {
-            totalExpenses += amount;
+            expenseCents += cents;
         }
-
-        // Update category totals
-        String category = transaction.getCategory();
-        double currentTotal = categoryTotals.getOrDefault(category, 0.0);
-        categoryTotals.put(category, currentTotal + amount);
+        categoryTotals.add(transaction.getCategory(), cents);
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.statementanalyzer.model;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.util.Date;
+
+/**
+ * Immutable result of an Aggregator: income, expenses and per-category totals in
+ * cents, the transaction count and the range of transaction dates. Everything is
+ * an integer sum, so merge() is associative and commutative and summaries built
+ * per page, per worker or per statement combine to exactly the same numbers as a
+ * single pass over all rows.
+ */
+public final class StatementSummary {
+
+    public static final StatementSummary EMPTY = new StatementSummary(TransactionTable.NO_DATE,
+            TransactionTable.NO_DATE, 0L, 0L, 0, new CategoryTotals());
+
+    private final int firstEpochDay;
+    private final int lastEpochDay;
+    private final long incomeCents;
+    private final long expenseCents;
+    private final int transactionCount;
+    private final CategoryTotals categoryTotals;
+
+    // Takes ownership of categoryTotals; callers hand over a private copy
+    StatementSummary(int firstEpochDay, int lastEpochDay, long incomeCents, long expenseCents,
+                     int transactionCount, CategoryTotals categoryTotals) {
+        this.firstEpochDay = firstEpochDay;
+        this.lastEpochDay = lastEpochDay;
+        this.incomeCents = incomeCents;
+        this.expenseCents = expenseCents;
+        this.transactionCount = transactionCount;
+        this.categoryTotals = categoryTotals;
+    }
+
+    public static StatementSummary merge(StatementSummary a, StatementSummary b) {
+        if (a.transactionCount == 0 && a.categoryTotals.size() == 0) {
+            return b;
+        }
+        if (b.transactionCount == 0 && b.categoryTotals.size() == 0) {
+            return a;
+        }
+
+        CategoryTotals categoryTotals = a.categoryTotals.copy();
+        categoryTotals.addAll(b.categoryTotals);
+        return new StatementSummary(
+                minDay(a.firstEpochDay, b.firstEpochDay),
+                maxDay(a.lastEpochDay, b.lastEpochDay),
+                a.incomeCents + b.incomeCents,
+                a.expenseCents + b.expenseCents,
+                a.transactionCount + b.transactionCount,
+                categoryTotals);
+    }
+
+    // Earliest transaction day, or TransactionTable.NO_DATE when no row had a date
+    public int getFirstEpochDay() {
+        return firstEpochDay;
+    }
+
+    public int getLastEpochDay() {
+        return lastEpochDay;
+    }
+
+    public Date getFirstDate() {
+        return firstEpochDay == TransactionTable.NO_DATE ? null : DateUtils.toDate(firstEpochDay);
+    }
+
+    public Date getLastDate() {
+        return lastEpochDay == TransactionTable.NO_DATE ? null : DateUtils.toDate(lastEpochDay);
+    }
+
+    public long getIncomeCents() {
+        return incomeCents;
+    }
+
+    // Zero or negative, like FinancialData.getTotalExpenses()
+    public long getExpenseCents() {
+        return expenseCents;
+    }
+
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getCategoryCents(String category) {
+        return categoryTotals.getCents(category);
+    }
+
+    // A copy; the summary itself never changes
+    public CategoryTotals getCategoryTotals() {
+        return categoryTotals.copy();
+    }
+
+    // Read-only access for Aggregator.addAll, which would otherwise copy twice
+    CategoryTotals categoryTotalsView() {
+        return categoryTotals;
+    }
+
+    // Copies the totals onto the model object handed to the UI, export and Firestore
+    public void applyTo(FinancialData financialData) {
+        financialData.setTotalIncome(CurrencyUtils.toAmount(incomeCents));
+        financialData.setTotalExpenses(CurrencyUtils.toAmount(expenseCents));
+        financialData.setCategoryCents(categoryTotals.copy());
+    }
+
+    static int minDay(int a, int b) {
+        if (a == TransactionTable.NO_DATE) return b;
+        if (b == TransactionTable.NO_DATE) return a;
+        return Math.min(a, b);
+    }
+
+    static int maxDay(int a, int b) {
+        if (a == TransactionTable.NO_DATE) return b;
+        if (b == TransactionTable.NO_DATE) return a;
+        return Math.max(a, b);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.statementanalyzer.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns dense int ids to strings so repeated values (merchant names, categories)
+ * are stored once. Not thread-safe; it is owned by a single TransactionTable.
+ */
+public class StringDictionary {
+
+    public static final int NULL_ID = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[16];
+    private int size;
+
+    public int intern(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    // Id of an already interned value, or NULL_ID
+    public int lookup(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? NULL_ID : id;
+    }
+
+    public String get(int id) {
+        return id == NULL_ID ? null : values[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.statementanalyzer.model;
+
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented transaction storage: one growable primitive array per field
+ * instead of one Transaction object (plus Date and Strings) per row. Descriptions
+ * are dictionary-encoded per table, so a merchant that appears a thousand times
+ * is stored once; categories hold CategoryRegistry ids.
+ *
+ * Row views read straight from the arrays. asTransactionList() adapts the table
+ * to code that still expects List&lt;Transaction&gt;. Not thread-safe.
+ */
+public class TransactionTable {
+
+    // Epoch day stored for rows whose date is unknown
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] epochDays;
+    private long[] cents;
+    private int[] categoryIds;
+    private int[] descriptionIds;
+    private int size;
+
+    private final StringDictionary descriptions = new StringDictionary();
+    private final CategoryRegistry categories = CategoryRegistry.getInstance();
+
+    public TransactionTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TransactionTable(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        epochDays = new int[capacity];
+        cents = new long[capacity];
+        categoryIds = new int[capacity];
+        descriptionIds = new int[capacity];
+    }
+
+    public static TransactionTable from(List<Transaction> transactions) {
+        TransactionTable table = new TransactionTable(transactions.size());
+        for (Transaction transaction : transactions) {
+            table.add(transaction);
+        }
+        return table;
+    }
+
+    public int add(Transaction transaction) {
+        Date date = transaction.getDate();
+        return add(date == null ? NO_DATE : DateUtils.toEpochDay(date),
+                CurrencyUtils.toCents(transaction.getAmount()),
+                transaction.getDescription(),
+                transaction.getCategory());
+    }
+
+    // Appends a row and returns its index
+    public int add(int epochDay, long amountCents, String description, String category) {
+        ensureCapacity(size + 1);
+        epochDays[size] = epochDay;
+        cents[size] = amountCents;
+        descriptionIds[size] = descriptions.intern(description);
+        categoryIds[size] = categories.intern(category);
+        return size++;
+    }
+
+    public void set(int row, Transaction transaction) {
+        checkIndex(row);
+        Date date = transaction.getDate();
+        epochDays[row] = date == null ? NO_DATE : DateUtils.toEpochDay(date);
+        cents[row] = CurrencyUtils.toCents(transaction.getAmount());
+        descriptionIds[row] = descriptions.intern(transaction.getDescription());
+        categoryIds[row] = categories.intern(transaction.getCategory());
+    }
+
+    public void remove(int row) {
+        checkIndex(row);
+        int tail = size - row - 1;
+        System.arraycopy(epochDays, row + 1, epochDays, row, tail);
+        System.arraycopy(cents, row + 1, cents, row, tail);
+        System.arraycopy(descriptionIds, row + 1, descriptionIds, row, tail);
+        System.arraycopy(categoryIds, row + 1, categoryIds, row, tail);
+        size--;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getEpochDay(int row) {
+        checkIndex(row);
+        return epochDays[row];
+    }
+
+    public long getCents(int row) {
+        checkIndex(row);
+        return cents[row];
+    }
+
+    public int getDescriptionId(int row) {
+        checkIndex(row);
+        return descriptionIds[row];
+    }
+
+    public int getCategoryId(int row) {
+        checkIndex(row);
+        return categoryIds[row];
+    }
+
+    public String getDescription(int row) {
+        return descriptions.get(getDescriptionId(row));
+    }
+
+    public String getCategory(int row) {
+        return categories.getName(getCategoryId(row));
+    }
+
+    public StringDictionary getDescriptionDictionary() {
+        return descriptions;
+    }
+
+    // Sums the cents column per category id in one pass over two primitive arrays
+    public CategoryTotals sumByCategory() {
+        CategoryTotals totals = new CategoryTotals();
+        for (int row = 0; row < size; row++) {
+            totals.add(categoryIds[row], cents[row]);
+        }
+        return totals;
+    }
+
+    // Materializes one row as a standalone Transaction (a copy, not a view)
+    public Transaction toTransaction(int row) {
+        int epochDay = getEpochDay(row);
+        return new Transaction(epochDay == NO_DATE ? null : DateUtils.toDate(epochDay),
+                getDescription(row), CurrencyUtils.toAmount(cents[row]), getCategory(row));
+    }
+
+    // A view positioned on one row; move it around instead of allocating per row
+    public Row row(int index) {
+        return new Row().moveTo(index);
+    }
+
+    public List<Transaction> asTransactionList() {
+        return new TransactionListView();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= epochDays.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, epochDays.length + (epochDays.length >> 1));
+        epochDays = Arrays.copyOf(epochDays, newCapacity);
+        cents = Arrays.copyOf(cents, newCapacity);
+        categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+        descriptionIds = Arrays.copyOf(descriptionIds, newCapacity);
+    }
+
+    private void checkIndex(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+        }
+    }
+
+    public class Row {
+        private int index;
+
+        public Row moveTo(int index) {
+            checkIndex(index);
+            this.index = index;
+            return this;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getEpochDay() {
+            return epochDays[index];
+        }
+
+        public long getCents() {
+            return cents[index];
+        }
+
+        public double getAmount() {
+            return CurrencyUtils.toAmount(cents[index]);
+        }
+
+        public int getCategoryId() {
+            return categoryIds[index];
+        }
+
+        public String getCategory() {
+            return categories.getName(categoryIds[index]);
+        }
+
+        public String getDescription() {
+            return descriptions.get(descriptionIds[index]);
+        }
+
+        public Date getDate() {
+            return epochDays[index] == NO_DATE ? null : DateUtils.toDate(epochDays[index]);
+        }
+    }
+
+    // List<Transaction> adapter for existing callers; reads materialize, writes go to the columns
+    private class TransactionListView extends AbstractList<Transaction> implements RandomAccess {
+
+        @Override
+        public Transaction get(int index) {
+            return toTransaction(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Transaction set(int index, Transaction transaction) {
+            Transaction previous = toTransaction(index);
+            TransactionTable.this.set(index, transaction);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Transaction transaction) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+            }
+            TransactionTable.this.add(transaction);
+
+            // Rotate the appended row into place when inserting in the middle
+            for (int row = size - 1; row > index; row--) {
+                swap(row, row - 1);
+            }
+            modCount++;
+        }
+
+        @Override
+        public Transaction remove(int index) {
+            Transaction previous = toTransaction(index);
+            TransactionTable.this.remove(index);
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            TransactionTable.this.clear();
+            modCount++;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int day = epochDays[a];
+        epochDays[a] = epochDays[b];
+        epochDays[b] = day;
+
+        long amount = cents[a];
+        cents[a] = cents[b];
+        cents[b] = amount;
+
+        int category = categoryIds[a];
+        categoryIds[a] = categoryIds[b];
+        categoryIds[b] = category;
+
+        int description = descriptionIds[a];
+        descriptionIds[a] = descriptionIds[b];
+        descriptionIds[b] = description;
+    }
+}
@@ -1,4 +1,123 @@
 package com.example.statementanalyzer.utils;
 
 public class CurrencyUtils {
+
+    // Returned by parseCents when the text is not an amount
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // 16 integer digits plus two for cents stay below Long.MAX_VALUE (19 digits);
+    // a 17th digit times 100 could wrap around to a negative amount
+    private static final int MAX_INTEGER_DIGITS = 16;
+
+    public static long parseCents(CharSequence text) {
+        return text == null ? INVALID : parseCents(text, 0, text.length());
+    }
+
+    /**
+     * Reads an amount such as "$1,234.56", "-12.50", "(45.00)" or "99.10 DR" from
+     * text[start, end) straight into signed cents, without creating intermediate
+     * Strings or going through a double. Parentheses and a trailing DR mean a
+     * debit (negative); a trailing CR means a credit. More than two decimals are
+     * rounded half away from zero.
+     */
+    public static long parseCents(CharSequence text, int start, int end) {
+        start = skipWhitespace(text, start, end);
+        end = trimWhitespace(text, start, end);
+
+        boolean negative = false;
+
+        // Trailing CR/DR marker
+        if (end - start >= 2) {
+            char c1 = Character.toUpperCase(text.charAt(end - 2));
+            char c2 = Character.toUpperCase(text.charAt(end - 1));
+            if (c2 == 'R' && (c1 == 'C' || c1 == 'D')) {
+                negative = c1 == 'D';
+                end = trimWhitespace(text, start, end - 2);
+            }
+        }
+
+        // Accounting-style negatives: (12.50)
+        if (end - start >= 2 && text.charAt(start) == '(' && text.charAt(end - 1) == ')') {
+            negative = !negative;
+            start = skipWhitespace(text, start + 1, end - 1);
+            end = trimWhitespace(text, start, end - 1);
+        }
+
+        int pos = start;
+        if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative ^= text.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos < end && text.charAt(pos) == '$') {
+            pos++;
+        }
+        // "$-12.50" shows up in some exports as well
+        if (pos < end && text.charAt(pos) == '-') {
+            negative = !negative;
+            pos++;
+        }
+
+        long units = 0;
+        int integerDigits = 0;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (++integerDigits > MAX_INTEGER_DIGITS) {
+                    return INVALID;
+                }
+                units = units * 10 + (c - '0');
+            } else if (c != ',' || integerDigits == 0) {
+                break;
+            }
+            pos++;
+        }
+
+        long cents = 0;
+        int fractionDigits = 0;
+        if (pos < end && text.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                int digit = text.charAt(pos) - '0';
+                if (fractionDigits < 2) {
+                    cents = cents * 10 + digit;
+                } else if (fractionDigits == 2 && digit >= 5) {
+                    cents++;
+                }
+                fractionDigits++;
+                pos++;
+            }
+        }
+
+        if (pos != end || (integerDigits == 0 && fractionDigits == 0)) {
+            return INVALID;
+        }
+        if (fractionDigits == 1) {
+            cents *= 10;
+        }
+
+        long total = units * 100 + cents;
+        return negative ? -total : total;
+    }
+
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    private static int skipWhitespace(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
 }
@@ -1,4 +1,54 @@
 package com.example.statementanalyzer.utils;
 
+import java.util.Date;
+import java.util.TimeZone;
+
 public class DateUtils {
+
+    public static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+    // Days since 1970-01-01 for a proleptic Gregorian date (month is 1-12)
+    public static int toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Local calendar day of the given instant, in the device time zone
+    public static int toEpochDay(Date date) {
+        long millis = date.getTime();
+        return (int) Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    // Local midnight of the given day, matching what SimpleDateFormat.parse returns
+    public static Date toDate(int epochDay) {
+        TimeZone zone = TimeZone.getDefault();
+        long utcMidnight = epochDay * MILLIS_PER_DAY;
+        long localMidnight = utcMidnight - zone.getOffset(utcMidnight);
+
+        // The offset can differ on the other side of a DST switch, so check it once more
+        localMidnight = utcMidnight - zone.getOffset(localMidnight);
+        return new Date(localMidnight);
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.example.statementanalyzer;
+
+import org.junit.Assume;
+
+/**
+ * Timing runs that live next to the tests of the code they measure but are
+ * skipped unless asked for with ./gradlew test -Pbenchmarks. They print what
+ * they measure and assert nothing about it; shared CI hosts are too noisy
+ * for timings to pass or fail a build.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks run with -Pbenchmarks", Boolean.getBoolean("benchmarks"));
+    }
+
+    public static void report(String format, Object... args) {
+        System.out.println(String.format(format, args));
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.statementanalyzer.data;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchedWritePipelineTest {
+
+    private static final BatchedWritePipeline.Scheduler NOW = (task, delayMillis) -> task.run();
+
+    @Test
+    public void splitsWritesIntoFirestoreSizedBatches() {
+        List<List<Integer>> batches = new ArrayList<>();
+        BatchedWritePipeline<Integer> pipeline = new BatchedWritePipeline<>((batch, result) -> {
+            batches.add(new ArrayList<>(batch));
+            result.onComplete(true, null);
+        }, NOW, BatchedWritePipeline.MAX_BATCH_SIZE, 4, 3, 0);
+
+        Result result = new Result();
+        pipeline.start(numbers(2001), result);
+
+        assertEquals(1, result.calls.get());
+        assertTrue(result.success);
+        assertEquals(5, result.committedBatches);
+        assertEquals(5, batches.size());
+        // A writer that answers synchronously lets the last batch start before the others
+        batches.sort((a, b) -> Integer.compare(a.get(0), b.get(0)));
+        assertEquals(500, batches.get(0).size());
+        assertEquals(1, batches.get(4).size());
+        assertEquals(Integer.valueOf(2000), batches.get(4).get(0));
+    }
+
+    @Test
+    public void completesEmptyUploadsImmediately() {
+        Result result = new Result();
+        new BatchedWritePipeline<Integer>((batch, r) -> fail("nothing to write"), NOW, 500, 4, 3, 0)
+                .start(Collections.emptyList(), result);
+        assertEquals(1, result.calls.get());
+        assertTrue(result.success);
+    }
+
+    @Test
+    public void keepsBatchesInFlightBounded() throws InterruptedException {
+        ExecutorService network = Executors.newFixedThreadPool(16);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        try {
+            BatchedWritePipeline<Integer> pipeline = new BatchedWritePipeline<>((batch, result) -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                network.execute(() -> {
+                    sleep(2);
+                    inFlight.decrementAndGet();
+                    result.onComplete(true, null);
+                });
+            }, NOW, 10, 3, 3, 0);
+
+            Result result = new Result();
+            pipeline.start(numbers(500), result);
+            assertTrue(result.await());
+            assertTrue(result.success);
+            assertEquals(50, result.committedBatches);
+            assertEquals(3, maxInFlight.get());
+        } finally {
+            network.shutdownNow();
+        }
+    }
+
+    @Test
+    public void retriesAFailedBatchWithBackoff() {
+        List<Long> delays = new ArrayList<>();
+        AtomicInteger secondBatchAttempts = new AtomicInteger();
+        BatchedWritePipeline<Integer> pipeline = new BatchedWritePipeline<>((batch, result) -> {
+            if (batch.get(0) == 10 && secondBatchAttempts.incrementAndGet() < 3) {
+                result.onComplete(false, new Exception("UNAVAILABLE"));
+            } else {
+                result.onComplete(true, null);
+            }
+        }, (task, delayMillis) -> {
+            delays.add(delayMillis);
+            task.run();
+        }, 10, 2, 3, 100);
+
+        Result result = new Result();
+        pipeline.start(numbers(30), result);
+
+        assertTrue(result.success);
+        assertEquals(3, result.committedBatches);
+        assertEquals(3, secondBatchAttempts.get());
+        assertEquals(Arrays.asList(100L, 200L), delays);
+    }
+
+    @Test
+    public void stopsAfterABatchFailsForGood() {
+        List<Integer> started = new ArrayList<>();
+        List<BatchedWritePipeline.BatchResult> pending = new ArrayList<>();
+        BatchedWritePipeline<Integer> pipeline = new BatchedWritePipeline<>((batch, result) -> {
+            started.add(batch.get(0));
+            pending.add(result);
+        }, NOW, 10, 2, 2, 0);
+
+        Result result = new Result();
+        pipeline.start(numbers(100), result);
+        assertEquals(Arrays.asList(0, 10), started);
+
+        // The first batch fails twice; the second is still on the wire
+        pending.get(0).onComplete(false, new Exception("PERMISSION_DENIED"));
+        pending.get(2).onComplete(false, new Exception("PERMISSION_DENIED"));
+        assertEquals(0, result.calls.get());
+
+        pending.get(1).onComplete(true, null);
+        assertEquals(Arrays.asList(0, 10, 0), started);
+        assertEquals(1, result.calls.get());
+        assertFalse(result.success);
+        assertEquals(1, result.committedBatches);
+        assertEquals("PERMISSION_DENIED", result.error.getMessage());
+    }
+
+    // Stand-in for the Firestore backend: each commit is one round trip, and the
+    // client funnels them through a single connection
+    @Test
+    public void batchingCutsRoundTrips() throws InterruptedException {
+        Upload perRow = upload(2001, 1, Integer.MAX_VALUE, 0);
+        Upload batched = upload(2001, BatchedWritePipeline.MAX_BATCH_SIZE, 4, 0);
+
+        assertEquals(2001, perRow.roundTrips);
+        assertEquals(5, batched.roundTrips);
+        assertEquals(2001, batched.written);
+    }
+
+    @Test
+    public void benchmarkRoundTrips() throws InterruptedException {
+        Benchmarks.assumeEnabled();
+        int rows = 2001;
+        long roundTripMicros = 300;
+
+        long start = System.nanoTime();
+        Upload perRow = upload(rows, 1, Integer.MAX_VALUE, roundTripMicros);
+        long perRowMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        Upload batched = upload(rows, BatchedWritePipeline.MAX_BATCH_SIZE, 4, roundTripMicros);
+        long batchedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Benchmarks.report("%,d rows: one write each %,d round trips in %,d ms, batched %,d round trips in %,d ms",
+                rows, perRow.roundTrips, perRowMillis, batched.roundTrips, batchedMillis);
+    }
+
+    private static Upload upload(int rows, int batchSize, int maxInFlight, long roundTripMicros)
+            throws InterruptedException {
+        ScheduledExecutorService connection = Executors.newSingleThreadScheduledExecutor();
+        Upload upload = new Upload();
+        try {
+            BatchedWritePipeline<Integer> pipeline = new BatchedWritePipeline<>((batch, result) -> {
+                int size = batch.size();
+                connection.execute(() -> {
+                    busyWait(roundTripMicros);
+                    upload.roundTrips++;
+                    upload.written += size;
+                    result.onComplete(true, null);
+                });
+            }, (task, delay) -> connection.schedule(task, delay, TimeUnit.MILLISECONDS),
+                    batchSize, maxInFlight, 3, 0);
+
+            Result result = new Result();
+            pipeline.start(numbers(rows), result);
+            assertTrue(result.await());
+            assertTrue(result.success);
+        } finally {
+            connection.shutdownNow();
+        }
+        return upload;
+    }
+
+    private static class Upload {
+        // Only touched on the connection thread
+        int roundTrips;
+        int written;
+    }
+
+    private static class Result implements BatchedWritePipeline.Completion {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean success;
+        volatile int committedBatches;
+        volatile Exception error;
+
+        @Override
+        public void onComplete(boolean success, int committedBatches, Exception error) {
+            this.success = success;
+            this.committedBatches = committedBatches;
+            this.error = error;
+            calls.incrementAndGet();
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static List<Integer> numbers(int count) {
+        List<Integer> numbers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    private static void busyWait(long micros) {
+        long end = System.nanoTime() + micros * 1_000;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
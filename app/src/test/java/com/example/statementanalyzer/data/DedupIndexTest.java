@@ -0,0 +1,129 @@
+package com.example.statementanalyzer.data;
+
+import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DedupIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void overlappingStatementKeepsOnlyNewRows() throws IOException {
+        DedupIndex index = new DedupIndex(folder.newFolder("dedup"));
+
+        List<Transaction> january = Arrays.asList(
+                row(19723, "COFFEE SHOP #12", -4.75),
+                row(19723, "COFFEE SHOP #12", -4.75),
+                row(19725, "PAYROLL", 2500.00));
+        DedupIndex.Screening first = index.screen(january, "acct");
+        assertEquals(3, first.getUnique().size());
+        index.commit(first);
+
+        // The quarterly export repeats January with different spacing and case
+        List<Transaction> quarter = Arrays.asList(
+                row(19723, "Coffee  Shop #12", -4.75),
+                row(19723, "coffee shop 12", -4.75),
+                row(19723, "COFFEE SHOP #12", -4.75),
+                row(19725, "PAYROLL", 2500.00),
+                row(19760, "PAYROLL", 2500.00));
+        DedupIndex.Screening second = index.screen(quarter, "acct");
+
+        // A third identical coffee on the same day is new; so is February's payroll
+        assertEquals(3, second.getDuplicateCount());
+        assertEquals(2, second.getUnique().size());
+        assertEquals(19760, DateUtils.toEpochDay(second.getUnique().get(1).getDate()));
+    }
+
+    @Test
+    public void reservedRowsBlockConcurrentUploadsUntilReleased() throws IOException {
+        DedupIndex index = new DedupIndex(folder.newFolder("dedup"));
+        List<Transaction> rows = Arrays.asList(row(19800, "GROCERY", -40.00));
+
+        DedupIndex.Screening inFlight = index.screen(rows, "acct");
+        assertEquals(1, index.screen(rows, "acct").getDuplicateCount());
+
+        index.release(inFlight);
+        assertEquals(0, index.screen(rows, "acct").getDuplicateCount());
+        assertEquals(0, index.screen(rows, "other").getDuplicateCount());
+    }
+
+    @Test
+    public void survivesRestartAndCompaction() throws IOException {
+        File directory = folder.newFolder("dedup");
+        DedupIndex index = new DedupIndex(directory);
+
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            history.add(row(18000 + i / 20, "MERCHANT " + (i % 300), -(i % 9000) / 100.0 - 1));
+        }
+        index.commit(index.screen(history.subList(0, 30_000), "acct"));
+        index.compact();
+        index.commit(index.screen(history.subList(30_000, history.size()), "acct"));
+
+        DedupIndex reopened = new DedupIndex(directory);
+        assertEquals(50_000, reopened.size());
+
+        List<Transaction> fresh = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            fresh.add(row(30000 + i, "NEW MERCHANT " + i, -12.34));
+        }
+
+        DedupIndex.Screening old = reopened.screen(history, "acct");
+        DedupIndex.Screening novel = reopened.screen(fresh, "acct");
+
+        assertEquals(history.size(), old.getDuplicateCount());
+        assertEquals(fresh.size(), novel.getUnique().size());
+    }
+
+    @Test
+    public void clearForgetsEveryFingerprint() throws IOException {
+        File directory = folder.newFolder("dedup");
+        DedupIndex index = new DedupIndex(directory);
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(row(19700 + i, "MERCHANT " + i, -5.0));
+        }
+        index.commit(index.screen(rows.subList(0, 60), "acct"));
+        index.compact();
+        index.commit(index.screen(rows.subList(60, 100), "acct"));
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(0, new DedupIndex(directory).size());
+        assertEquals(0, index.screen(rows, "acct").getDuplicateCount());
+    }
+
+    @Test
+    public void bloomFilterHasNoFalseNegatives() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        for (long i = 0; i < 10_000; i++) {
+            filter.add(DedupIndex.fingerprint((int) i, i, "x", null));
+        }
+        int falsePositives = 0;
+        for (long i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(DedupIndex.fingerprint((int) i, i, "x", null)));
+            if (filter.mightContain(DedupIndex.fingerprint((int) i, i, "y", null))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    private static Transaction row(int epochDay, String description, double amount) {
+        return new Transaction(DateUtils.toDate(epochDay), description, amount, "Misc");
+    }
+}
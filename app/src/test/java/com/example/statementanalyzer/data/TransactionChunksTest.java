@@ -0,0 +1,143 @@
+package com.example.statementanalyzer.data;
+
+import com.example.statementanalyzer.model.TransactionTable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TransactionChunksTest {
+
+    @Test
+    public void roundTripsEveryColumn() {
+        TransactionTable table = new TransactionTable();
+        table.add(19737, -475, "COFFEE SHOP", "Food");
+        table.add(TransactionTable.NO_DATE, 250000, "SALARY", null);
+        table.add(19738, 0, null, "Other");
+        table.add(19739, -475, "COFFEE SHOP", "Food");
+
+        TransactionTable decoded = new TransactionTable();
+        TransactionChunks.decode(TransactionChunks.encode(table), decoded);
+
+        assertTables(table, decoded);
+    }
+
+    @Test
+    public void splitsIntoChunksOfAFewHundredRows() {
+        TransactionTable table = rows(2 * TransactionChunks.CHUNK_ROWS + 1);
+        List<Map<String, Object>> chunks = TransactionChunks.encode(table);
+
+        assertEquals(3, chunks.size());
+        assertEquals(3, TransactionChunks.chunkCount(table.size()));
+        assertEquals((long) TransactionChunks.CHUNK_ROWS, chunks.get(0).get(TransactionChunks.FIELD_COUNT));
+        assertEquals(1L, chunks.get(2).get(TransactionChunks.FIELD_COUNT));
+        assertEquals(2L, chunks.get(2).get(TransactionChunks.FIELD_INDEX));
+        assertEquals("0002", TransactionChunks.chunkId(2));
+        assertTrue(TransactionChunks.encode(new TransactionTable()).isEmpty());
+        assertTrue(TransactionChunks.encode(null).isEmpty());
+    }
+
+    @Test
+    public void storesEachDistinctStringOncePerChunk() {
+        TransactionTable table = rows(TransactionChunks.CHUNK_ROWS);
+        Map<String, Object> chunk = TransactionChunks.encode(table).get(0);
+
+        assertEquals(10, ((List<?>) chunk.get(TransactionChunks.FIELD_DESCRIPTIONS)).size());
+        assertEquals(3, ((List<?>) chunk.get(TransactionChunks.FIELD_CATEGORIES)).size());
+    }
+
+    @Test
+    public void decodesChunksInIndexOrder() {
+        TransactionTable table = rows(3 * TransactionChunks.CHUNK_ROWS - 7);
+        List<Map<String, Object>> chunks = new ArrayList<>(TransactionChunks.encode(table));
+        Collections.reverse(chunks);
+
+        TransactionTable decoded = new TransactionTable();
+        TransactionChunks.decode(chunks, decoded);
+
+        assertTables(table, decoded);
+    }
+
+    @Test
+    public void acceptsAnyNumberType() {
+        // A chunk edited by hand in the console may hold doubles instead of integers
+        Map<String, Object> chunk = TransactionChunks.encode(rows(2)).get(0);
+        List<Object> days = new ArrayList<>();
+        for (Object day : (List<?>) chunk.get(TransactionChunks.FIELD_DAYS)) {
+            days.add(((Number) day).doubleValue());
+        }
+        chunk.put(TransactionChunks.FIELD_DAYS, days);
+
+        TransactionTable decoded = new TransactionTable();
+        TransactionChunks.decode(Collections.singletonList(chunk), decoded);
+        assertTables(rows(2), decoded);
+    }
+
+    @Test
+    public void rejectsUnknownVersionsAndBrokenColumns() {
+        Map<String, Object> future = TransactionChunks.encode(rows(5)).get(0);
+        future.put(TransactionChunks.FIELD_VERSION, (long) TransactionChunks.FORMAT_VERSION + 1);
+        assertRejected(future);
+
+        Map<String, Object> shortColumn = TransactionChunks.encode(rows(5)).get(0);
+        ((List<?>) shortColumn.get(TransactionChunks.FIELD_CENTS)).remove(0);
+        assertRejected(shortColumn);
+
+        Map<String, Object> missingString = TransactionChunks.encode(rows(5)).get(0);
+        ((List<?>) missingString.get(TransactionChunks.FIELD_CATEGORIES)).clear();
+        assertRejected(missingString);
+    }
+
+    // Document reads for a year of monthly statements: one per statement either way,
+    // plus one per transaction in the old layout or one per chunk in the new one
+    @Test
+    public void cutsDocumentReadsForAYear() {
+        int statements = 12;
+        int rowsPerStatement = 300;
+        int chunkedReads = 0;
+
+        for (int i = 0; i < statements; i++) {
+            List<Map<String, Object>> chunks = TransactionChunks.encode(rows(rowsPerStatement));
+            TransactionTable decoded = new TransactionTable();
+            TransactionChunks.decode(chunks, decoded);
+            assertEquals(rowsPerStatement, decoded.size());
+            chunkedReads += 1 + chunks.size();
+        }
+
+        // Against 3,612 reads for the same year stored one row per document
+        assertEquals(24, chunkedReads);
+    }
+
+    private static TransactionTable rows(int count) {
+        String[] categories = {"Food", "Transport", "Shopping"};
+        TransactionTable table = new TransactionTable(count);
+        for (int i = 0; i < count; i++) {
+            table.add(19700 + i / 5, -100L * (i % 37) - 1, "MERCHANT " + (i % 10), categories[i % 3]);
+        }
+        return table;
+    }
+
+    private static void assertTables(TransactionTable expected, TransactionTable actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochDay(row), actual.getEpochDay(row));
+            assertEquals(expected.getCents(row), actual.getCents(row));
+            assertEquals(expected.getDescription(row), actual.getDescription(row));
+            assertEquals(expected.getCategory(row), actual.getCategory(row));
+        }
+    }
+
+    private static void assertRejected(Map<String, Object> chunk) {
+        try {
+            TransactionChunks.decode(Collections.singletonList(chunk), new TransactionTable());
+            fail("Expected the chunk to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Readers fall back to an empty statement instead of guessing
+        }
+    }
+}
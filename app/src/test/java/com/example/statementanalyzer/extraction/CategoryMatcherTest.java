@@ -0,0 +1,119 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CategoryMatcherTest {
+
+    @Test
+    public void longestKeywordWins() {
+        CategoryMatcher matcher = new CategoryMatcher.Builder()
+                .add("gas", "Transportation")
+                .add("gas bill", "Utilities")
+                .add("deposit", "Income")
+                .add("direct deposit", "Income Direct")
+                .build();
+
+        assertEquals("Utilities", matcher.match("CITY GAS BILL AUTOPAY"));
+        assertEquals("Transportation", matcher.match("SHELL GAS #1234"));
+        assertEquals("Income Direct", matcher.match("ACME DIRECT DEPOSIT"));
+    }
+
+    @Test
+    public void equalLengthTieGoesToFirstRegistered() {
+        CategoryMatcher matcher = new CategoryMatcher.Builder()
+                .add("shop", "Shopping")
+                .add("food", "Groceries")
+                .build();
+
+        assertEquals("Shopping", matcher.match("food shop"));
+        assertEquals("Shopping", matcher.match("shop food"));
+    }
+
+    @Test
+    public void overlappingKeywordsAreAllSeen() {
+        // "market" is only reachable through the failure link out of "supermarke"
+        CategoryMatcher matcher = new CategoryMatcher.Builder()
+                .add("supermarkets", "Never")
+                .add("market", "Groceries")
+                .build();
+
+        assertEquals("Groceries", matcher.match("supermarket purchase"));
+        assertNull(matcher.match("hardware"));
+        assertNull(matcher.match(""));
+    }
+
+    @Test
+    public void findsWhatTheContainsLoopFinds() {
+        Random random = new Random(42);
+        Map<String, String> keywords = keywords(random);
+        CategoryMatcher matcher = new CategoryMatcher.Builder().addAll(keywords).build();
+
+        for (String description : descriptions(random)) {
+            String lowerDesc = description.toLowerCase();
+            boolean found = false;
+            for (String keyword : keywords.keySet()) {
+                found |= lowerDesc.contains(keyword);
+            }
+            assertEquals(description, found, matcher.match(description) != null);
+        }
+    }
+
+    // Prints automaton vs. the old contains() loop
+    @Test
+    public void benchmarkAgainstContainsLoop() {
+        Benchmarks.assumeEnabled();
+        Random random = new Random(42);
+        Map<String, String> keywords = keywords(random);
+        CategoryMatcher matcher = new CategoryMatcher.Builder().addAll(keywords).build();
+        String[] descriptions = descriptions(random);
+
+        int hits = 0;
+        long start = System.nanoTime();
+        for (String description : descriptions) {
+            String lowerDesc = description.toLowerCase();
+            for (Map.Entry<String, String> entry : keywords.entrySet()) {
+                if (lowerDesc.contains(entry.getKey())) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        long loopNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String description : descriptions) {
+            if (matcher.match(description) != null) {
+                hits--;
+            }
+        }
+        long automatonNanos = System.nanoTime() - start;
+
+        Benchmarks.report("keywords=%d rows=%d contains-loop=%dms automaton=%dms unmatched=%d", matcher.size(),
+                descriptions.length, loopNanos / 1_000_000, automatonNanos / 1_000_000, hits);
+    }
+
+    private static Map<String, String> keywords(Random random) {
+        Map<String, String> keywords = new LinkedHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            keywords.put("merchant" + Integer.toString(random.nextInt(1_000_000), 36), "Category" + (i % 20));
+        }
+        keywords.put("coffee", "Dining");
+        return keywords;
+    }
+
+    private static String[] descriptions(Random random) {
+        String[] descriptions = new String[2000];
+        for (int i = 0; i < descriptions.length; i++) {
+            descriptions[i] = "POS PURCHASE " + i + " LOCAL COFFEE ROASTERS STORE " + random.nextInt(9999);
+        }
+        return descriptions;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+public class ChannelTextReaderTest {
+
+    private static final String CSV = "Date,Description,Amount\n01/15/2024,Caf\u00e9 M\u00fcnchen,-4.75\n";
+
+    @Test
+    public void stripsUtf8ByteOrderMark() throws IOException {
+        byte[] bom = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+        assertDecodes(concat(bom, CSV.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void readsUtf16WithAndWithoutByteOrderMark() throws IOException {
+        byte[] bom = {(byte) 0xff, (byte) 0xfe};
+        assertDecodes(concat(bom, CSV.getBytes(StandardCharsets.UTF_16LE)), StandardCharsets.UTF_16LE);
+        assertDecodes(CSV.getBytes(StandardCharsets.UTF_16BE), StandardCharsets.UTF_16BE);
+        assertDecodes(CSV.getBytes(StandardCharsets.UTF_16LE), StandardCharsets.UTF_16LE);
+    }
+
+    @Test
+    public void fallsBackForLegacyExports() throws IOException {
+        assertDecodes(CSV.getBytes(ChannelTextReader.WINDOWS_1252), ChannelTextReader.WINDOWS_1252);
+        // Plain ASCII is valid UTF-8 either way
+        ChannelTextReader reader = new ChannelTextReader(channel("Date,Amount\n".getBytes(StandardCharsets.US_ASCII)),
+                ChannelTextReader.WINDOWS_1252);
+        assertEquals(StandardCharsets.UTF_8, reader.getCharset());
+        assertEquals("Date,Amount\n", readAll(reader));
+    }
+
+    @Test
+    public void keepsCharactersSplitAcrossBuffers() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 * ChannelTextReader.BUFFER_SIZE) {
+            // 1, 2 and 3 byte characters, so boundaries land inside sequences
+            text.append("a\u00e9\u20ac");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        ChannelTextReader reader = new ChannelTextReader(trickle(bytes), ChannelTextReader.WINDOWS_1252);
+        assertEquals(StandardCharsets.UTF_8, reader.getCharset());
+        assertEquals(text.toString(), readAll(reader));
+    }
+
+    @Test
+    public void feedsTheCsvParser() throws IOException {
+        byte[] bom = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+        Reader reader = new ChannelTextReader(channel(concat(bom, CSV.getBytes(StandardCharsets.UTF_8))),
+                ChannelTextReader.WINDOWS_1252);
+        try (CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+            Iterator<CSVRecord> records = parser.iterator();
+            CSVRecord record = records.next();
+            assertEquals("Caf\u00e9 M\u00fcnchen", record.get("Description"));
+            assertFalse(records.hasNext());
+        }
+    }
+
+    @Test
+    public void benchmarkAgainstAStreamReader() throws IOException {
+        Benchmarks.assumeEnabled();
+        File file = File.createTempFile("statement", ".csv");
+        try {
+            long size = 32L * 1024 * 1024;
+            try (OutputStream out = new FileOutputStream(file)) {
+                byte[] row = "01/15/2024,CAF\u00c9 MERCHANT PURCHASE 0000000,-4.75\n".getBytes(StandardCharsets.UTF_8);
+                for (long written = 0; written < size; written += row.length) {
+                    out.write(row);
+                }
+            }
+
+            char[] buffer = new char[8192];
+            long streamNanos = Long.MAX_VALUE;
+            long channelNanos = Long.MAX_VALUE;
+            long streamChars = 0;
+            long channelChars = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                    streamChars = count(reader, buffer);
+                }
+                streamNanos = Math.min(streamNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                try (Reader reader = new ChannelTextReader(new FileInputStream(file).getChannel(), ChannelTextReader.WINDOWS_1252)) {
+                    channelChars = count(reader, buffer);
+                }
+                channelNanos = Math.min(channelNanos, System.nanoTime() - start);
+            }
+            assertEquals(streamChars, channelChars);
+
+            Benchmarks.report("%,d MB: InputStreamReader %,d MB/s, ChannelTextReader %,d MB/s",
+                    size >> 20, (size >> 20) * 1_000_000_000L / Math.max(1, streamNanos),
+                    (size >> 20) * 1_000_000_000L / Math.max(1, channelNanos));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private static void assertDecodes(byte[] bytes, Charset expected) throws IOException {
+        ChannelTextReader reader = new ChannelTextReader(channel(bytes), ChannelTextReader.WINDOWS_1252);
+        assertEquals(expected, reader.getCharset());
+        assertEquals(CSV, readAll(reader));
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[1000];
+        int n;
+        while ((n = reader.read(buffer, 0, buffer.length)) >= 0) {
+            text.append(buffer, 0, n);
+        }
+        reader.close();
+        return text.toString();
+    }
+
+    private static long count(Reader reader, char[] buffer) throws IOException {
+        long chars = 0;
+        int n;
+        while ((n = reader.read(buffer, 0, buffer.length)) >= 0) {
+            chars += n;
+        }
+        return chars;
+    }
+
+    private static ReadableByteChannel channel(byte[] bytes) {
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+
+    // Hands out odd-sized pieces, like a socket-backed content provider would
+    private static ReadableByteChannel trickle(byte[] bytes) {
+        return new ReadableByteChannel() {
+            private int position;
+            private boolean open = true;
+
+            @Override
+            public int read(ByteBuffer target) {
+                if (position == bytes.length) {
+                    return -1;
+                }
+                int n = Math.min(Math.min(target.remaining(), 4099), bytes.length - position);
+                target.put(bytes, position, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                open = false;
+            }
+        };
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
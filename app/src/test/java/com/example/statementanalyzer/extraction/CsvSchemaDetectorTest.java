@@ -0,0 +1,201 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CsvSchemaDetectorTest {
+
+    @Test
+    public void detectsSingleAmountColumn() throws IOException {
+        Csv csv = new Csv("Transaction Date,Post Date,Description,Category,Type,Amount\n"
+                + "01/15/2024,01/16/2024,STARBUCKS STORE 123,Food & Drink,Sale,-4.75\n"
+                + "01/16/2024,01/17/2024,Payment Thank You,,Payment,250.00\n");
+
+        CsvSchema schema = csv.detect();
+        assertEquals(',', schema.getDelimiter());
+        assertEquals(0, schema.getDateColumn());
+        assertEquals(2, schema.getDescriptionColumn());
+        assertEquals(5, schema.getAmountColumn());
+        assertFalse(schema.isInvertSign());
+        assertEquals(StatementDateParser.Layout.MONTH_DAY_YEAR_SLASH, schema.getDateLayout());
+        assertEquals(-475, schema.getCents(csv.rows.get(0)));
+    }
+
+    @Test
+    public void combinesDebitAndCreditColumns() throws IOException {
+        Csv csv = new Csv("Date,Details,Paid out,Paid in,Balance\n"
+                + "2024-02-01,Rent,1850.00,,3150.00\n"
+                + "2024-02-02,Salary,,4200.00,7350.00\n"
+                + "2024-02-03,Coffee,-3.20,,7346.80\n");
+
+        CsvSchema schema = csv.detect();
+        assertTrue(schema.isSplitAmount());
+        assertEquals(2, schema.getDebitColumn());
+        assertEquals(3, schema.getCreditColumn());
+        assertEquals(1, schema.getDescriptionColumn());
+        assertEquals(StatementDateParser.Layout.YEAR_MONTH_DAY_DASH, schema.getDateLayout());
+        assertEquals(-185000, schema.getCents(csv.rows.get(0)));
+        assertEquals(420000, schema.getCents(csv.rows.get(1)));
+        // A debit printed with its own minus sign is still a debit
+        assertEquals(-320, schema.getCents(csv.rows.get(2)));
+    }
+
+    @Test
+    public void readsLocalizedSemicolonExports() throws IOException {
+        Csv csv = new Csv("Buchungstag;Valutadatum;Verwendungszweck;Betrag;Saldo\n"
+                + "15.01.2024;15.01.2024;REWE Markt;-1.234,56;2.000,00\n"
+                + "16.01.2024;16.01.2024;Gehalt;3.100,00;5.100,00\n");
+
+        CsvSchema schema = csv.detect();
+        assertEquals(';', schema.getDelimiter());
+        assertEquals(0, schema.getDateColumn());
+        assertEquals(2, schema.getDescriptionColumn());
+        assertEquals(3, schema.getAmountColumn());
+        assertTrue(schema.isDecimalComma());
+        assertEquals(StatementDateParser.Layout.DAY_MONTH_YEAR_DOT, schema.getDateLayout());
+        assertEquals(-123456, schema.getCents(csv.rows.get(0)));
+
+        StatementDateParser parser = new StatementDateParser(schema.getDateLayout());
+        assertEquals(DateUtils.toEpochDay(2024, 1, 15), DateUtils.toEpochDay(parser.parse(schema.getDate(csv.rows.get(0)))));
+    }
+
+    @Test
+    public void fallsBackToValuesWithoutKnownHeaders() throws IOException {
+        Csv csv = new Csv("Col1,Col2,Col3\n"
+                + "31/01/2024,TESCO STORES 2231,-12.40\n"
+                + "01/02/2024,AMAZON MARKETPLACE,-30.00\n");
+
+        CsvSchema schema = csv.detect();
+        assertEquals(0, schema.getDateColumn());
+        assertEquals(1, schema.getDescriptionColumn());
+        assertEquals(2, schema.getAmountColumn());
+        // 31/01 only reads day first
+        assertEquals(StatementDateParser.Layout.DAY_MONTH_YEAR_SLASH, schema.getDateLayout());
+    }
+
+    @Test
+    public void invertsCardExportsThatPrintChargesPositive() throws IOException {
+        StringBuilder text = new StringBuilder("Date,Description,Amount\n");
+        for (int i = 1; i <= 8; i++) {
+            text.append("01/0").append(i).append("/2024,MERCHANT ").append(i).append(",").append(10 + i).append(".00\n");
+        }
+        text.append("01/09/2024,AUTOPAY PAYMENT - THANK YOU,-500.00\n");
+        Csv csv = new Csv(text.toString());
+
+        CsvSchema schema = csv.detect();
+        assertTrue(schema.isInvertSign());
+        assertEquals(-1100, schema.getCents(csv.rows.get(0)));
+        assertEquals(50000, schema.getCents(csv.rows.get(8)));
+    }
+
+    @Test
+    public void rejectsFilesWithoutAnAmount() throws IOException {
+        assertNull(new Csv("Date,Description\n01/15/2024,Coffee\n").detect());
+    }
+
+    @Test
+    public void needsSampleRowsToConfirmTheHeaders() throws IOException {
+        // Header names alone would pass every value check and be saved for the bank
+        assertNull(new Csv("Date,Description,Amount\n").detect());
+        // A blank column isn't taken for dates or amounts just because nothing contradicts it
+        assertNull(new Csv("Posted,Payee,Value,Notes\n01/15/2024,Coffee,abc,\n").detect());
+    }
+
+    @Test
+    public void schemaSurvivesEncoding() throws IOException {
+        CsvSchema schema = new Csv("Buchungstag;Verwendungszweck;Soll;Haben\n"
+                + "15.01.2024;Miete;950,00;\n16.01.2024;Gehalt;;3.100,00\n").detect();
+        CsvSchema copy = CsvSchema.decode(schema.encode());
+
+        assertEquals(schema.encode(), copy.encode());
+        assertTrue(copy.isSplitAmount());
+        assertNull(CsvSchema.decode("0|44|0|1|2|-1|-1|0|0|"));
+        assertNull(CsvSchema.decode("1|44|x"));
+    }
+
+    @Test
+    public void signatureIgnoresCaseAndSpacing() {
+        String signature = CsvSchema.signature(',', Arrays.asList("Date", "Description", "Amount"));
+        assertEquals(signature, CsvSchema.signature(',', Arrays.asList(" date", "DESCRIPTION ", "amount")));
+        assertNotEquals(signature, CsvSchema.signature(';', Arrays.asList("Date", "Description", "Amount")));
+        assertNotEquals(signature, CsvSchema.signature(',', Arrays.asList("Date", "Amount", "Description")));
+    }
+
+    // Detection runs once per bank; later imports read by index
+    @Test
+    public void boundSchemaReadsByIndex() throws IOException {
+        Csv csv = sampleExport();
+        CsvSchema schema = CsvSchema.decode(csv.detect().encode());
+        long total = 0;
+        for (CSVRecord record : csv.rows) {
+            total += schema.getCents(record);
+        }
+        assertEquals(-1250L * CsvSchemaDetector.SAMPLE_ROWS, total);
+    }
+
+    @Test
+    public void benchmarkDetectionAgainstBoundSchema() throws IOException {
+        Benchmarks.assumeEnabled();
+        Csv csv = sampleExport();
+
+        int iterations = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertNotNull(csv.detect());
+        }
+        long detectMicros = (System.nanoTime() - start) / 1_000 / iterations;
+
+        CsvSchema schema = CsvSchema.decode(csv.detect().encode());
+        start = System.nanoTime();
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (CSVRecord record : csv.rows) {
+                total += schema.getCents(record);
+            }
+        }
+        long boundMicros = (System.nanoTime() - start) / 1_000 / iterations;
+
+        Benchmarks.report("Schema detection %d us per file, bound amount reads %d us per %d rows (total %d)",
+                detectMicros, boundMicros, CsvSchemaDetector.SAMPLE_ROWS, total);
+    }
+
+    private static Csv sampleExport() throws IOException {
+        StringBuilder text = new StringBuilder("Transaction Date,Post Date,Description,Category,Type,Amount\n");
+        for (int i = 0; i < CsvSchemaDetector.SAMPLE_ROWS; i++) {
+            text.append("01/15/2024,01/16/2024,MERCHANT ").append(i).append(",Shopping,Sale,-12.50\n");
+        }
+        return new Csv(text.toString());
+    }
+
+    private static class Csv {
+        final char delimiter;
+        final List<String> headers;
+        final List<CSVRecord> rows = new ArrayList<>();
+
+        Csv(String text) throws IOException {
+            String headerLine = text.substring(0, text.indexOf('\n'));
+            delimiter = CsvSchemaDetector.sniffDelimiter(headerLine);
+            CSVFormat format = CSVFormat.DEFAULT.withDelimiter(delimiter);
+            headers = CSVParser.parse(headerLine, format).iterator().next().toList();
+            for (CSVRecord record : CSVParser.parse(text.substring(headerLine.length() + 1), format)) {
+                rows.add(record);
+            }
+        }
+
+        CsvSchema detect() {
+            return CsvSchemaDetector.detect(delimiter, headers, rows);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FormatSnifferTest {
+
+    @Test
+    public void recognizesPdfHeaders() {
+        assertEquals(FormatSniffer.Format.PDF, sniff("%PDF-1.7\n%\u00e2\u00e3\u00cf\u00d3\n1 0 obj\n"));
+        // Some generators put a few bytes of junk in front
+        assertEquals(FormatSniffer.Format.PDF, sniff("\r\n\u0000\u0000%PDF-1.4\n"));
+        assertEquals(FormatSniffer.Format.UNKNOWN, sniff("%PDX-1.4\n\u0000\u0001\u0002\u0003"));
+    }
+
+    @Test
+    public void recognizesSpreadsheetContainers() {
+        byte[] zip = {'P', 'K', 3, 4, 20, 0, 6, 0, 8, 0};
+        byte[] ole = {(byte) 0xd0, (byte) 0xcf, 0x11, (byte) 0xe0, (byte) 0xa1, (byte) 0xb1, 0x1a, (byte) 0xe1};
+        assertEquals(FormatSniffer.Format.ZIP, FormatSniffer.sniff(zip, zip.length));
+        assertEquals(FormatSniffer.Format.OLE2, FormatSniffer.sniff(ole, ole.length));
+    }
+
+    @Test
+    public void recognizesOfx() {
+        assertEquals(FormatSniffer.Format.OFX, sniff("\r\nOFXHEADER:100\r\nDATA:OFXSGML\r\n\r\n<OFX>\r\n"));
+        assertEquals(FormatSniffer.Format.OFX, sniff("<?xml version=\"1.0\"?>\n<?OFX OFXHEADER=\"200\"?>\n<OFX>"));
+        assertEquals(FormatSniffer.Format.OFX, sniff("<ofx><signonmsgsrsv1>"));
+    }
+
+    @Test
+    public void recognizesDelimitedText() {
+        assertEquals(FormatSniffer.Format.CSV, sniff("Date,Description,Amount\n01/15/2024,\"Coffee, large\",-4.75\n"));
+        assertEquals(FormatSniffer.Format.CSV, sniff("Buchungstag;Verwendungszweck;Betrag\r\n15.01.2024;Miete;-950,00\r\n"));
+        assertEquals(FormatSniffer.Format.CSV, sniff("Date\tDescription\tAmount\n"));
+
+        byte[] utf16 = "\uFEFFDate,Description,Amount\n01/15/2024,Coffee,-4.75\n".getBytes(StandardCharsets.UTF_16LE);
+        assertEquals(FormatSniffer.Format.CSV, FormatSniffer.sniff(utf16, utf16.length));
+    }
+
+    @Test
+    public void rejectsEverythingElse() {
+        assertEquals(FormatSniffer.Format.UNKNOWN, sniff(""));
+        assertEquals(FormatSniffer.Format.UNKNOWN, sniff("Dear customer\nYour statement is attached\n"));
+        // A single comma in the first line of prose is not a table
+        assertEquals(FormatSniffer.Format.UNKNOWN,
+                sniff("Hello, world\nthis is a note\nwith several lines\nand no columns\n"));
+
+        byte[] jpeg = new byte[FormatSniffer.HEAD_SIZE];
+        new Random(1).nextBytes(jpeg);
+        jpeg[0] = (byte) 0xff;
+        jpeg[1] = (byte) 0xd8;
+        jpeg[2] = (byte) 0xff;
+        assertEquals(FormatSniffer.Format.UNKNOWN, FormatSniffer.sniff(jpeg, jpeg.length));
+    }
+
+    @Test
+    public void readsOnlyTheHead() throws IOException {
+        byte[] file = new byte[1024 * 1024];
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, file, 0, header.length);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(file);
+
+        assertEquals(FormatSniffer.Format.PDF, FormatSniffer.sniff(inputStream));
+        assertEquals(file.length - FormatSniffer.HEAD_SIZE, inputStream.available());
+    }
+
+    @Test
+    public void rejectsImages() {
+        assertEquals(FormatSniffer.Format.UNKNOWN, FormatSniffer.sniff(png(), FormatSniffer.HEAD_SIZE));
+    }
+
+    @Test
+    public void benchmarkBinaryRejection() {
+        Benchmarks.assumeEnabled();
+        byte[] png = png();
+        int iterations = 20_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertEquals(FormatSniffer.Format.UNKNOWN, FormatSniffer.sniff(png, png.length));
+        }
+        long nanos = (System.nanoTime() - start) / iterations;
+        Benchmarks.report("Rejected a %d-byte binary head in %.2f us", png.length, nanos / 1_000.0);
+    }
+
+    private static byte[] png() {
+        byte[] png = new byte[FormatSniffer.HEAD_SIZE];
+        new Random(2).nextBytes(png);
+        png[0] = (byte) 0x89;
+        png[1] = 'P';
+        png[2] = 'N';
+        png[3] = 'G';
+        return png;
+    }
+
+    // Latin-1 keeps each char as one byte, so escapes above map to the exact bytes
+    private static FormatSniffer.Format sniff(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return FormatSniffer.sniff(bytes, bytes.length);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+import com.example.statementanalyzer.utils.CurrencyUtils;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OfxStatementReaderTest {
+
+    private static final String SGML = "OFXHEADER:100\nDATA:OFXSGML\nVERSION:102\nSECURITY:NONE\n"
+            + "ENCODING:USASCII\nCHARSET:1252\nCOMPRESSION:NONE\nOLDFILEUID:NONE\nNEWFILEUID:NONE\n\n"
+            + "<OFX>\n<SIGNONMSGSRSV1><SONRS><STATUS><CODE>0<SEVERITY>INFO</STATUS>"
+            + "<DTSERVER>20240201120000<LANGUAGE>ENG</SONRS></SIGNONMSGSRSV1>\n"
+            + "<BANKMSGSRSV1><STMTTRNRS><TRNUID>1<STMTRS><CURDEF>USD\n"
+            + "<BANKTRANLIST>\n<DTSTART>20240101\n<DTEND>20240131235959.000[-5:EST]\n"
+            + "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20240115120000[-5:EST]\n<TRNAMT>-4.75\n"
+            + "<FITID>2024011501\n<NAME>STARBUCKS STORE 123\n<MEMO>CARD 1234\n</STMTTRN>\n"
+            + "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20240116\n<TRNAMT>2500.00\n"
+            + "<FITID>2024011601\n<NAME>ACME PAYROLL\n</STMTTRN>\n"
+            + "</BANKTRANLIST>\n<LEDGERBAL><BALAMT>2495.25<DTASOF>20240131</LEDGERBAL>\n"
+            + "</STMTRS></STMTTRNRS></BANKMSGSRSV1>\n</OFX>\n";
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<?OFX OFXHEADER=\"200\" VERSION=\"211\" SECURITY=\"NONE\"?>\n"
+            + "<OFX><CREDITCARDMSGSRSV1><CCSTMTTRNRS><CCSTMTRS>\n"
+            + "  <!-- exported by Online Banking -->\n"
+            + "  <BANKTRANLIST><DTSTART>20240301</DTSTART><DTEND>20240331</DTEND>\n"
+            + "    <STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20240305</DTPOSTED>"
+            + "<TRNAMT>-82.13</TRNAMT><NAME>Barnes &amp; Noble</NAME></STMTTRN>\n"
+            + "    <STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20240306</DTPOSTED>"
+            + "<TRNAMT>-15.49</TRNAMT><NAME></NAME><MEMO>NETFLIX.COM</MEMO></STMTTRN>\n"
+            + "    <STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>2024-03-07</DTPOSTED>"
+            + "<TRNAMT>-1.00</TRNAMT><NAME>BAD DATE</NAME></STMTTRN>\n"
+            + "  </BANKTRANLIST>\n</CCSTMTRS></CCSTMTTRNRS></CREDITCARDMSGSRSV1></OFX>\n";
+
+    @Test
+    public void readsSgmlWithUnclosedLeafElements() throws IOException {
+        Recorder recorder = new Recorder();
+        assertEquals(2, new OfxStatementReader().read(new StringReader(SGML), recorder));
+
+        assertEquals(2, recorder.rows.size());
+        assertEquals(DateUtils.toEpochDay(2024, 1, 15) + " -475 STARBUCKS STORE 123", recorder.rows.get(0));
+        assertEquals(DateUtils.toEpochDay(2024, 1, 16) + " 250000 ACME PAYROLL", recorder.rows.get(1));
+        assertEquals(DateUtils.toEpochDay(2024, 1, 1), recorder.periodStart);
+        assertEquals(DateUtils.toEpochDay(2024, 1, 31), recorder.periodEnd);
+    }
+
+    @Test
+    public void readsXmlAndSkipsBadRecords() throws IOException {
+        Recorder recorder = new Recorder();
+        assertEquals(2, new OfxStatementReader().read(new StringReader(XML), recorder));
+
+        assertEquals(DateUtils.toEpochDay(2024, 3, 5) + " -8213 Barnes & Noble", recorder.rows.get(0));
+        // An empty NAME falls back to MEMO
+        assertEquals(DateUtils.toEpochDay(2024, 3, 6) + " -1549 NETFLIX.COM", recorder.rows.get(1));
+        assertEquals(DateUtils.toEpochDay(2024, 3, 1), recorder.periodStart);
+    }
+
+    @Test
+    public void listenerCanStopTheRead() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        int[] rows = new int[1];
+        try {
+            new OfxStatementReader().read(new GeneratedReader(1_000_000, true), (epochDay, cents, description) -> {
+                cancellation.throwIfCancelled();
+                if (++rows[0] == 5_000) {
+                    cancellation.cancel();
+                }
+            });
+            fail("read should have been cancelled");
+        } catch (InterruptedIOException expected) {
+            assertEquals(5_000, rows[0]);
+        }
+    }
+
+    @Test
+    public void parsesOfxDates() {
+        assertEquals(DateUtils.toEpochDay(2024, 2, 29), OfxStatementReader.parseDate("20240229"));
+        assertEquals(DateUtils.toEpochDay(2024, 2, 29), OfxStatementReader.parseDate("20240229235959.999[-5:EST]"));
+        assertEquals(DateUtils.toEpochDay(2024, 2, 29), OfxStatementReader.parseDate("20240229[0:GMT]"));
+        assertEquals(StatementDateParser.INVALID, OfxStatementReader.parseDate("20230229"));
+        assertEquals(StatementDateParser.INVALID, OfxStatementReader.parseDate("2024-02-29"));
+        assertEquals(StatementDateParser.INVALID, OfxStatementReader.parseDate("202402"));
+    }
+
+    @Test
+    public void streamsLargeFiles() throws IOException {
+        // The OFX text is generated as it is read, so nothing holds the whole file
+        int rows = 200_000;
+        int[] count = new int[1];
+        long[] total = new long[1];
+        new OfxStatementReader().read(new GeneratedReader(rows, true), (epochDay, cents, description) -> {
+            count[0]++;
+            total[0] += cents;
+        });
+        assertEquals(rows, count[0]);
+        assertEquals(-475L * rows, total[0]);
+    }
+
+    @Test
+    public void benchmarkAgainstCsvPath() throws IOException {
+        Benchmarks.assumeEnabled();
+        int rows = 200_000;
+        Runtime runtime = Runtime.getRuntime();
+
+        // The OFX text is generated as it is read, so only the reader's own buffers are live
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        int[] count = new int[1];
+        long[] total = new long[1];
+        long start = System.nanoTime();
+        new OfxStatementReader().read(new GeneratedReader(rows, true), (epochDay, cents, description) -> {
+            count[0]++;
+            total[0] += cents;
+        });
+        long ofxNanos = System.nanoTime() - start;
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        assertEquals(rows, count[0]);
+        assertEquals(-475L * rows, total[0]);
+
+        // Same rows through the CSV path's per-record work
+        int csvCount = 0;
+        start = System.nanoTime();
+        StatementDateParser dateParser = new StatementDateParser();
+        CSVParser csvParser = new CSVParser(new GeneratedReader(rows, false), CSVFormat.DEFAULT.withFirstRecordAsHeader());
+        for (CSVRecord record : csvParser) {
+            if (dateParser.parse(record.get(0)) != null
+                    && CurrencyUtils.parseCents(record.get(2)) != CurrencyUtils.INVALID) {
+                csvCount++;
+            }
+        }
+        long csvNanos = System.nanoTime() - start;
+        assertEquals(rows, csvCount);
+
+        Benchmarks.report("%,d rows: OFX %,d rows/s, CSV %,d rows/s, heap growth during OFX read %,d KB",
+                rows, rows * 1_000_000_000L / Math.max(1, ofxNanos), rows * 1_000_000_000L / Math.max(1, csvNanos),
+                Math.max(0, usedAfter - usedBefore) / 1024);
+    }
+
+    private static class Recorder implements OfxStatementReader.Listener {
+        final List<String> rows = new ArrayList<>();
+        int periodStart = StatementDateParser.INVALID;
+        int periodEnd = StatementDateParser.INVALID;
+
+        @Override
+        public void onTransaction(int epochDay, long cents, String description) {
+            rows.add(epochDay + " " + cents + " " + description);
+        }
+
+        @Override
+        public void onStatementPeriod(int startEpochDay, int endEpochDay) {
+            periodStart = startEpochDay;
+            periodEnd = endEpochDay;
+        }
+    }
+
+    // Produces an SGML OFX statement or the equivalent CSV one row at a time
+    private static class GeneratedReader extends Reader {
+        private final int rows;
+        private final boolean ofx;
+        private int row = -1;
+        private String chunk;
+        private int offset;
+
+        GeneratedReader(int rows, boolean ofx) {
+            this.rows = rows;
+            this.ofx = ofx;
+            this.chunk = ofx ? "OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n"
+                    : "Date,Description,Amount\n";
+        }
+
+        @Override
+        public int read(char[] buffer, int off, int len) {
+            if (offset == chunk.length()) {
+                row++;
+                if (row > rows) {
+                    return -1;
+                }
+                int day = 1 + row % 28;
+                if (row == rows) {
+                    chunk = ofx ? "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n" : "";
+                } else if (ofx) {
+                    chunk = "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>202401" + (day < 10 ? "0" : "") + day
+                            + "120000[-5:EST]\n<TRNAMT>-4.75\n<FITID>" + row + "\n<NAME>CARD PURCHASE MERCHANT " + row
+                            + "\n<MEMO>REF " + row + "\n</STMTTRN>\n";
+                } else {
+                    chunk = "01/" + day + "/2024,CARD PURCHASE MERCHANT " + row + ",-4.75\n";
+                }
+                offset = 0;
+                if (chunk.isEmpty()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, chunk.length() - offset);
+            chunk.getChars(offset, offset + n, buffer, off);
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
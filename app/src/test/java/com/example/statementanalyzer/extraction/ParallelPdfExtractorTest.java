@@ -0,0 +1,122 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+import com.example.statementanalyzer.model.Transaction;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelPdfExtractorTest {
+
+    private static final int PAGES = 96;
+    private static final int LINES_PER_PAGE = 40;
+
+    private static File pdfFile;
+
+    // Tags each text line with its page so the merge order can be checked
+    private static final ParallelPdfExtractor.PageHandler LINE_HANDLER = (pageNumber, pageCount, pageText, sink) -> {
+        for (String line : pageText.split("\\r?\\n")) {
+            if (line.startsWith("Row")) {
+                sink.onTransaction(new Transaction(null, pageNumber + ":" + line.trim(), -1.0, "Test"));
+            }
+        }
+    };
+
+    @BeforeClass
+    public static void createPdf() throws IOException {
+        pdfFile = File.createTempFile("parallel", ".pdf");
+
+        try (PDDocument document = new PDDocument()) {
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage();
+                document.addPage(pdPage);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    content.setLeading(11f);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 0; line < LINES_PER_PAGE; line++) {
+                        content.showText("Row " + line + " 01/15/2024 COFFEE SHOP PURCHASE 12.50");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdfFile);
+        }
+    }
+
+    @AfterClass
+    public static void deletePdf() {
+        pdfFile.delete();
+    }
+
+    @Test
+    public void parallelResultMatchesSequentialInPageOrder() throws IOException {
+        List<Transaction> sequential = new ParallelPdfExtractor(1).extract(pdfFile, LINE_HANDLER);
+        List<Transaction> parallel = new ParallelPdfExtractor(4).extract(pdfFile, LINE_HANDLER);
+
+        assertEquals(PAGES * LINES_PER_PAGE, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getDescription(), parallel.get(i).getDescription());
+        }
+        assertTrue(parallel.get(0).getDescription().startsWith("1:Row 0"));
+        assertTrue(parallel.get(parallel.size() - 1).getDescription().startsWith(PAGES + ":Row"));
+    }
+
+    @Test
+    public void cancellationStopsEveryWorkerWithinAPage() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        ParseProgress progress = new ParseProgress(ParseListener.NONE, cancellation);
+        AtomicInteger pagesSeen = new AtomicInteger();
+
+        try {
+            new ParallelPdfExtractor(4).extract(pdfFile, (pageNumber, pageCount, pageText, sink) -> {
+                progress.throwIfCancelled();
+                if (pagesSeen.incrementAndGet() == 10) {
+                    cancellation.cancel();
+                }
+            });
+            fail("extract should have been cancelled");
+        } catch (InterruptedIOException expected) {
+            // Each of the 4 workers may finish the page it was on when the token flipped
+            assertTrue("pages after cancel: " + pagesSeen.get(), pagesSeen.get() <= 10 + 4);
+        }
+    }
+
+    // Prints the speedup per worker count
+    @Test
+    public void benchmarkSpeedupUpToCoreCount() throws IOException {
+        Benchmarks.assumeEnabled();
+        int cores = Runtime.getRuntime().availableProcessors();
+        new ParallelPdfExtractor(cores).extract(pdfFile, LINE_HANDLER); // warm-up
+
+        long baseline = 0;
+        for (int workers = 1; workers <= cores; workers *= 2) {
+            long start = System.nanoTime();
+            new ParallelPdfExtractor(workers).extract(pdfFile, LINE_HANDLER);
+            long elapsed = System.nanoTime() - start;
+
+            if (workers == 1) {
+                baseline = elapsed;
+            }
+            Benchmarks.report("workers=%d time=%dms speedup=%.2fx",
+                    workers, elapsed / 1_000_000, (double) baseline / elapsed);
+        }
+    }
+}
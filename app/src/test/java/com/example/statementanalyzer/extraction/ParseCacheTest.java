@@ -0,0 +1,170 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.model.FinancialData;
+import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.model.TransactionTable;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParseCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsStatementsExactly() throws IOException {
+        FinancialData original = statement(5_000);
+        ParseCache cache = new ParseCache(folder.newFolder("cache"), 16L * 1024L * 1024L);
+        cache.put("key", Collections.singletonList(original));
+        List<FinancialData> cached = cache.get("key");
+
+        assertEquals(1, cached.size());
+        FinancialData copy = cached.get(0);
+        assertEquals(original.getStartDate(), copy.getStartDate());
+        assertEquals(original.getEndDate(), copy.getEndDate());
+        assertEquals(original.getTotalIncome(), copy.getTotalIncome(), 0.0);
+        assertEquals(original.getTotalExpenses(), copy.getTotalExpenses(), 0.0);
+        assertEquals(original.getCategoryTotals(), copy.getCategoryTotals());
+
+        TransactionTable expected = original.getTransactionTable();
+        TransactionTable actual = copy.getTransactionTable();
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochDay(row), actual.getEpochDay(row));
+            assertEquals(expected.getCents(row), actual.getCents(row));
+            assertEquals(expected.getDescription(row), actual.getDescription(row));
+            assertEquals(expected.getCategory(row), actual.getCategory(row));
+        }
+    }
+
+    @Test
+    public void keyDependsOnNamespaceAndContent() throws IOException {
+        String a = ParseCache.computeKey(stream("statement"), "parser-1");
+        assertEquals(a, ParseCache.computeKey(stream("statement"), "parser-1"));
+        assertNotEquals(a, ParseCache.computeKey(stream("statement"), "parser-2"));
+        assertNotEquals(a, ParseCache.computeKey(stream("statement!"), "parser-1"));
+        assertEquals(64, a.length());
+    }
+
+    @Test
+    public void hashingStopsOnceCancelled() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        int[] reads = {0};
+        InputStream large = new ByteArrayInputStream(new byte[16 * 1024 * 1024]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                // Cancelled while the first buffer is being read
+                if (++reads[0] == 1) {
+                    cancellation.cancel();
+                }
+                return super.read(b, off, len);
+            }
+        };
+
+        try {
+            ParseCache.computeKey(large, "parser-1", cancellation);
+            fail("Expected the cancelled hash to stop");
+        } catch (InterruptedIOException expected) {
+            assertEquals(1, reads[0]);
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFirst() throws IOException {
+        List<FinancialData> data = Collections.singletonList(statement(200));
+        ParseCache probe = new ParseCache(folder.newFolder("probe"), Long.MAX_VALUE);
+        probe.put("probe", data);
+        long entryBytes = probe.sizeInBytes();
+
+        // Room for two entries
+        ParseCache cache = new ParseCache(folder.newFolder("lru"), entryBytes * 2);
+        cache.put("a", data);
+        cache.put("b", data);
+        assertNotNull(cache.get("a"));
+        cache.put("c", data);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.sizeInBytes() <= entryBytes * 2);
+    }
+
+    @Test
+    public void leavesTheCallersTransactionListAlone() throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction(DateUtils.toDate(19700), "COFFEE", -4.75, "Dining"));
+        FinancialData data = new FinancialData();
+        data.setTransactions(transactions);
+
+        ParseCache cache = new ParseCache(folder.newFolder("list"), Long.MAX_VALUE);
+        cache.put("key", Collections.singletonList(data));
+
+        assertSame(transactions, data.getTransactions());
+        assertEquals(1, cache.get("key").get(0).getTransactionTable().size());
+    }
+
+    @Test
+    public void rejectsCountsLargerThanTheEntry() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParseCache.write(new DataOutputStream(bytes), Collections.emptyList());
+        byte[] header = bytes.toByteArray();
+
+        // Same header, but claiming a million statements in a few bytes
+        ByteArrayOutputStream corrupt = new ByteArrayOutputStream();
+        corrupt.write(header, 0, header.length - 1);
+        for (long zigZag = 2_000_000; ; zigZag >>>= 7) {
+            if (zigZag < 0x80) {
+                corrupt.write((int) zigZag);
+                break;
+            }
+            corrupt.write((int) (zigZag & 0x7F) | 0x80);
+        }
+
+        try {
+            ParseCache.read(new DataInputStream(new ByteArrayInputStream(corrupt.toByteArray())), corrupt.size());
+            fail("Expected a corrupt entry");
+        } catch (IOException expected) {
+            // get() drops the entry and parses the document again
+        }
+    }
+
+    private static FinancialData statement(int rows) {
+        String[] categories = {"Groceries", "Dining", "Income", null};
+        TransactionTable table = new TransactionTable(rows);
+        for (int i = 0; i < rows; i++) {
+            int day = i % 50 == 0 ? TransactionTable.NO_DATE : 19700 + i / 3;
+            long cents = i % 7 == 0 ? 250_000 : -(i * 37L % 100_000);
+            table.add(day, cents, i % 11 == 0 ? null : "MERCHANT " + (i % 97), categories[i % categories.length]);
+        }
+
+        FinancialData data = new FinancialData();
+        data.setStartDate(DateUtils.toDate(19700));
+        data.setEndDate(DateUtils.toDate(19700 + rows / 3));
+        data.setTransactionTable(table);
+        data.setCategoryCents(table.sumByCategory());
+        data.setTotalIncome(12.34);
+        data.setTotalExpenses(-56.78);
+        return data;
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.model.Transaction;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class PdfMemoryPolicyTest {
+
+    private static final int PAGES = 200;
+    private static final int ROWS_PER_PAGE = 20;
+
+    // 1024x1024 8-bit grey image per page, like a scanned statement
+    private static final int IMAGE_SIDE = 1024;
+    private static final long PDF_BYTES = (long) PAGES * IMAGE_SIDE * IMAGE_SIDE;
+
+    private static File pdfFile;
+    private static File scratchDir;
+
+    @BeforeClass
+    public static void createLargePdf() throws IOException {
+        pdfFile = File.createTempFile("large", ".pdf");
+        scratchDir = new File(pdfFile.getParentFile(), "pdf-scratch-" + System.nanoTime());
+        assertTrue(scratchDir.mkdirs());
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pdfFile), 64 * 1024)) {
+            new ScannedPdfWriter(out).write();
+        }
+    }
+
+    @AfterClass
+    public static void deleteLargePdf() {
+        pdfFile.delete();
+        File[] leftovers = scratchDir.listFiles();
+        if (leftovers != null) {
+            for (File file : leftovers) {
+                file.delete();
+            }
+        }
+        scratchDir.delete();
+    }
+
+    @Test
+    public void tempFileOnlyParsesDocumentLargerThanHeap() throws IOException {
+        // Only meaningful when the test JVM runs with a heap smaller than the file (see testOptions in app/build.gradle.kts)
+        assumeTrue(Runtime.getRuntime().maxMemory() < PDF_BYTES);
+        assertTrue(pdfFile.length() > PDF_BYTES);
+
+        MemoryUsageSetting setting = PdfMemoryPolicy.tempFileOnly().toMemoryUsageSetting(scratchDir);
+        List<Transaction> transactions = new ParallelPdfExtractor(1).extract(pdfFile, setting,
+                (pageNumber, pageCount, pageText, sink) -> {
+                    for (String line : pageText.split("\\r?\\n")) {
+                        if (line.startsWith("01/15/2024")) {
+                            sink.onTransaction(new Transaction(null, line, -12.5, "Test"));
+                        }
+                    }
+                });
+
+        assertEquals(PAGES * ROWS_PER_PAGE, transactions.size());
+    }
+
+    @Test
+    public void mixedPolicyRequiresPositiveCap() {
+        assertEquals(PdfMemoryPolicy.Mode.MIXED, PdfMemoryPolicy.mixed(1024).getMode());
+        try {
+            PdfMemoryPolicy.mixed(0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void sharedBudgetIsSplitBetweenOpenDocuments() {
+        long megabyte = 1024L * 1024L;
+        assertEquals(3 * megabyte, PdfMemoryPolicy.mixedShared(24 * megabyte, 8).getMaxMainMemoryBytes());
+        assertEquals(24 * megabyte, PdfMemoryPolicy.mixedShared(24 * megabyte, 0).getMaxMainMemoryBytes());
+        // A tiny share would turn every page into disk reads
+        assertEquals(megabyte, PdfMemoryPolicy.mixedShared(4 * megabyte, 64).getMaxMainMemoryBytes());
+    }
+
+    // Writes the PDF syntax by hand so the fixture itself never needs the file in memory
+    private static class ScannedPdfWriter {
+        private final OutputStream out;
+        private final long[] offsets;
+        private long position;
+
+        ScannedPdfWriter(OutputStream out) {
+            this.out = out;
+            // catalog, pages, font, then (page, content, image) per page
+            this.offsets = new long[3 + PAGES * 3 + 1];
+        }
+
+        void write() throws IOException {
+            print("%PDF-1.4\n");
+
+            beginObject(1);
+            print("<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+
+            beginObject(2);
+            StringBuilder kids = new StringBuilder();
+            for (int page = 0; page < PAGES; page++) {
+                kids.append(pageObject(page)).append(" 0 R ");
+            }
+            print("<< /Type /Pages /Count " + PAGES + " /Kids [" + kids + "] >>\nendobj\n");
+
+            beginObject(3);
+            print("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>\nendobj\n");
+
+            byte[] imageRow = new byte[IMAGE_SIDE];
+            for (int page = 0; page < PAGES; page++) {
+                int pageObject = pageObject(page);
+
+                beginObject(pageObject);
+                print("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 612 792] /Contents " + (pageObject + 1)
+                        + " 0 R /Resources << /Font << /F1 3 0 R >> /XObject << /Im1 " + (pageObject + 2)
+                        + " 0 R >> >> >>\nendobj\n");
+
+                StringBuilder content = new StringBuilder("q 200 0 0 200 380 560 cm /Im1 Do Q\n");
+                content.append("BT /F1 9 Tf 11 TL 40 750 Td\n");
+                for (int row = 0; row < ROWS_PER_PAGE; row++) {
+                    content.append("(01/15/2024 COFFEE SHOP PAGE ").append(page + 1)
+                            .append(" ROW ").append(row).append(" -12.50) Tj T*\n");
+                }
+                content.append("ET\n");
+                byte[] contentBytes = content.toString().getBytes(StandardCharsets.US_ASCII);
+
+                beginObject(pageObject + 1);
+                print("<< /Length " + contentBytes.length + " >>\nstream\n");
+                write(contentBytes, contentBytes.length);
+                print("\nendstream\nendobj\n");
+
+                beginObject(pageObject + 2);
+                print("<< /Type /XObject /Subtype /Image /Width " + IMAGE_SIDE + " /Height " + IMAGE_SIDE
+                        + " /ColorSpace /DeviceGray /BitsPerComponent 8 /Length "
+                        + (IMAGE_SIDE * IMAGE_SIDE) + " >>\nstream\n");
+                for (int y = 0; y < IMAGE_SIDE; y++) {
+                    write(imageRow, imageRow.length);
+                }
+                print("\nendstream\nendobj\n");
+            }
+
+            long xrefOffset = position;
+            print("xref\n0 " + offsets.length + "\n0000000000 65535 f \n");
+            for (int object = 1; object < offsets.length; object++) {
+                print(String.format("%010d 00000 n \n", offsets[object]));
+            }
+            print("trailer\n<< /Size " + offsets.length + " /Root 1 0 R >>\nstartxref\n"
+                    + xrefOffset + "\n%%EOF\n");
+        }
+
+        private static int pageObject(int page) {
+            return 4 + page * 3;
+        }
+
+        private void beginObject(int number) throws IOException {
+            offsets[number] = position;
+            print(number + " 0 obj\n");
+        }
+
+        private void print(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            write(bytes, bytes.length);
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class StatementDateParserTest {
+
+    @Test
+    public void matchesSimpleDateFormatForEachLayout() throws ParseException {
+        assertSameDay("MM/dd/yyyy", "01/15/2024");
+        assertSameDay("MM/dd/yyyy", "2/29/2024");
+        assertSameDay("MM-dd-yyyy", "12-31-2023");
+        assertSameDay("yyyy-MM-dd", "2024-03-01");
+        assertSameDay("MMM dd, yyyy", "Jan 05, 2024");
+        assertSameDay("MMM dd, yyyy", "September 30, 2023");
+    }
+
+    @Test
+    public void rejectsMalformedDatesWithoutThrowing() {
+        StatementDateParser parser = new StatementDateParser();
+
+        assertNull(parser.parse("13/01/2024"));
+        assertNull(parser.parse("02/30/2024"));
+        assertNull(parser.parse("2024/01/15"));
+        assertNull(parser.parse("Jan 152024"));
+        assertNull(parser.parse("Description"));
+        assertNull(parser.parse(""));
+        assertEquals(StatementDateParser.INVALID, parser.parseEpochDay("1/1/20245", 0, 9));
+    }
+
+    @Test
+    public void isoDatesWithTrailingTimeParse() {
+        StatementDateParser parser = new StatementDateParser();
+        assertEquals(DateUtils.toEpochDay(2024, 1, 15), parser.parseEpochDay("2024-01-15T10:30:00", 0, 19));
+    }
+
+    @Test
+    public void locksOntoDocumentLayoutAndStillFallsBack() {
+        StatementDateParser parser = new StatementDateParser();
+        for (int day = 1; day <= 5; day++) {
+            assertNotNull(parser.parse("2024-01-0" + day));
+        }
+        assertEquals(StatementDateParser.Layout.YEAR_MONTH_DAY_DASH, parser.getLockedLayout());
+
+        // A stray row in another layout is still understood
+        assertEquals(DateUtils.toEpochDay(2024, 2, 3), parser.parseEpochDay("02/03/2024", 0, 10));
+        assertEquals(StatementDateParser.Layout.YEAR_MONTH_DAY_DASH, parser.getLockedLayout());
+    }
+
+    @Test
+    public void epochDayRoundTrip() {
+        assertEquals(0, DateUtils.toEpochDay(1970, 1, 1));
+        assertEquals(19737, DateUtils.toEpochDay(2024, 1, 15));
+        assertEquals(-1, DateUtils.toEpochDay(1969, 12, 31));
+        for (int epochDay = -1000; epochDay < 30000; epochDay += 37) {
+            assertEquals(epochDay, DateUtils.toEpochDay(DateUtils.toDate(epochDay)));
+        }
+    }
+
+    private static void assertSameDay(String pattern, String text) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        assertEquals(text, format.parse(text), new StatementDateParser().parse(text));
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+import com.example.statementanalyzer.model.Transaction;
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TemplateRegistryTest {
+
+    // The generic fallback's original regex, used as the throughput baseline
+    private static final Pattern GENERIC_PATTERN = Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})\\s+([\\w\\s&.,'\\-]+)\\s+([\\-+]?\\$?\\d+,?\\d+\\.\\d{2})");
+
+    private static final String CHASE_HEADER = "JPMorgan Chase Bank, N.A.\nP O Box 182051\nwww.chase.com\n"
+            + "Statement Period: Dec 15, 2023 to Jan 14, 2024\n"
+            + "TRANSACTION DETAIL\nDATE DESCRIPTION AMOUNT BALANCE\n"
+            + "Beginning Balance $1,000.00\n";
+
+    private static final String BOFA_HEADER = "Bank of America, N.A.\nYour Adv Plus Banking\n"
+            + "Date Description Amount\n";
+
+    private static final String WELLS_HEADER = "Wells Fargo Everyday Checking\nTransaction history\n"
+            + "Date Check Number Description Deposits/ Additions Withdrawals/ Subtractions Ending daily balance\n";
+
+    private static final String[][] SAMPLES = {
+            {CHASE_HEADER, "01/%02d Card Purchase With Pin Merchant Number %d Store 4.75 %d.00\n"},
+            {BOFA_HEADER, "01/%02d/24 CHECKCARD 0114 MERCHANT NUMBER %d STORE -4.75 %d.00\n"},
+            {WELLS_HEADER, "1/%d Purchase Authorized On 01/02 Merchant %d 4.75 %d.00\n"},
+    };
+
+    private static final StatementLineParser.Categorizer CATEGORIZER =
+            (description, amount) -> amount > 0 ? "Income" : "Miscellaneous";
+
+    @Test
+    public void fingerprintsIssuerFromFirstPage() {
+        TemplateRegistry registry = TemplateRegistry.withDefaults();
+
+        assertEquals("Chase", registry.match(CHASE_HEADER).getName());
+        assertEquals("Bank of America", registry.match(BOFA_HEADER).getName());
+        assertEquals("Wells Fargo", registry.match(WELLS_HEADER).getName());
+        assertNull(registry.match("Credit Union of Somewhere\nDate Description Amount\n"));
+        // An issuer name alone, without its table headers, is not enough
+        assertNull(registry.match("Paid to Bank of America\n"));
+
+        assertEquals("Chase", registry.match(chaseFirstPage()).getName());
+    }
+
+    @Test
+    public void benchmarkFingerprint() {
+        Benchmarks.assumeEnabled();
+        TemplateRegistry registry = TemplateRegistry.withDefaults();
+        String firstPage = chaseFirstPage();
+        int iterations = 2_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertNotNull(registry.match(firstPage));
+        }
+        long micros = (System.nanoTime() - start) / 1_000 / iterations;
+        Benchmarks.report("Fingerprint of a %d-char first page: %d us", firstPage.length(), micros);
+    }
+
+    private static String chaseFirstPage() {
+        StringBuilder page = new StringBuilder(CHASE_HEADER);
+        for (int i = 0; i < 200; i++) {
+            page.append("01/02 Card Purchase Merchant ").append(i).append(" 12.34 987.66\n");
+        }
+        return page.toString();
+    }
+
+    @Test
+    public void templatesFindTheirOwnPeriodLine() {
+        TemplateRegistry registry = TemplateRegistry.withDefaults();
+        StatementDateParser dateParser = new StatementDateParser();
+
+        String chase = "JPMorgan Chase Bank, N.A.\nDecember 15, 2023 through January 14, 2024\n"
+                + "TRANSACTION DETAIL\nDATE DESCRIPTION AMOUNT BALANCE\n";
+        String[] period = registry.match(chase).findPeriod(chase);
+        assertEquals(DateUtils.toEpochDay(2023, 12, 15), dateParser.parseEpochDay(period[0], 0, period[0].length()));
+        assertEquals(DateUtils.toEpochDay(2024, 1, 14), dateParser.parseEpochDay(period[1], 0, period[1].length()));
+
+        String wells = "March 31, 2024 \u25a0 Page 1 of 4\n" + WELLS_HEADER;
+        period = registry.match(wells).findPeriod(wells);
+        assertNull(period[0]);
+        assertEquals(DateUtils.toEpochDay(2024, 3, 31), dateParser.parseEpochDay(period[1], 0, period[1].length()));
+
+        // No period printed: the caller must not guess the year
+        assertNull(registry.match(WELLS_HEADER).findPeriod(WELLS_HEADER));
+        assertNull(registry.match(BOFA_HEADER).findPeriod(BOFA_HEADER));
+    }
+
+    @Test
+    public void chaseSignsAmountsFromRunningBalance() {
+        StatementTemplate chase = TemplateRegistry.withDefaults().match(CHASE_HEADER);
+        StatementLineParser parser = chase.newLineParser(DateUtils.toEpochDay(2024, 1, 14), CATEGORIZER);
+
+        List<Transaction> rows = new ArrayList<>();
+        parser.parsePage(CHASE_HEADER
+                + "12/28 Card Purchase Starbucks Store 123 4.75 995.25\n"
+                + "01/02 Payroll ACME Corp 2,500.00 3,495.25\n"
+                + "01/03 Zelle Payment To J Smith 50.00 3,445.25\n"
+                + "Page 1 of 2\n", rows::add);
+        parser.parsePage("01/05 ATM Withdrawal 100.00 3,345.25\n"
+                + "01/06 Card Purchase Deposit Books 20.00 3,325.25\n", rows::add);
+
+        assertEquals(5, rows.size());
+        assertEquals(-4.75, rows.get(0).getAmount(), 0.0);
+        assertEquals(DateUtils.toEpochDay(2023, 12, 28), DateUtils.toEpochDay(rows.get(0).getDate()));
+        assertEquals("Card Purchase Starbucks Store 123", rows.get(0).getDescription());
+        assertEquals(2500.00, rows.get(1).getAmount(), 0.0);
+        assertEquals(DateUtils.toEpochDay(2024, 1, 2), DateUtils.toEpochDay(rows.get(1).getDate()));
+        assertEquals(-50.00, rows.get(2).getAmount(), 0.0);
+        // The balance carries across the page break
+        assertEquals(-100.00, rows.get(3).getAmount(), 0.0);
+        // The balance wins over a misleading keyword
+        assertEquals(-20.00, rows.get(4).getAmount(), 0.0);
+        assertEquals("Miscellaneous", rows.get(4).getCategory());
+    }
+
+    @Test
+    public void bankOfAmericaKeepsPrintedSigns() {
+        StatementTemplate bofa = TemplateRegistry.withDefaults().match(BOFA_HEADER);
+        StatementLineParser parser = bofa.newLineParser(DateUtils.toEpochDay(2024, 1, 31), CATEGORIZER);
+
+        List<Transaction> rows = new ArrayList<>();
+        parser.parsePage(BOFA_HEADER
+                + "01/15/24 CHECKCARD 0114 STARBUCKS -4.75\n"
+                + "01/16/24 ONLINE BANKING TRANSFER FROM SAV 300.00\n"
+                + "01/17 NO YEAR SO NOT A ROW -1.00\n"
+                + "Total deposits and other additions 300.00\n", rows::add);
+
+        assertEquals(2, rows.size());
+        assertEquals(-4.75, rows.get(0).getAmount(), 0.0);
+        assertEquals(300.00, rows.get(1).getAmount(), 0.0);
+        assertEquals("Income", rows.get(1).getCategory());
+    }
+
+    @Test
+    public void wellsFargoFallsBackToKeywordsWithoutDailyBalance() {
+        StatementTemplate wells = TemplateRegistry.withDefaults().match(WELLS_HEADER);
+        StatementLineParser parser = wells.newLineParser(DateUtils.toEpochDay(2024, 3, 31), CATEGORIZER);
+
+        List<Transaction> rows = new ArrayList<>();
+        parser.parsePage(WELLS_HEADER
+                + "3/1 Mobile Deposit : Ref Number 1234 500.00\n"
+                + "3/1 Purchase Authorized On 02/28 Safeway 82.13 1,417.87\n"
+                + "3/4 Recurring Payment Netflix 15.49\n", rows::add);
+
+        assertEquals(3, rows.size());
+        assertEquals(500.00, rows.get(0).getAmount(), 0.0);
+        assertEquals(-82.13, rows.get(1).getAmount(), 0.0);
+        assertEquals(-15.49, rows.get(2).getAmount(), 0.0);
+    }
+
+    @Test
+    public void templatesParseEveryLineOfALongPage() {
+        TemplateRegistry registry = TemplateRegistry.withDefaults();
+        for (String[] sample : SAMPLES) {
+            StringBuilder page = new StringBuilder(sample[0]);
+            int lines = 20_000;
+            for (int i = 0; i < lines; i++) {
+                page.append(String.format(sample[1], 1 + i % 28, i, 100_000 - i));
+            }
+            String text = page.toString();
+            StatementTemplate template = registry.match(text);
+
+            int[] count = new int[1];
+            template.newLineParser(DateUtils.toEpochDay(2024, 1, 31), CATEGORIZER)
+                    .parsePage(text, transaction -> count[0]++);
+            assertEquals(template.getName(), lines, count[0]);
+        }
+    }
+
+    @Test
+    public void benchmarkTemplatesAgainstGenericRegex() {
+        Benchmarks.assumeEnabled();
+        TemplateRegistry registry = TemplateRegistry.withDefaults();
+        for (String[] sample : SAMPLES) {
+            StringBuilder page = new StringBuilder(sample[0]);
+            int lines = 20_000;
+            for (int i = 0; i < lines; i++) {
+                page.append(String.format(sample[1], 1 + i % 28, i, 100_000 - i));
+            }
+            String text = page.toString();
+            StatementTemplate template = registry.match(text);
+
+            int[] count = new int[1];
+            long start = System.nanoTime();
+            template.newLineParser(DateUtils.toEpochDay(2024, 1, 31), CATEGORIZER)
+                    .parsePage(text, transaction -> count[0]++);
+            long templateNanos = System.nanoTime() - start;
+
+            int genericCount = 0;
+            start = System.nanoTime();
+            Matcher matcher = GENERIC_PATTERN.matcher(text);
+            while (matcher.find()) {
+                genericCount++;
+            }
+            long genericNanos = System.nanoTime() - start;
+
+            Benchmarks.report("%-16s template %,d lines/s (%d rows), generic regex %,d lines/s (%d rows)",
+                    template.getName(),
+                    lines * 1_000_000_000L / Math.max(1, templateNanos), count[0],
+                    lines * 1_000_000_000L / Math.max(1, genericNanos), genericCount);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.statementanalyzer.extraction;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TransactionLineTokenizerTest {
+
+    // The regex DocumentParser used before the tokenizer; it is the reference behaviour
+    private static final Pattern TRANSACTION_PATTERN = Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})\\s+([\\w\\s&.,'\\-]+)\\s+([\\-+]?\\$?\\d+,?\\d+\\.\\d{2})");
+
+    private static final String[] SAMPLES = {
+            "01/15/2024 STARBUCKS STORE #1234 -4.75\n01/16/2024 Payroll ACME Corp 2,500.00\n",
+            "Statement Period: Jan 1, 2024 to Jan 31, 2024\n01/02/24 Whole Foods Market 82.13\n01/03/24 Shell Oil 45.00\n",
+            "1-5-2024 Netflix.com 15.49 1-6-2024 Uber Trip 23.10",
+            "12/31/23   Interest Paid    +$1.25\n",
+            "01/02/2024    $12.50\n01/02/2024  $12.50\n",
+            "03/04/2024 Amazon Mktp US*2K4 12.99\n03/05/2024 O'Reilly Auto Parts 1,234,567.89 99.10\n",
+            "Date Description Amount\n02/01/2024 Rent Payment -1,850.00\nPage 1 of 3\n02/02/2024 Coffee 4.50\n",
+            "123/45/2024 Odd Prefix 10.00 and 01/01/12345 Long Year 11.00 and 1/1/11 Fine 12.00",
+            "05/06/2024 Transfer To Savings\n05/07/2024 Zelle Payment From J Smith 300.00 15,200.00\n",
+            "07/08/2024 Caf\u00e9 Ol\u00e9 9.99\n07/08/2024 Cafe Ole 9.99\r\n",
+    };
+
+    private static final String ALPHABET = "0123456789/-- \n\t.,$+&'abcXYZ_#()\u00e9*";
+
+    @Test
+    public void matchesRegexOnStatementSamples() {
+        for (String sample : SAMPLES) {
+            assertEquals(sample, regexMatches(sample), tokenizerMatches(sample));
+        }
+    }
+
+    @Test
+    public void matchesRegexOnRandomText() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int round = 0; round < 20_000; round++) {
+            text.setLength(0);
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++) {
+                // Seed dates and amounts so matches are common, not just noise
+                int roll = random.nextInt(20);
+                if (roll == 0) {
+                    text.append(1 + random.nextInt(12)).append(random.nextBoolean() ? '/' : '-')
+                            .append(1 + random.nextInt(31)).append('/').append(random.nextBoolean() ? "24" : "2024");
+                } else if (roll == 1) {
+                    text.append(random.nextBoolean() ? "-" : "").append(random.nextInt(5000))
+                            .append(random.nextBoolean() ? "," + random.nextInt(1000) : "").append('.')
+                            .append(random.nextInt(100));
+                } else {
+                    text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+            }
+            String sample = text.toString();
+            assertEquals(sample, regexMatches(sample), tokenizerMatches(sample));
+        }
+    }
+
+    // The bound is loose enough for a slow CI machine; a backtracking scan needs minutes here
+    @Test(timeout = 10_000)
+    public void garbledTextStaysLinear() {
+        // Every "1-1-11 " starts a date and the whole line is one description run with no
+        // amount at the end, so the regex retries each split from every date. 1.4M chars
+        // would take the regex minutes; the tokenizer makes one pass.
+        assertEquals(0, tokenizerMatches(repeat("1-1-11 ", 200_000)).size());
+        assertEquals(regexMatches(repeat("1-1-11 ", 200)), tokenizerMatches(repeat("1-1-11 ", 200)));
+    }
+
+    @Test
+    public void benchmarkGarbledText() {
+        Benchmarks.assumeEnabled();
+        String unit = "1-1-11 ";
+        String small = repeat(unit, 2_000);
+        String large = repeat(unit, 200_000);
+
+        long start = System.nanoTime();
+        assertEquals(0, regexMatches(small).size());
+        long regexMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        assertEquals(0, tokenizerMatches(large).size());
+        long tokenizerMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Benchmarks.report("Garbled text: regex %d ms for %d chars, tokenizer %d ms for %d chars",
+                regexMillis, small.length(), tokenizerMillis, large.length());
+    }
+
+    private static List<String> regexMatches(String text) {
+        List<String> matches = new ArrayList<>();
+        Matcher matcher = TRANSACTION_PATTERN.matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.start(1) + "-" + matcher.end(1) + " " + matcher.start(2) + "-" + matcher.end(2)
+                    + " " + matcher.start(3) + "-" + matcher.end(3));
+        }
+        return matches;
+    }
+
+    private static List<String> tokenizerMatches(String text) {
+        List<String> matches = new ArrayList<>();
+        TransactionLineTokenizer tokenizer = new TransactionLineTokenizer(text);
+        while (tokenizer.next()) {
+            matches.add(tokenizer.dateStart() + "-" + tokenizer.dateEnd() + " " + tokenizer.descriptionStart()
+                    + "-" + tokenizer.descriptionEnd() + " " + tokenizer.amountStart() + "-" + tokenizer.amountEnd());
+        }
+        return matches;
+    }
+
+    private static String repeat(String unit, int count) {
+        StringBuilder builder = new StringBuilder(unit.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(unit);
+        }
+        return builder.toString();
+    }
+}
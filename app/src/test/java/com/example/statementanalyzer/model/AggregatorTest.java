@@ -0,0 +1,82 @@
+package com.example.statementanalyzer.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AggregatorTest {
+
+    @Test
+    public void summarizesIncomeExpensesAndRange() {
+        Aggregator aggregator = new Aggregator();
+        aggregator.add(19740, -475, CategoryRegistry.getInstance().intern("Dining"));
+        aggregator.add(19735, 250000, CategoryRegistry.getInstance().intern("Income"));
+        aggregator.add(TransactionTable.NO_DATE, -310, CategoryRegistry.getInstance().intern("Dining"));
+
+        StatementSummary summary = aggregator.summarize();
+        assertEquals(250000, summary.getIncomeCents());
+        assertEquals(-785, summary.getExpenseCents());
+        assertEquals(-785, summary.getCategoryCents("Dining"));
+        assertEquals(3, summary.getTransactionCount());
+        assertEquals(19735, summary.getFirstEpochDay());
+        assertEquals(19740, summary.getLastEpochDay());
+
+        // Later additions do not leak into a summary already taken
+        aggregator.add(19741, -100, CategoryRegistry.getInstance().intern("Dining"));
+        assertEquals(-785, summary.getCategoryCents("Dining"));
+    }
+
+    @Test
+    public void mergedPartialsEqualSinglePass() {
+        Random random = new Random(7);
+        String[] categories = {"Groceries", "Transportation", "Utilities", "Income"};
+
+        Aggregator whole = new Aggregator();
+        Aggregator[] parts = new Aggregator[5];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new Aggregator();
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            int day = 19000 + random.nextInt(400);
+            long cents = random.nextInt(200_000) - 150_000;
+            int category = CategoryRegistry.getInstance().intern(categories[random.nextInt(categories.length)]);
+            whole.add(day, cents, category);
+            parts[random.nextInt(parts.length)].add(day, cents, category);
+        }
+
+        // Fold the partials in an arbitrary order
+        StatementSummary merged = StatementSummary.EMPTY;
+        for (int i = parts.length - 1; i >= 0; i--) {
+            merged = StatementSummary.merge(parts[i].summarize(), merged);
+        }
+
+        StatementSummary expected = whole.summarize();
+        assertEquals(expected.getIncomeCents(), merged.getIncomeCents());
+        assertEquals(expected.getExpenseCents(), merged.getExpenseCents());
+        assertEquals(expected.getTransactionCount(), merged.getTransactionCount());
+        assertEquals(expected.getFirstEpochDay(), merged.getFirstEpochDay());
+        assertEquals(expected.getLastEpochDay(), merged.getLastEpochDay());
+        assertEquals(expected.getCategoryTotals().asMap(), merged.getCategoryTotals().asMap());
+    }
+
+    @Test
+    public void appendingMatchesFreshAggregation() {
+        FinancialData data = new FinancialData();
+        data.setTransactions(new ArrayList<>());
+        data.addTransaction(new Transaction(null, "PAYROLL", 0.1, "Income"));
+        data.addTransaction(new Transaction(null, "PAYROLL", 0.2, "Income"));
+        data.addTransaction(new Transaction(null, "BUS", -1.15, "Transportation"));
+
+        Aggregator aggregator = new Aggregator();
+        aggregator.addAll(data.getTransactionTable());
+
+        // 0.1 + 0.2 drifts as a double but not in cents
+        assertEquals(30, aggregator.summarize().getIncomeCents());
+        assertEquals(0.3, data.getTotalIncome(), 0.0);
+        assertEquals(aggregator.summarize().getExpenseCents(), data.getSummary().getExpenseCents());
+    }
+}
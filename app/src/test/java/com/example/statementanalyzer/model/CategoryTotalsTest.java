@@ -0,0 +1,60 @@
+package com.example.statementanalyzer.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CategoryTotalsTest {
+
+    @Test
+    public void accumulatesCentsPerCategory() {
+        CategoryTotals totals = new CategoryTotals();
+        totals.add("Dining", -475);
+        totals.add("Dining", -310);
+        totals.add("Income", 250000);
+
+        assertEquals(-785, totals.getCents("Dining"));
+        assertEquals(250000, totals.getCents("Income"));
+        assertEquals(0, totals.getCents("Never Seen"));
+        assertEquals(2, totals.size());
+    }
+
+    @Test
+    public void mapViewMatchesHashMapSemantics() {
+        Map<String, Double> expected = new HashMap<>();
+        expected.put("Groceries", -82.13);
+        expected.put("Zero", 0.0);
+
+        CategoryTotals totals = CategoryTotals.fromMap(expected);
+        Map<String, Double> view = totals.asMap();
+
+        assertEquals(expected, view);
+        assertTrue(view.containsKey("Zero"));
+        assertNull(view.get("Missing"));
+        assertFalse(view.containsKey(42));
+
+        view.put("Groceries", -90.0);
+        assertEquals(-9000, totals.getCents("Groceries"));
+    }
+
+    @Test
+    public void addAllMergesById() {
+        CategoryTotals first = new CategoryTotals();
+        first.add("Travel", -12000);
+        CategoryTotals second = new CategoryTotals();
+        second.add("Travel", -3000);
+        second.add("Utilities", -4500);
+
+        CategoryTotals merged = first.copy();
+        merged.addAll(second);
+
+        assertEquals(-15000, merged.getCents("Travel"));
+        assertEquals(-4500, merged.getCents("Utilities"));
+        // The source totals are left untouched
+        assertEquals(-12000, first.getCents("Travel"));
+        assertFalse(first.contains(CategoryRegistry.getInstance().lookup("Utilities")));
+    }
+}
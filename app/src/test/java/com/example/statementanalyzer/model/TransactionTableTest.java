@@ -0,0 +1,78 @@
+package com.example.statementanalyzer.model;
+
+import com.example.statementanalyzer.utils.DateUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransactionTableTest {
+
+    @Test
+    public void roundTripsTransactionsThroughColumns() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction(DateUtils.toDate(19737), "COFFEE SHOP", -4.75, "Dining"));
+        transactions.add(new Transaction(DateUtils.toDate(19738), "PAYROLL", 2500.00, "Income"));
+        transactions.add(new Transaction(null, "COFFEE SHOP", -3.10, "Dining"));
+
+        TransactionTable table = TransactionTable.from(transactions);
+
+        assertEquals(3, table.size());
+        assertEquals(19737, table.getEpochDay(0));
+        assertEquals(-475, table.getCents(0));
+        assertEquals(250000, table.getCents(1));
+        assertEquals(TransactionTable.NO_DATE, table.getEpochDay(2));
+        assertEquals(table.getDescriptionId(0), table.getDescriptionId(2));
+        assertEquals(2, table.getDescriptionDictionary().size());
+
+        Transaction copy = table.toTransaction(1);
+        assertEquals("PAYROLL", copy.getDescription());
+        assertEquals(2500.00, copy.getAmount(), 0.0);
+        assertEquals(transactions.get(1).getDate(), copy.getDate());
+        assertNull(table.toTransaction(2).getDate());
+    }
+
+    @Test
+    public void rowViewReadsInPlace() {
+        TransactionTable table = new TransactionTable(1);
+        for (int i = 0; i < 100; i++) {
+            table.add(19000 + i, -i, "row" + (i % 10), i % 2 == 0 ? "Even" : "Odd");
+        }
+
+        TransactionTable.Row row = table.row(0);
+        long total = 0;
+        for (int i = 0; i < table.size(); i++) {
+            total += row.moveTo(i).getCents();
+        }
+        assertEquals(-4950, total);
+        assertEquals("Odd", row.moveTo(99).getCategory());
+        assertEquals(10, table.getDescriptionDictionary().size());
+    }
+
+    @Test
+    public void listViewWritesThroughToColumns() {
+        FinancialData data = new FinancialData();
+        data.setTransactions(new ArrayList<>());
+        data.getTransactions().add(new Transaction(DateUtils.toDate(3), "c", -3, "X"));
+        data.getTransactions().add(new Transaction(DateUtils.toDate(1), "a", -1, "X"));
+
+        TransactionTable table = data.getTransactionTable();
+        List<Transaction> view = data.getTransactions();
+
+        view.add(new Transaction(DateUtils.toDate(2), "b", -2, "Y"));
+        assertEquals(3, table.size());
+
+        view.sort((t1, t2) -> t1.getDate().compareTo(t2.getDate()));
+        assertEquals("a", table.getDescription(0));
+        assertEquals("b", table.getDescription(1));
+        assertEquals("c", table.getDescription(2));
+
+        view.add(1, new Transaction(null, "inserted", 0, "Z"));
+        view.remove(0);
+        assertEquals("inserted", table.getDescription(0));
+        assertEquals(3, view.size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.statementanalyzer.utils;
+
+import com.example.statementanalyzer.Benchmarks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CurrencyUtilsTest {
+
+    @Test
+    public void parsesCommonStatementFormats() {
+        assertEquals(1250, CurrencyUtils.parseCents("12.50"));
+        assertEquals(123456, CurrencyUtils.parseCents("$1,234.56"));
+        assertEquals(-1250, CurrencyUtils.parseCents("-12.50"));
+        assertEquals(-1250, CurrencyUtils.parseCents("-$12.50"));
+        assertEquals(-1250, CurrencyUtils.parseCents("$-12.50"));
+        assertEquals(1250, CurrencyUtils.parseCents("+$12.50"));
+        assertEquals(-4500, CurrencyUtils.parseCents("(45.00)"));
+        assertEquals(-4500, CurrencyUtils.parseCents("($45.00)"));
+        assertEquals(-9910, CurrencyUtils.parseCents("99.10 DR"));
+        assertEquals(9910, CurrencyUtils.parseCents("99.10CR"));
+        assertEquals(120000000, CurrencyUtils.parseCents(" 1,200,000 "));
+        assertEquals(50, CurrencyUtils.parseCents(".5"));
+        assertEquals(1000, CurrencyUtils.parseCents("10"));
+    }
+
+    @Test
+    public void roundsExtraDecimalsHalfAwayFromZero() {
+        assertEquals(1235, CurrencyUtils.parseCents("12.345"));
+        assertEquals(-1235, CurrencyUtils.parseCents("-12.3450"));
+        assertEquals(100, CurrencyUtils.parseCents("0.995"));
+    }
+
+    @Test
+    public void rejectsNonAmounts() {
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents(""));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("$"));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("12.50abc"));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("N/A"));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents(null));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("123456789012345678"));
+    }
+
+    @Test
+    public void capsIntegerDigitsBeforeCentsOverflow() {
+        assertEquals(999999999999999999L, CurrencyUtils.parseCents("9999999999999999.99"));
+        assertEquals(-999999999999999900L, CurrencyUtils.parseCents("-9,999,999,999,999,999"));
+        // 17 digits times 100 would wrap past Long.MAX_VALUE
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("99999999999999999"));
+        assertEquals(CurrencyUtils.INVALID, CurrencyUtils.parseCents("$99,999,999,999,999,999.00"));
+    }
+
+    @Test
+    public void parsesRegionWithoutCopying() {
+        String line = "01/15/2024 COFFEE SHOP $1,204.75 balance";
+        int start = line.indexOf('$');
+        assertEquals(120475, CurrencyUtils.parseCents(line, start, start + 9));
+    }
+
+    @Test
+    public void agreesWithReplaceAllPath() {
+        for (String amount : amounts()) {
+            assertEquals(amount, Math.round(Double.parseDouble(amount.replaceAll("[\\$,]", "")) * 100),
+                    CurrencyUtils.parseCents(amount));
+        }
+    }
+
+    // One million rows against the old replaceAll + parseDouble path
+    @Test
+    public void benchmarkMillionRows() {
+        Benchmarks.assumeEnabled();
+        String[] amounts = amounts();
+
+        int rows = 1_000_000;
+        long start = System.nanoTime();
+        double regexTotal = 0;
+        for (int i = 0; i < rows; i++) {
+            regexTotal += Double.parseDouble(amounts[i & 1023].replaceAll("[\\$,]", ""));
+        }
+        long regexNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long centsTotal = 0;
+        for (int i = 0; i < rows; i++) {
+            centsTotal += CurrencyUtils.parseCents(amounts[i & 1023]);
+        }
+        long centsNanos = System.nanoTime() - start;
+
+        // Summing doubles drifts by a few cents over a million rows; the long total is exact
+        Benchmarks.report("rows=%d replaceAll+parseDouble=%dms parseCents=%dms drift=%d cents",
+                rows, regexNanos / 1_000_000, centsNanos / 1_000_000, Math.round(regexTotal * 100) - centsTotal);
+    }
+
+    private static String[] amounts() {
+        String[] amounts = new String[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = (i % 3 == 0 ? "-$" : "$") + (i * 7919 % 100000) + "," + (100 + i % 900) + "." + (10 + i % 90);
+        }
+        return amounts;
+    }
+}